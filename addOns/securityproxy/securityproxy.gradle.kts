@@ -1,3 +1,7 @@
+plugins {
+    id("me.champeau.jmh") version "0.6.6"
+}
+
 description = "The security addons that ensure Typosquatting prevention."
 
 zapAddOn {
@@ -18,4 +22,13 @@ crowdin {
 }
 dependencies {
     testImplementation(project(":testutils"))
-}
\ No newline at end of file
+}
+
+jmh {
+    jmhVersion.set("1.33")
+    // The benchmarks need ZAP and the test dependencies on the classpath.
+    includeTests.set(true)
+    resultFormat.set("JSON")
+    resultsFile.set(project.file("$buildDir/reports/jmh/results.json"))
+    humanOutputFile.set(project.file("$buildDir/reports/jmh/human.txt"))
+}
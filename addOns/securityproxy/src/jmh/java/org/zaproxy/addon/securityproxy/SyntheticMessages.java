@@ -0,0 +1,119 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.parosproxy.paros.network.HttpHeader;
+import org.parosproxy.paros.network.HttpMalformedHeaderException;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generator of synthetic hostnames and proxied requests for the benchmarks. Everything is
+ * derived from the given Random, so a seed always gives the same workload.
+ */
+public final class SyntheticMessages {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789-";
+    private static final String[] TLDS = {".com", ".org", ".net", ".be", ".io"};
+
+    private SyntheticMessages() {
+    }
+
+    /**
+     * @param random source of randomness
+     * @param count number of hostnames
+     * @param length length of the hostname before the top level domain
+     * @return distinct random hostnames
+     */
+    public static List<String> randomHosts(Random random, int count, int length) {
+        Set<String> hosts = new LinkedHashSet<>();
+        while (hosts.size() < count) {
+            hosts.add(randomHost(random, length));
+        }
+        return new ArrayList<>(hosts);
+    }
+
+    /**
+     * @param random source of randomness
+     * @param length length of the hostname before the top level domain
+     * @return a random hostname starting with a letter
+     */
+    public static String randomHost(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 4);
+        sb.append(ALPHABET.charAt(random.nextInt(26)));
+        for (int i = 1; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.append(TLDS[random.nextInt(TLDS.length)]).toString();
+    }
+
+    /**
+     * @param random source of randomness
+     * @param host a hostname
+     * @return the hostname with one swapped, extra, missing or replaced character in its first label
+     */
+    public static String typoOf(Random random, String host) {
+        int labelEnd = host.indexOf('.');
+        int pos = random.nextInt(labelEnd - 1);
+        StringBuilder sb = new StringBuilder(host);
+        char c = ALPHABET.charAt(random.nextInt(26));
+        switch (random.nextInt(4)) {
+            case 0:
+                sb.setCharAt(pos, host.charAt(pos + 1));
+                sb.setCharAt(pos + 1, host.charAt(pos));
+                break;
+            case 1:
+                sb.insert(pos, c);
+                break;
+            case 2:
+                sb.deleteCharAt(pos);
+                break;
+            default:
+                sb.setCharAt(pos, c == host.charAt(pos) ? 'z' : c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A page navigation as sent by a browser
+     * @param host requested hostname
+     * @param referer hostname of the referring page, or null
+     * @return GET request accepting html
+     * @throws HttpMalformedHeaderException never, the header is well formed
+     */
+    public static HttpMessage navigation(String host, String referer) throws HttpMalformedHeaderException {
+        StringBuilder header = new StringBuilder()
+                .append("GET https://www.").append(host).append("/ HTTP/1.1").append(HttpHeader.CRLF)
+                .append("Host: www.").append(host).append(HttpHeader.CRLF)
+                .append("Accept: text/html,application/xhtml+xml").append(HttpHeader.CRLF);
+        if (referer != null) {
+            header.append("Referer: https://www.").append(referer).append("/").append(HttpHeader.CRLF);
+        }
+        return new HttpMessage(new HttpRequestHeader(header.append(HttpHeader.CRLF).toString()));
+    }
+
+    /**
+     * A login form submission
+     * @param host hostname the form is posted to
+     * @param username submitted username
+     * @param password submitted password
+     * @return POST request with a url encoded body
+     * @throws HttpMalformedHeaderException never, the header is well formed
+     */
+    public static HttpMessage login(String host, String username, String password) throws HttpMalformedHeaderException {
+        String body = "username=" + username + "&password=" + password;
+        String header = "POST https://www." + host + "/login HTTP/1.1" + HttpHeader.CRLF
+                + "Host: www." + host + HttpHeader.CRLF
+                + "Accept: text/html" + HttpHeader.CRLF
+                + "Content-Type: application/x-www-form-urlencoded" + HttpHeader.CRLF
+                + "Content-Length: " + body.length() + HttpHeader.CRLF
+                + HttpHeader.CRLF;
+        HttpMessage msg = new HttpMessage(new HttpRequestHeader(header));
+        msg.setRequestBody(body);
+        return msg;
+    }
+}
@@ -0,0 +1,76 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.parosproxy.paros.network.HttpMessage;
+import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
+import org.zaproxy.addon.securityproxy.SyntheticMessages;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Credential reuse checks against a host store of a given size, every known host holding
+ * one credential. The submitted username is used on one other host with another password,
+ * so the check is a miss of the credential index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhishingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int hostStoreSize;
+
+    private ExtensionSecurityProxy extension;
+    private PhishingTest phishingTest;
+    private String host;
+    private HttpMessage login;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        extension = new ExtensionSecurityProxy();
+        phishingTest = new PhishingTest(extension.getListener());
+
+        List<String> hosts = SyntheticMessages.randomHosts(random, hostStoreSize + 1, 12);
+        for (int i = 0; i < hostStoreSize; i++) {
+            Website website = new Website(hosts.get(i));
+            website.addCredential(new Credential("user" + i, "Secret#" + i));
+            extension.getWebsiteRegistry().add(website);
+        }
+        host = hosts.get(hostStoreSize);
+        login = SyntheticMessages.login(host, "user0", "Another#0");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        extension.unload();
+    }
+
+    @Benchmark
+    public String credentialReuse() {
+        return phishingTest.isSafeWithReason(host, "user0", "Another#0");
+    }
+
+    @Benchmark
+    public void credentialReuseFromMessage(Blackhole blackhole) {
+        blackhole.consume(phishingTest.isSafeWithReason(login));
+    }
+}
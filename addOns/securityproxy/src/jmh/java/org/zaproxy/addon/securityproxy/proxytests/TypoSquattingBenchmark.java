@@ -0,0 +1,134 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.parosproxy.paros.network.HttpMessage;
+import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
+import org.zaproxy.addon.securityproxy.SecurityProxyListener;
+import org.zaproxy.addon.securityproxy.SyntheticMessages;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.TypoClassifier;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typosquatting decisions against a host store of a given size. Half of the requested hosts
+ * are a typo of a known host, the other half are unrelated. Every benchmark handles
+ * {@link #QUERIES} requests, so the scores are comparable between benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypoSquattingBenchmark {
+
+    private static final int QUERIES = 256;
+
+    @Param({"100", "1000", "10000"})
+    private int hostStoreSize;
+
+    @Param({"8", "16", "32"})
+    private int hostnameLength;
+
+    private ExtensionSecurityProxy extension;
+    private TypoSquattingTest typoSquattingTest;
+    private SecurityProxyListener listener;
+    private List<String> knownHosts;
+    private String[] queries;
+    private HttpMessage[] messages;
+    private final TypoClassifier classifier = new TypoClassifier();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        extension = new ExtensionSecurityProxy();
+        listener = extension.getListener();
+        typoSquattingTest = listener.getTypoSquattingTest();
+
+        knownHosts = SyntheticMessages.randomHosts(random, hostStoreSize, hostnameLength);
+        for (String host : knownHosts) {
+            extension.getWebsiteRegistry().add(new Website(host));
+        }
+
+        queries = new String[QUERIES];
+        messages = new HttpMessage[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = (i % 2 == 0)
+                    ? SyntheticMessages.typoOf(random, knownHosts.get(random.nextInt(knownHosts.size())))
+                    : SyntheticMessages.randomHost(random, hostnameLength);
+            // navigation without referer, a non html accept header keeps the store unchanged
+            messages[i] = SyntheticMessages.navigation(queries[i], null);
+            messages[i].getRequestHeader().setHeader("Accept", "image/png");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        extension.unload();
+    }
+
+    /**
+     * The baseline: classify the hostname against every known host.
+     */
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        for (String query : queries) {
+            String intended = null;
+            for (String knownHost : knownHosts) {
+                if (classifier.classify(query, knownHost) != null) {
+                    intended = knownHost;
+                }
+            }
+            blackhole.consume(intended);
+        }
+    }
+
+    @Benchmark
+    public void candidateIndexLookup(Blackhole blackhole) {
+        TypoCandidateIndex index = extension.getWebsiteRegistry().getTypoCandidateIndex();
+        for (String query : queries) {
+            blackhole.consume(index.findTypoOf(query));
+        }
+    }
+
+    @Benchmark
+    public void verdictUncached(Blackhole blackhole) {
+        for (String query : queries) {
+            typoSquattingTest.getVerdictCache().clear();
+            blackhole.consume(typoSquattingTest.isSafeWithReason(query, query));
+        }
+    }
+
+    @Benchmark
+    public void verdictCached(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(typoSquattingTest.isSafeWithReason(query, query));
+        }
+    }
+
+    /**
+     * The whole request path of the listener, including parsing the synthetic messages.
+     */
+    @Benchmark
+    public void onHttpRequestSend(Blackhole blackhole) {
+        for (HttpMessage msg : messages) {
+            msg.setUserObject(null);
+            blackhole.consume(listener.onHttpRequestSend(msg));
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.BloomFilter;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.CrackLib;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.FilteredDictionary;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.HashedDictionary;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.MappedPacker;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.Packer;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.RuleProgram;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.RuleTree;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.Rules;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password strength checks against a CrackLib dictionary of a given size. The dictionary is
+ * built from random lowercase words in a temporary directory, in the cracklib and the hashed
+ * format. The passwords pass every rule of fascistLook, so each check walks all destructors
+ * against the dictionary.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordCheckBenchmark {
+
+    private static final String DICTIONARY = "words";
+    private static final int PASSWORDS = 16;
+
+    @Param({"1000", "10000", "100000"})
+    private int dictionarySize;
+
+    private File directory;
+    private Packer packer;
+    private MappedPacker mappedPacker;
+    private HashedDictionary hashedDictionary;
+    private FilteredDictionary filteredDictionary;
+    private String[] passwords;
+    private SafePasswordConstraint popularPasswords;
+    private SafePasswordConstraint passwordList;
+    private RuleProgram[] destructors;
+    private RuleTree destructorTree;
+    private ForkJoinPool lookupPool;
+    private CrackLibPasswConstraint crackLibConstraint;
+    private PasswordCheckPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        directory = Files.createTempDirectory("securityproxy-jmh").toFile();
+
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < dictionarySize) {
+            words.add(randomWord(random, 4 + random.nextInt(8)));
+        }
+        Packer writer = new Packer(directory, DICTIONARY, "rw");
+        try {
+            for (String word : words) {
+                writer.put(word);
+            }
+        } finally {
+            writer.close();
+        }
+        packer = new Packer(directory, DICTIONARY, "r");
+        mappedPacker = new MappedPacker(directory, DICTIONARY);
+        HashedDictionary.make(
+                new ByteArrayInputStream(String.join("\n", words).getBytes()), directory, DICTIONARY);
+        hashedDictionary = new HashedDictionary(directory, DICTIONARY);
+        filteredDictionary = new FilteredDictionary(new MappedPacker(directory, DICTIONARY),
+                BloomFilter.make(directory, DICTIONARY, BloomFilter.DEFAULT_FALSE_POSITIVE_RATE));
+
+        passwords = new String[PASSWORDS];
+        for (int i = 0; i < PASSWORDS; i++) {
+            passwords[i] = "Q" + randomWord(random, 6) + "#" + (10 + random.nextInt(90));
+        }
+        popularPasswords = new PopularPasswConstraint();
+        File list = new File(directory, "passwords.txt");
+        Files.write(list.toPath(), words);
+        passwordList = new PopularPasswConstraint(list);
+        destructors = RuleProgram.compileAll(CrackLib.destructors);
+        destructorTree = new RuleTree(destructors);
+        lookupPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        crackLibConstraint = new CrackLibPasswConstraint();
+        crackLibConstraint.setDictionary(new MappedPacker(directory, DICTIONARY));
+        pipeline = new PasswordCheckPipeline(
+                List.of(new NumericPasswConstraint(), passwordList, crackLibConstraint), PASSWORDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        lookupPool.shutdownNow();
+        crackLibConstraint.closeDictionary();
+        packer.close();
+        mappedPacker.close();
+        hashedDictionary.close();
+        filteredDictionary.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @Benchmark
+    public void fascistLook(Blackhole blackhole) throws IOException {
+        for (String password : passwords) {
+            blackhole.consume(CrackLib.fascistLook(packer, password, null));
+        }
+    }
+
+    @Benchmark
+    public void fascistLookParallel(Blackhole blackhole) throws IOException {
+        for (String password : passwords) {
+            blackhole.consume(CrackLib.fascistLook(mappedPacker, password, null, lookupPool, 1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Benchmark
+    public void fascistLookMapped(Blackhole blackhole) throws IOException {
+        for (String password : passwords) {
+            blackhole.consume(CrackLib.fascistLook(mappedPacker, password, null));
+        }
+    }
+
+    @Benchmark
+    public void fascistLookFiltered(Blackhole blackhole) throws IOException {
+        for (String password : passwords) {
+            blackhole.consume(CrackLib.fascistLook(filteredDictionary, password, null));
+        }
+    }
+
+    @Benchmark
+    public void fascistLookHashed(Blackhole blackhole) throws IOException {
+        for (String password : passwords) {
+            blackhole.consume(CrackLib.fascistLook(hashedDictionary, password, null));
+        }
+    }
+
+    @Benchmark
+    public void mangleDestructors(Blackhole blackhole) {
+        for (String password : passwords) {
+            for (String control : CrackLib.destructors) {
+                blackhole.consume(Rules.mangle(password, control));
+            }
+        }
+    }
+
+    @Benchmark
+    public void applyCompiledDestructors(Blackhole blackhole) {
+        for (String password : passwords) {
+            for (RuleProgram program : destructors) {
+                blackhole.consume(program.apply(password));
+            }
+        }
+    }
+
+    @Benchmark
+    public void applyDestructorTree(Blackhole blackhole) {
+        for (String password : passwords) {
+            RuleTree.Results results = destructorTree.apply(password);
+            for (int i = 0; i < results.size(); i++) {
+                blackhole.consume(results.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void popularPasswords(Blackhole blackhole) {
+        for (String password : passwords) {
+            blackhole.consume(popularPasswords.passedConstraint(password));
+        }
+    }
+
+    @Benchmark
+    public void passwordList(Blackhole blackhole) {
+        for (String password : passwords) {
+            blackhole.consume(passwordList.passedConstraint(password));
+        }
+    }
+
+    @Benchmark
+    public void memoisedPipeline(Blackhole blackhole) {
+        for (String password : passwords) {
+            blackhole.consume(pipeline.check(password));
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
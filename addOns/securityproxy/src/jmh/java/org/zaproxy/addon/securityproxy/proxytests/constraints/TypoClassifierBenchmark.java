@@ -0,0 +1,111 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single-pass typo classifier with the chain of the four separate constraints
+ * on pairs of hostnames, half of them a single typo of each other and half of them unrelated.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypoClassifierBenchmark {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyz";
+    private static final int PAIRS = 1024;
+
+    @Param({"8", "16", "32"})
+    private int hostLength;
+
+    private final List<TypoSquattingConstraint> chain = List.of(
+            new AdjSwappedCharacterConstraint(),
+            new ExtraCharacterConstraint(),
+            new MissingCharacterConstraint(),
+            new ReplacedCharacterConstraint()
+    );
+    private final TypoClassifier classifier = new TypoClassifier();
+
+    private String[] originals;
+    private String[] typos;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        originals = new String[PAIRS];
+        typos = new String[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            originals[i] = randomHost(random, hostLength);
+            typos[i] = (i % 2 == 0)
+                    ? mutate(originals[i], random)
+                    : randomHost(random, hostLength - 1 + random.nextInt(3));
+        }
+    }
+
+    @Benchmark
+    public void constraintChain(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            boolean typo = false;
+            for (TypoSquattingConstraint constraint : chain) {
+                if (constraint.passedConstraint(originals[i], typos[i])) {
+                    typo = true;
+                    break;
+                }
+            }
+            blackhole.consume(typo);
+        }
+    }
+
+    @Benchmark
+    public void singlePassClassifier(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(classifier.classify(originals[i], typos[i]));
+        }
+    }
+
+    private static String randomHost(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 4);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.append(".com").toString();
+    }
+
+    private static String mutate(String host, Random random) {
+        StringBuilder sb = new StringBuilder(host);
+        int pos = random.nextInt(host.length() - 1);
+        char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        switch (random.nextInt(4)) {
+            case 0:
+                sb.setCharAt(pos, host.charAt(pos + 1));
+                sb.setCharAt(pos + 1, host.charAt(pos));
+                break;
+            case 1:
+                sb.insert(pos, c);
+                break;
+            case 2:
+                sb.deleteCharAt(pos);
+                break;
+            default:
+                sb.setCharAt(pos, c);
+        }
+        return sb.toString();
+    }
+}
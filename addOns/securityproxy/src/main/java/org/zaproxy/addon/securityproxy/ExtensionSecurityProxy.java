@@ -24,12 +24,14 @@ import java.awt.Font;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.swing.ImageIcon;
 import javax.swing.JTextPane;
@@ -47,6 +49,11 @@ import org.parosproxy.paros.model.Session;
 import org.parosproxy.paros.model.SessionListener;
 import org.parosproxy.paros.view.View;
 import org.zaproxy.addon.securityproxy.proxytests.Website;
+import org.zaproxy.addon.securityproxy.proxytests.CredentialFingerprint;
+import org.zaproxy.addon.securityproxy.proxytests.CredentialHashing;
+import org.zaproxy.addon.securityproxy.proxytests.Pbkdf2Kdf;
+import org.zaproxy.addon.securityproxy.proxytests.WebsiteRegistry;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.CrackLibPasswConstraint;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.PopularPasswConstraint;
 import org.zaproxy.zap.extension.brk.impl.http.ProxyListenerBreak;
 import org.zaproxy.zap.utils.FontUtils;
@@ -73,16 +80,26 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
             new ImageIcon(ExtensionSecurityProxy.class.getResource(RESOURCES + "/cake.png"));
 
     private static final String WEBSITE_FILE = "example/website.tmp";
+    private static final String PASSWORD_WARNING_SUPPRESSION_FILE = "example/password_warning_suppressions.tmp";
+    private static final int CREDENTIAL_HASHING_THREADS = 2;
+    private static final int CREDENTIAL_HASHING_QUEUE = 32;
+    private static final long CREDENTIAL_CHECK_TIMEOUT_MILLIS = 1000;
     public static final String TYPO_HTML_TEMPLATE = "example/warning_page.html";
     public static final String PHISHING_HTML_TEMPLATE = "example/phishing_warning_page.html";
     public static final String PASSWORD_HTML_TEMPLATE = "example/password_warning_page.html";
     public static final String REDIRECT_HTML = "example/redirectPage.html";
     public static final String NULL = "null";
+    private static final long METRICS_SUMMARY_PERIOD_MINUTES = 1;
+    private static final int PASSWORD_CHECK_THREADS = 2;
+    private static final long PASSWORD_CHECK_TIMEOUT_MILLIS = 2000;
+    private static final int PARALLEL_LOOKUP_THREADS = 2;
+    private static final long PARALLEL_LOOKUP_TIMEOUT_MILLIS = 1500;
 
     private ZapMenuItem menuExample;
     private AbstractPanel statusPanel;
     private SecurityProxyListener listener;
-    private List<Website> websites;
+    private WebsiteRegistry websiteRegistry;
+    private SecurityProxyParam param;
     public boolean enablePasswordCheck;
 
     private static final Logger LOGGER = LogManager.getLogger(ExtensionSecurityProxy.class);
@@ -91,7 +108,8 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
         super(NAME);
         setI18nPrefix(PREFIX);
         listener = new SecurityProxyListener(this);
-        websites = new ArrayList<>();
+        websiteRegistry = new WebsiteRegistry();
+        param = new SecurityProxyParam();
         enablePasswordCheck = true;
     }
 
@@ -106,9 +124,18 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
 
         extensionHook.addProxyListener(this.listener);
         extensionHook.addSessionListener(this);
-        websites = new ArrayList<>();
-
-        createOrLoadWebsiteFile();
+        extensionHook.addOptionsParamSet(param);
+        extensionHook.addApiImplementor(new SecurityProxyAPI(this));
+        listener.getMetrics().startSummaryLogging(METRICS_SUMMARY_PERIOD_MINUTES, TimeUnit.MINUTES);
+        websiteRegistry.clear();
+
+        CredentialHashing.use(new Pbkdf2Kdf(), Pbkdf2Kdf.DEFAULT_ITERATIONS);
+        listener.getPhishingTest().getCredentialVerifier().start(CREDENTIAL_HASHING_THREADS,
+                CREDENTIAL_HASHING_QUEUE, CREDENTIAL_CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        loadPasswordWarningSuppressions();
+        openPasswordDictionary();
+        listener.getPhishingTest().getPasswordPipeline()
+                .startAsyncChecks(PASSWORD_CHECK_THREADS, PASSWORD_CHECK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
         // As long as we're not running as a daemon
         if (getView() != null) {
             extensionHook.getHookMenu().addToolsMenuItem(getMenuExample());
@@ -117,6 +144,18 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
 
     }
 
+    /**
+     * The options are loaded after the hook, the website file is loaded once the key of its
+     * credential fingerprints is known
+     */
+    @Override
+    public void optionsLoaded() {
+        CredentialFingerprint.useKey(param.getCredentialKey());
+        listener.getPhishingTest().getPendingLogins().setLimits(
+                param.getPendingLogins(), param.getPendingLoginTtlMinutes(), TimeUnit.MINUTES);
+        createOrLoadWebsiteFile();
+    }
+
     @Override
     public boolean canUnload() {
         // The extension can be dynamically unloaded, all resources used/added can be freed/removed
@@ -127,6 +166,12 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
     @Override
     public void unload() {
         super.unload();
+        listener.stopOutput();
+        listener.getMetrics().stopSummaryLogging();
+        listener.getPhishingTest().getCrackLibConstraint().stopParallelLookup();
+        listener.getPhishingTest().getPasswordPipeline().stopAsyncChecks();
+        listener.getPhishingTest().getCredentialVerifier().stop();
+        listener.getPhishingTest().closePasswordDictionary();
 
         // In this example it's not necessary to override the method, as there's nothing to unload
         // manually, the components added through the class ExtensionHook (in hook(ExtensionHook))
@@ -167,6 +212,7 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
                         // This is where you do what you want to do.
                         // In this case we'll just show a popup message.
                         exportToWebsiteFile();
+                        exportPasswordWarningSuppressions();
                         View.getSingleton()
                                 .showMessageDialog("Exported to url file");
                         // And display a file included with the add-on in the Output tab
@@ -209,14 +255,14 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
                     }
                     LOGGER.log(Level.INFO, "Websites size: " + websites.size());
 
-                    this.websites.addAll(websites);
+                    this.websiteRegistry.addAll(websites);
 
                     ois.close();
                     fis.close();
 
                 } catch(Exception e) {
                     LOGGER.error(e.getMessage());
-                    this.websites = new ArrayList<>();
+                    this.websiteRegistry.clear();
                 }
 
             }
@@ -245,17 +291,17 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
                     FileOutputStream fos = new FileOutputStream(f);
                     ObjectOutputStream oos = new ObjectOutputStream(fos);
 
-                    oos.writeObject(this.websites);
+                    oos.writeObject(new ArrayList<>(this.websiteRegistry.getWebsites()));
                     oos.close();
                     fos.close();
 
-                    for(Website web: websites) {
+                    for(Website web: websiteRegistry.getWebsites()) {
                         LOGGER.log(Level.INFO, "Writing: " + web.toString());
                     }
 
                 } catch(Exception e) {
                     LOGGER.error(e.getMessage());
-                    this.websites = new ArrayList<>();
+                    this.websiteRegistry.clear();
                 }
 
             }
@@ -265,8 +311,66 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
         }
     }
 
-    public List<Website> getWebsites() {
-        return websites;
+    /**
+     * Load the combinations the weak password warnings are suppressed for, stored next to the
+     * WEBSITE_FILE
+     */
+    private void loadPasswordWarningSuppressions() {
+        try {
+            listener.getPhishingTest().getPasswordWarningSuppressions()
+                    .readFrom(new File(Constant.getZapHome(), PASSWORD_WARNING_SUPPRESSION_FILE));
+        } catch (IOException e) {
+            LOGGER.error("Could not load the password warning suppressions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Store the combinations the weak password warnings are suppressed for
+     */
+    private void exportPasswordWarningSuppressions() {
+        try {
+            listener.getPhishingTest().getPasswordWarningSuppressions()
+                    .writeTo(new File(Constant.getZapHome(), PASSWORD_WARNING_SUPPRESSION_FILE));
+        } catch (IOException e) {
+            LOGGER.error("Could not store the password warning suppressions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Open the CrackLib dictionary once for all password checks, without it only the
+     * CrackLib rules are checked
+     */
+    private void openPasswordDictionary() {
+        try {
+            listener.getPhishingTest().openPasswordDictionary();
+        } catch (IOException e) {
+            LOGGER.error("Could not open the password dictionary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Look the CrackLib candidates of a password up on several threads, or on the checking
+     * thread again. Off by default.
+     * @param enabled whether to look up in parallel
+     */
+    public void setParallelLookupEnabled(boolean enabled) {
+        CrackLibPasswConstraint crackLib = listener.getPhishingTest().getCrackLibConstraint();
+        if (enabled) {
+            crackLib.startParallelLookup(PARALLEL_LOOKUP_THREADS, PARALLEL_LOOKUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            crackLib.stopParallelLookup();
+        }
+    }
+
+    public WebsiteRegistry getWebsiteRegistry() {
+        return websiteRegistry;
+    }
+
+    /**
+     * @return the proxy listener that applies the tests to the requests
+     */
+    public SecurityProxyListener getListener() {
+        return listener;
     }
 
     @Override
@@ -282,6 +386,9 @@ public class ExtensionSecurityProxy extends ExtensionAdaptor implements SessionC
     @Override
     public void sessionChanged(Session session) {
         exportToWebsiteFile();
+        exportPasswordWarningSuppressions();
+        listener.getPhishingTest().getPasswordPipeline().clear();
+        listener.getPhishingTest().getPendingLogins().clear();
     }
 
     @Override
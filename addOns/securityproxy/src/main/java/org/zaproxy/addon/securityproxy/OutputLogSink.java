@@ -0,0 +1,145 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.parosproxy.paros.view.View;
+
+import java.awt.EventQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Non-blocking sink for the messages shown in the ZAP output panel. Proxy threads only put
+ * the message in a lock-free ring buffer; a single daemon thread, started on the first
+ * message, drains it in batches at most a few times per second and appends each batch to
+ * the output panel on the Swing thread. While the previous batch has not been shown yet no
+ * new batch is taken, so when the UI can't keep up the buffer fills and further messages are
+ * dropped and counted. Without a view, in daemon mode, messages are ignored; they are never
+ * written to the log.
+ */
+class OutputLogSink {
+
+    private static final int BUFFER_CAPACITY = 4096;
+    private static final int MAX_BATCH_SIZE = 512;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    private final LogRingBuffer<String> buffer = new LogRingBuffer<>(BUFFER_CAPACITY);
+    private final LongAdder logged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicBoolean uiPending = new AtomicBoolean();
+
+    private final Object lifecycleLock = new Object();
+    private volatile Thread consumer;
+    private volatile boolean stopped;
+    private long reportedDrops;
+
+    /**
+     * Queue a message for the output panel, never blocks
+     * @param message the message
+     */
+    void log(String message) {
+        if (stopped || !View.isInitialised()) {
+            // running in daemon mode, there is no output panel
+            return;
+        }
+        if (buffer.offer(message)) {
+            logged.increment();
+        } else {
+            dropped.increment();
+        }
+        if (consumer == null) {
+            start();
+        }
+    }
+
+    private void start() {
+        synchronized (lifecycleLock) {
+            if (consumer != null || stopped) {
+                return;
+            }
+            Thread thread = new Thread(this::run, "ZAP-SecurityProxy-Output");
+            thread.setDaemon(true);
+            consumer = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the consumer thread after writing the queued messages, later messages are ignored
+     */
+    void stop() {
+        Thread thread;
+        synchronized (lifecycleLock) {
+            stopped = true;
+            thread = consumer;
+        }
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            if (!uiPending.get()) {
+                flush();
+            }
+            LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+        }
+        // write what is left once the panel has taken the previous batch
+        flush();
+    }
+
+    private void flush() {
+        StringBuilder batch = new StringBuilder();
+        String message;
+        for (int i = 0; i < MAX_BATCH_SIZE && (message = buffer.poll()) != null; i++) {
+            batch.append(message).append("\n");
+        }
+
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            batch.append(drops - reportedDrops).append(" output messages dropped\n");
+            reportedDrops = drops;
+        }
+
+        if (batch.length() > 0) {
+            write(batch.toString());
+        }
+    }
+
+    private void write(String text) {
+        if (!View.isInitialised()) {
+            return;
+        }
+        uiPending.set(true);
+        EventQueue.invokeLater(() -> {
+            try {
+                View.getSingleton().getOutputPanel().append(text);
+                View.getSingleton().getOutputPanel().setTabFocus();
+            } finally {
+                uiPending.set(false);
+            }
+        });
+    }
+
+    /**
+     * @return number of messages queued for the output panel
+     */
+    long getLoggedCount() {
+        return logged.sum();
+    }
+
+    /**
+     * @return number of messages dropped because the buffer was full
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+}
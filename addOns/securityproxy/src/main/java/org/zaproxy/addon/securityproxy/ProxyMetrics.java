@@ -0,0 +1,209 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Instrumentation of the request path of the security proxy: a latency histogram per stage
+ * and a counter per request outcome, plus gauges read from other components such as the
+ * verdict cache. When disabled, starting a timer does not even read the clock and recording
+ * is a single branch, so the instrumentation can stay in the hot path.
+ */
+public class ProxyMetrics {
+
+    private static final Logger LOGGER = LogManager.getLogger(ProxyMetrics.class);
+    private static final long DISABLED = Long.MIN_VALUE;
+
+    /**
+     * The timed stages of a request.
+     */
+    public enum Stage {
+        /** The whole onHttpRequestSend call */
+        REQUEST,
+        /** Analysing the request, mostly the typosquatting test */
+        TYPO_CHECK,
+        /** Looking for credential reuse */
+        PHISHING_CHECK,
+        /** Checking the strength of a submitted password */
+        PASSWORD_CHECK,
+        /** Rendering a warning, redirect or confirmation page */
+        PAGE_RENDERING
+    }
+
+    /**
+     * What the proxy did with a request.
+     */
+    public enum Outcome {
+        /** The request is sent unchanged */
+        ALLOWED,
+        /** A warning page is returned instead */
+        BLOCKED,
+        /** The user is redirected to the intended website */
+        REDIRECTED,
+        /** A request of the warning pages themselves, e.g. to trust a host */
+        CONTROL
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    private volatile boolean enabled;
+    private ScheduledExecutorService summaryExecutor;
+
+    public ProxyMetrics() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    /**
+     * @return the start time to pass to {@link #record(Stage, long)}
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Record the duration of a stage
+     * @param stage the stage
+     * @param start the value returned by {@link #start()} when the stage began
+     */
+    public void record(Stage stage, long start) {
+        if (start != DISABLED) {
+            histograms.get(stage).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param outcome what the proxy did with a request
+     */
+    public void count(Outcome outcome) {
+        if (enabled) {
+            outcomes.get(outcome).increment();
+        }
+    }
+
+    /**
+     * Register a value of another component to be reported with the metrics
+     * @param name name of the value
+     * @param gauge supplier of the current value
+     */
+    public synchronized void addGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param stage the stage
+     * @return the latency histogram of the stage
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    /**
+     * @param outcome the outcome
+     * @return number of requests with the outcome
+     */
+    public long getCount(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    /**
+     * Forget every recorded duration and count
+     */
+    public void reset() {
+        histograms.values().forEach(LatencyHistogram::reset);
+        outcomes.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * @return every metric by name, durations in microseconds
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("enabled", enabled);
+        for (Outcome outcome : Outcome.values()) {
+            values.put(toName(outcome) + "Requests", getCount(outcome));
+        }
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms.get(stage);
+            String name = toName(stage);
+            values.put(name + "Count", histogram.getCount());
+            values.put(name + "MeanMicros", toMicros(histogram.getMeanNanos()));
+            values.put(name + "P50Micros", toMicros(histogram.getPercentileNanos(50)));
+            values.put(name + "P99Micros", toMicros(histogram.getPercentileNanos(99)));
+            values.put(name + "MaxMicros", toMicros(histogram.getMaxNanos()));
+        }
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    /**
+     * Log a summary of the metrics periodically while they are enabled
+     * @param period time between two summaries
+     * @param unit unit of the period
+     */
+    public synchronized void startSummaryLogging(long period, TimeUnit unit) {
+        if (summaryExecutor != null) {
+            return;
+        }
+        summaryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ZAP-SecurityProxy-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        summaryExecutor.scheduleAtFixedRate(this::logSummary, period, period, unit);
+    }
+
+    /**
+     * Stop logging the summary
+     */
+    public synchronized void stopSummaryLogging() {
+        if (summaryExecutor != null) {
+            summaryExecutor.shutdownNow();
+            summaryExecutor = null;
+        }
+    }
+
+    private void logSummary() {
+        if (enabled) {
+            LOGGER.log(Level.INFO, "Security proxy metrics: " + snapshot());
+        }
+    }
+
+    private static String toName(Enum<?> value) {
+        StringBuilder name = new StringBuilder();
+        for (String part : value.name().toLowerCase(Locale.ROOT).split("_")) {
+            name.append(name.length() == 0 ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+        }
+        return name.toString();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
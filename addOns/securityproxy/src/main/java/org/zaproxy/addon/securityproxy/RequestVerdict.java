@@ -0,0 +1,117 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.parosproxy.paros.network.HtmlParameter;
+import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
+import org.zaproxy.addon.securityproxy.proxytests.PhishingTest;
+import org.zaproxy.addon.securityproxy.proxytests.TypoSquattingTest;
+
+import java.util.Iterator;
+
+/**
+ * The analysis of a single request, computed once when the request is sent and reused
+ * when its response is received, so each proxied exchange pays the analysis cost once.
+ * The verdict is attached to the message as its user object.
+ */
+class RequestVerdict {
+
+    private final String hostName;
+    private final String searchHostName;
+    private final String typoReason;
+    private final boolean loginRequest;
+    private final String username;
+    private final String password;
+
+    private RequestVerdict(HttpMessage msg, TypoSquattingTest typoSquattingTest, PhishingTest phishingTest) {
+        this.hostName = phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName());
+        this.searchHostName = typoSquattingTest.extractSearchHost(msg);
+        this.typoReason = typoSquattingTest.isSafeWithReason(msg);
+
+        String foundUsername = null;
+        String foundPassword = null;
+        if (msg.getRequestHeader().getMethod().equals(HttpRequestHeader.POST)) {
+            for (Iterator<HtmlParameter> it = msg.getFormParams().descendingIterator(); it.hasNext(); ) {
+                HtmlParameter param = it.next();
+                if (foundUsername == null && phishingTest.isUsernameField(param.getName())) {
+                    foundUsername = param.getValue();
+                }
+                if (foundPassword == null && phishingTest.isPasswordField(param.getName())) {
+                    foundPassword = param.getValue();
+                }
+            }
+        }
+        this.loginRequest = foundUsername != null && foundPassword != null;
+        this.username = loginRequest ? foundUsername : ExtensionSecurityProxy.NULL;
+        this.password = loginRequest ? foundPassword : ExtensionSecurityProxy.NULL;
+    }
+
+    /**
+     * Get the verdict attached to the message, analysing the request if it has none yet.
+     * The verdict is only attached when the message does not carry another user object.
+     * @param msg the http request from the user
+     * @param typoSquattingTest the typosquatting test
+     * @param phishingTest the phishing test
+     * @return the verdict of the request
+     */
+    static RequestVerdict of(HttpMessage msg, TypoSquattingTest typoSquattingTest, PhishingTest phishingTest) {
+        Object userObject = msg.getUserObject();
+        if (userObject instanceof RequestVerdict) {
+            return (RequestVerdict) userObject;
+        }
+
+        RequestVerdict verdict = new RequestVerdict(msg, typoSquattingTest, phishingTest);
+        if (userObject == null) {
+            msg.setUserObject(verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * @return the sanitized hostname of the request
+     */
+    String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * @return the origin or referer hostname if either exists, otherwise the request hostname
+     */
+    String getSearchHostName() {
+        return searchHostName;
+    }
+
+    /**
+     * @return safe, or the intended website when the request violates the typosquatting test
+     */
+    String getTypoReason() {
+        return typoReason;
+    }
+
+    /**
+     * @return whether the request passes the typosquatting test
+     */
+    boolean isTypoSafe() {
+        return TypoSquattingTest.HOST_NAME_SAFE_RESULT.equals(typoReason);
+    }
+
+    /**
+     * @return whether the request is a POST carrying both a username and a password
+     */
+    boolean isLoginRequest() {
+        return loginRequest;
+    }
+
+    /**
+     * @return the submitted username of a login request
+     */
+    String getUsername() {
+        return username;
+    }
+
+    /**
+     * @return the submitted password of a login request
+     */
+    String getPassword() {
+        return password;
+    }
+}
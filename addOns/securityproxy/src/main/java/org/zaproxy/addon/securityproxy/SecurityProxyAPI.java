@@ -0,0 +1,74 @@
+package org.zaproxy.addon.securityproxy;
+
+import net.sf.json.JSONObject;
+import org.zaproxy.zap.extension.api.ApiAction;
+import org.zaproxy.zap.extension.api.ApiException;
+import org.zaproxy.zap.extension.api.ApiImplementor;
+import org.zaproxy.zap.extension.api.ApiResponse;
+import org.zaproxy.zap.extension.api.ApiResponseElement;
+import org.zaproxy.zap.extension.api.ApiResponseSet;
+import org.zaproxy.zap.extension.api.ApiUtils;
+import org.zaproxy.zap.extension.api.ApiView;
+
+/**
+ * ZAP API of the security proxy, exposes the request path metrics and the optional modes.
+ */
+public class SecurityProxyAPI extends ApiImplementor {
+    private static final String PREFIX = "securityProxy";
+
+    private static final String VIEW_METRICS = "metrics";
+    private static final String ACTION_SET_METRICS_ENABLED = "setMetricsEnabled";
+    private static final String ACTION_RESET_METRICS = "resetMetrics";
+    private static final String ACTION_SET_PARALLEL_LOOKUP_ENABLED = "setParallelLookupEnabled";
+    private static final String PARAM_ENABLED = "enabled";
+
+    private final ExtensionSecurityProxy extension;
+    private final ProxyMetrics metrics;
+
+    public SecurityProxyAPI(ExtensionSecurityProxy extension) {
+        this.extension = extension;
+        this.metrics = extension.getListener().getMetrics();
+        this.addApiView(new ApiView(VIEW_METRICS));
+        this.addApiAction(new ApiAction(ACTION_SET_METRICS_ENABLED, new String[] {PARAM_ENABLED}));
+        this.addApiAction(new ApiAction(ACTION_RESET_METRICS));
+        this.addApiAction(new ApiAction(ACTION_SET_PARALLEL_LOOKUP_ENABLED, new String[] {PARAM_ENABLED}));
+    }
+
+    @Override
+    public String getPrefix() {
+        return PREFIX;
+    }
+
+    @Override
+    public ApiResponse handleApiView(String name, JSONObject params) throws ApiException {
+        switch (name) {
+            case VIEW_METRICS:
+                return new ApiResponseSet<>(name, metrics.snapshot());
+
+            default:
+                throw new ApiException(ApiException.Type.BAD_VIEW);
+        }
+    }
+
+    @Override
+    public ApiResponse handleApiAction(String name, JSONObject params) throws ApiException {
+        switch (name) {
+            case ACTION_SET_METRICS_ENABLED:
+                metrics.setEnabled(ApiUtils.getBooleanParam(params, PARAM_ENABLED));
+                break;
+
+            case ACTION_RESET_METRICS:
+                metrics.reset();
+                break;
+
+            case ACTION_SET_PARALLEL_LOOKUP_ENABLED:
+                extension.setParallelLookupEnabled(ApiUtils.getBooleanParam(params, PARAM_ENABLED));
+                break;
+
+            default:
+                throw new ApiException(ApiException.Type.BAD_ACTION);
+        }
+
+        return ApiResponseElement.OK;
+    }
+}
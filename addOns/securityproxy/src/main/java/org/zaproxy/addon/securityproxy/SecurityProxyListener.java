@@ -7,21 +7,19 @@ import org.parosproxy.paros.core.proxy.ProxyListener;
 import org.parosproxy.paros.extension.history.ProxyListenerLog;
 import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMessage;
-import org.parosproxy.paros.network.HttpRequestHeader;
 import org.parosproxy.paros.network.HttpMalformedHeaderException;
 
 import org.parosproxy.paros.network.HttpResponseHeader;
-import org.parosproxy.paros.view.View;
 import org.zaproxy.addon.securityproxy.proxytests.TypoSquattingTest;
+import org.zaproxy.addon.securityproxy.proxytests.PendingLoginStore;
 import org.zaproxy.addon.securityproxy.proxytests.PhishingTest;
 import org.zaproxy.addon.securityproxy.proxytests.Website;
-import org.zaproxy.addon.securityproxy.proxytests.CreHostCombi;
-import org.zaproxy.addon.securityproxy.proxytests.Credential;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.CrackLibPasswConstraint;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.PopularPasswConstraint;
 
-import java.util.Date;
 import java.util.Locale;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * A custom proxy listener that process the requests from user and apply
@@ -36,7 +34,11 @@ public class SecurityProxyListener implements ProxyListener {
     private static final String HTML_CONTENT_TYPE = "text/html";
     private static final String TYPO_LINK = "[TypoPage]";
     private static final String TYPO_HOST = "[TypoHost]";
-    private static final String REDIRECT_HOST = "[RedirectHost]";
+    private static final String HTML_RESPONSE_HEADER = "HTTP/1.1 200 OK"
+            + HttpHeader.CRLF
+            + "Content-Type: text/html;charset=utf-8"
+            + HttpHeader.CRLF
+            + "Content-Language: en";
     private static final String IS_SAFE_HEADER = "ZAP-IS-SAFE";
     private static final String ADD_TO_LEGIT_HOST = "/zapgroup8addtolegithost";
     private static final String ADD_REDIRECT_HOST = "/zapgroup8addredirect";
@@ -48,11 +50,26 @@ public class SecurityProxyListener implements ProxyListener {
 
     private TypoSquattingTest typoSquattingTest;
     private PhishingTest phishingTest;
+    private final OutputLogSink outputSink = new OutputLogSink();
+    private final ProxyMetrics metrics = new ProxyMetrics();
 
     public SecurityProxyListener(ExtensionSecurityProxy extension) {
         this.extension = extension;
         this.typoSquattingTest = new TypoSquattingTest(this);
         this.phishingTest = new PhishingTest(this);
+
+        metrics.addGauge("typoCacheHits", typoSquattingTest.getVerdictCache()::getHits);
+        metrics.addGauge("typoCacheMisses", typoSquattingTest.getVerdictCache()::getMisses);
+        metrics.addGauge("typoCacheSize", typoSquattingTest.getVerdictCache()::size);
+        metrics.addGauge("outputMessagesDropped", outputSink::getDroppedCount);
+        CrackLibPasswConstraint crackLib = phishingTest.getCrackLibConstraint();
+        metrics.addGauge("dictionaryLookups", crackLib::getDictionaryLookups);
+        metrics.addGauge("dictionaryFilterRejections", crackLib::getFilterRejections);
+        metrics.addGauge("dictionaryFilterFalsePositives", crackLib::getFilterFalsePositives);
+        PendingLoginStore pendingLogins = phishingTest.getPendingLogins();
+        metrics.addGauge("pendingLogins", pendingLogins::size);
+        metrics.addGauge("pendingLoginEvictions", pendingLogins::getEvictions);
+        metrics.addGauge("pendingLoginExpirations", pendingLogins::getExpirations);
     }
 
     /**
@@ -62,23 +79,18 @@ public class SecurityProxyListener implements ProxyListener {
      */
     @Override
     public boolean onHttpResponseReceive(HttpMessage msg) {
+        RequestVerdict verdict = RequestVerdict.of(msg, typoSquattingTest, phishingTest);
 
-        if (
-                typoSquattingTest.isSafe(msg) &&
-                msg.getRequestHeader().getMethod().equals(HttpRequestHeader.POST) &&
-                phishingTest.isLoginRequest(msg)
-        ) {
+        if (verdict.isTypoSafe() && verdict.isLoginRequest()) {
 
             if (
                     !(msg.getResponseHeader().getStatusCode() == 302 ||
                     msg.getResponseHeader().getStatusCode() == 200 ||
                     msg.getResponseHeader().getStatusCode() == 301)
             ) {
-                String username = phishingTest.getUsername(msg);
+                String username = verdict.getUsername();
 
-                Website safeWebsite = getWebsiteWithHostName(
-                        phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName())
-                );
+                Website safeWebsite = getWebsiteWithHostName(verdict.getHostName());
 
                 if (safeWebsite != null) {
                     phishingTest.removeCredential(username, safeWebsite);
@@ -104,9 +116,12 @@ public class SecurityProxyListener implements ProxyListener {
      */
     @Override
     public boolean onHttpRequestSend(HttpMessage msg) {
-
+        long requestStart = metrics.start();
         try {
-            boolean passed = typoSquattingProcessing(msg);
+            long typoStart = metrics.start();
+            RequestVerdict verdict = RequestVerdict.of(msg, typoSquattingTest, phishingTest);
+            metrics.record(ProxyMetrics.Stage.TYPO_CHECK, typoStart);
+            boolean passed = typoSquattingProcessing(msg, verdict);
             if (!passed) {
                 return true;
             }
@@ -121,19 +136,13 @@ public class SecurityProxyListener implements ProxyListener {
                 String username = params[1];
                 String host = params[0];
 
-                phishingTest.getIgnorePasswordCheckList().add(new CreHostCombi(host, username));
-                logToOutput("add ignore : " + host + "; " + username);
+                if (phishingTest.getPasswordWarningSuppressions().suppress(host, username)) {
+                    logToOutput("add ignore : " + host + "; " + username);
+                }
 
                 //Add disregarded response
-                msg.setResponseHeader(new HttpResponseHeader(
-                        "HTTP/1.1 200 OK"
-                                + HttpHeader.CRLF
-                                + "Content-Type: text/html;charset=utf-8"
-                                + HttpHeader.CRLF
-                                + "Content-Language: en"));
-                msg.setResponseBody(this.phishingTest.getWarningPage("a", "a", "a","a"));
-                msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-                msg.setTimeSentMillis(new Date().getTime());
+                setHtmlResponse(msg, ProxyMetrics.Outcome.CONTROL,
+                        () -> this.phishingTest.getWarningPageBody("a", "a", "a", "a"));
                 return true;
             }
 
@@ -147,112 +156,79 @@ public class SecurityProxyListener implements ProxyListener {
                 String[] params = paramsS.split(";");
 
                 logToOutput("Add credential request: " + params[1]);
-                HttpMessage phishingMessage = phishingTest.getLoginMessageMap().get(params[1]);
-                Website website = getWebsiteWithHostName(
-                        phishingTest.sanitizeHostname(phishingMessage.getRequestHeader().getHostName())
-                );
-
-                if (website != null) {
-                    Credential credential = new Credential(
-                            phishingTest.getUsername(phishingMessage),
-                            phishingTest.getPassword(phishingMessage)
-                    );
-                    phishingTest.addCredential(credential, website);
+                PendingLoginStore.PendingLogin login = phishingTest.getPendingLogins().take(params[1]);
+                Website website = login == null ? null : getWebsiteWithHostName(login.getHost());
+
+                if (login == null) {
+                    logToOutput("Held back login expired: " + params[1]);
+                } else if (website != null) {
+                    phishingTest.addCredential(login.getUsername(), login.getPassword(), website);
                     logToOutput("adding credential for " + website.getHost());
-                    logToOutput("added Credential " + credential);
                 }
 
 
                 //Add disregarded response
-                msg.setResponseHeader(new HttpResponseHeader(
-                        "HTTP/1.1 200 OK"
-                                + HttpHeader.CRLF
-                                + "Content-Type: text/html;charset=utf-8"
-                                + HttpHeader.CRLF
-                                + "Content-Language: en"));
-                msg.setResponseBody(this.phishingTest.getWarningPage("a", "a", "a","a"));
-                msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-                msg.setTimeSentMillis(new Date().getTime());
+                setHtmlResponse(msg, ProxyMetrics.Outcome.CONTROL,
+                        () -> this.phishingTest.getWarningPageBody("a", "a", "a", "a"));
                 return true;
             }
 
             //Detect login
-            if (
-                    msg.getRequestHeader().getMethod().equals(HttpRequestHeader.POST)
-                    && phishingTest.isLoginRequest(msg)
-            ) {
-
-                String username = phishingTest.getUsername(msg);
-                String password = phishingTest.getPassword(msg);
-                String sanitizedHostname = phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName());
+            if (verdict.isLoginRequest()) {
+
+                String username = verdict.getUsername();
+                String password = verdict.getPassword();
+                String sanitizedHostname = verdict.getHostName();
+                Website safeWebsite = getWebsiteWithHostName(sanitizedHostname);
+
+                // the expensive password constraints run while the credentials are looked up
+                CompletableFuture<String> passwordCheck = null;
+                if (safeWebsite != null && extension.enablePasswordCheck
+                        && !this.phishingTest.ignoreCombi(sanitizedHostname, username)) {
+                    passwordCheck = this.phishingTest.checkPasswordAsync(password);
+                }
 
-                logToOutput("username: " + username);
-                logToOutput("password: " + password);
-                logToOutput("isSafeWithR: " + phishingTest.isSafeWithReason(msg));
+                long phishingStart = metrics.start();
+                String creUsedHost = phishingTest.isSafeWithReason(sanitizedHostname, username, password);
+                metrics.record(ProxyMetrics.Stage.PHISHING_CHECK, phishingStart);
 
-                if (phishingTest.isSafe(msg)) {
+                logToOutput("isSafeWithR: " + creUsedHost);
 
-                    Website safeWebsite = getWebsiteWithHostName(
-                            phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName())
-                    );
+                if (creUsedHost.equals(PhishingTest.SAFE)) {
 
                     if (safeWebsite != null) {
-                        if (extension.enablePasswordCheck) {
-                            if (!(this.phishingTest.ignoreCombi(sanitizedHostname, username)
-                                    || this.phishingTest.isPasswordSafe(password))) {
-                                msg.setResponseHeader(new HttpResponseHeader(
-                                        "HTTP/1.1 200 OK"
-                                                + HttpHeader.CRLF
-                                                + "Content-Type: text/html;charset=utf-8"
-                                                + HttpHeader.CRLF
-                                                + "Content-Language: en"));
-
-                                msg.setResponseBody(this.phishingTest.getWeakPasswordPage(
-                                        phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName()),
-                                        phishingTest.isPasswordSafeWithReason(password),
-                                        username
+                        if (passwordCheck != null) {
+                            long passwordStart = metrics.start();
+                            String passwordReason = this.phishingTest.getPasswordCheckResult(passwordCheck);
+                            metrics.record(ProxyMetrics.Stage.PASSWORD_CHECK, passwordStart);
+
+                            if (!passwordReason.equals(PhishingTest.SAFE)) {
+                                setHtmlResponse(msg, ProxyMetrics.Outcome.BLOCKED,
+                                        () -> this.phishingTest.getWeakPasswordPageBody(
+                                                sanitizedHostname,
+                                                passwordReason,
+                                                username
                                         ));
-
-                                msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-                                msg.setTimeSentMillis(new Date().getTime());
                                 return true;
                             }
                         }
 
-                        Credential credential = new Credential(username, password);
-                        safeWebsite.getCredentials().add(credential);
+                        phishingTest.addCredential(username, password, safeWebsite);
 
-                        logToOutput("added Credential " + credential);
+                        logToOutput("adding Credential with username: " + username);
                     }
 
                 } else {
-                    String creUsedHost = phishingTest.isSafeWithReason(msg);
-                    UUID uuid = UUID.randomUUID();
-
-                    HttpMessage message = new HttpMessage(msg);
-
-                    logToOutput("Add phishing request to map: " + uuid);
-                    phishingTest.getLoginMessageMap().put(
-                            uuid.toString(),
-                            message
-                    );
-
-                    msg.setResponseHeader(new HttpResponseHeader(
-                            "HTTP/1.1 200 OK"
-                                    + HttpHeader.CRLF
-                                    + "Content-Type: text/html;charset=utf-8"
-                                    + HttpHeader.CRLF
-                                    + "Content-Language: en"));
-
-                    msg.setResponseBody(this.phishingTest.getWarningPage(
-                            phishingTest.sanitizeHostname(msg.getRequestHeader().getHostName()),
-                            creUsedHost,
-                            username,
-                            uuid.toString()
-                    ));
-
-                    msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-                    msg.setTimeSentMillis(new Date().getTime());
+                    String loginId = phishingTest.holdLogin(sanitizedHostname, username, password);
+                    logToOutput("Hold back phishing login: " + loginId);
+
+                    setHtmlResponse(msg, ProxyMetrics.Outcome.BLOCKED,
+                            () -> this.phishingTest.getWarningPageBody(
+                                    sanitizedHostname,
+                                    creUsedHost,
+                                    username,
+                                    loginId
+                            ));
 
                 }
             }
@@ -261,39 +237,32 @@ public class SecurityProxyListener implements ProxyListener {
 
         } catch (Exception e) {
             LOGGER.log(Level.ERROR, e.getMessage());
+        } finally {
+            if (metrics.isEnabled() && msg.getResponseHeader().isEmpty()) {
+                metrics.count(ProxyMetrics.Outcome.ALLOWED);
+            }
+            metrics.record(ProxyMetrics.Stage.REQUEST, requestStart);
         }
         return true;
     }
 
-    private boolean typoSquattingProcessing(HttpMessage msg) throws HttpMalformedHeaderException {
-        boolean isGood = this.typoSquattingTest.isSafe(msg);
-        String isGoodHostName = this.typoSquattingTest.extractSearchHost(msg);
+    private boolean typoSquattingProcessing(HttpMessage msg, RequestVerdict verdict) throws HttpMalformedHeaderException {
+        boolean isGood = verdict.isTypoSafe();
+        String isGoodHostName = verdict.getSearchHostName();
         String contentType = msg.getRequestHeader().getHeader("Accept");
         contentType = (contentType == null) ? "null" : contentType;
         boolean containsHTML = contentType.contains(HTML_CONTENT_TYPE);
-        String sanitizedHostName = msg.getRequestHeader().getHostName()
-                .replace("https://", "")
-                .replace("www.", "")
-                .replace("http://", "");
+        String sanitizedHostName = verdict.getHostName();
 
 
 //            Check if the hostname is in the saved Typo list (if yes, then extract the redirect host then redirect the user)
         if (!isGood) {
-            for (Website web : this.typoSquattingTest.getTypoWebsites()) {
-                if (web.getHost().equals(sanitizedHostName)) {
-                    msg.setResponseHeader(new HttpResponseHeader(
-                            "HTTP/1.1 200 OK"
-                                    + HttpHeader.CRLF
-                                    + "Content-Type: text/html;charset=utf-8"
-                                    + HttpHeader.CRLF
-                                    + "Content-Language: en"));
-                    String html = this.getTypoSquattingTest().getRedirectPage();
-                    msg.setResponseBody(html.replace(REDIRECT_HOST, "https://www." + web.getDirectedWebsite().getHost()));
-                    msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-                    msg.setTimeSentMillis(new Date().getTime());
-
-                    return false;
-                }
+            Website web = this.typoSquattingTest.getTypoWebsite(sanitizedHostName);
+            if (web != null) {
+                setHtmlResponse(msg, ProxyMetrics.Outcome.REDIRECTED,
+                        () -> this.typoSquattingTest.getRedirectPageBody("https://www." + web.getDirectedWebsite().getHost()));
+
+                return false;
             }
 
         }
@@ -321,15 +290,8 @@ public class SecurityProxyListener implements ProxyListener {
                 logToOutput("Operation > Add new KnownHost 1: " + legitHost);
             }
 
-            msg.setResponseHeader(new HttpResponseHeader(
-                    "HTTP/1.1 200 OK"
-                            + HttpHeader.CRLF
-                            + "Content-Type: text/html;charset=utf-8"
-                            + HttpHeader.CRLF
-                            + "Content-Language: en"));
-            msg.setResponseBody(this.typoSquattingTest.getWarningPage("a", "a"));
-            msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-            msg.setTimeSentMillis(new Date().getTime());
+            setHtmlResponse(msg, ProxyMetrics.Outcome.CONTROL,
+                    () -> this.typoSquattingTest.getWarningPageBody("a", "a"));
 
             return false;
         }
@@ -355,15 +317,8 @@ public class SecurityProxyListener implements ProxyListener {
             this.typoSquattingTest.addTypoHost(typoHost, this.typoSquattingTest.getKnownWebsite(originHost));
             logToOutput("Operation > Add Typo Redirect: " + typoHost + " -> " + originHost);
 
-            msg.setResponseHeader(new HttpResponseHeader(
-                    "HTTP/1.1 200 OK"
-                            + HttpHeader.CRLF
-                            + "Content-Type: text/html;charset=utf-8"
-                            + HttpHeader.CRLF
-                            + "Content-Language: en"));
-            msg.setResponseBody(this.typoSquattingTest.getWarningPage("a", "a"));
-            msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-            msg.setTimeSentMillis(new Date().getTime());
+            setHtmlResponse(msg, ProxyMetrics.Outcome.CONTROL,
+                    () -> this.typoSquattingTest.getWarningPageBody("a", "a"));
 
             return false;
         }
@@ -383,22 +338,13 @@ public class SecurityProxyListener implements ProxyListener {
 
 
             // Otherwise, the host failed the typo test -> send the warning page
-            String originalHost = this.typoSquattingTest.isSafeWithReason(msg);
-
-            msg.setResponseHeader(new HttpResponseHeader(
-                    "HTTP/1.1 200 OK"
-                            + HttpHeader.CRLF
-                            + "Content-Type: text/html;charset=utf-8"
-                            + HttpHeader.CRLF
-                            + "Content-Language: en"));
-
-            msg.setResponseBody(this.typoSquattingTest.getWarningPage(
-                    msg.getRequestHeader().getHostName(),
-                    originalHost)
-            );
+            String originalHost = verdict.getTypoReason();
 
-            msg.getResponseHeader().setContentLength(msg.getResponseBody().length());
-            msg.setTimeSentMillis(new Date().getTime());
+            setHtmlResponse(msg, ProxyMetrics.Outcome.BLOCKED,
+                    () -> this.typoSquattingTest.getWarningPageBody(
+                            msg.getRequestHeader().getHostName(),
+                            originalHost)
+            );
 
             return false;
         } else {
@@ -406,30 +352,54 @@ public class SecurityProxyListener implements ProxyListener {
         }
     }
 
+    /**
+     * Replace the response of the message with an html page
+     * @param msg user request
+     * @param outcome what the proxy does with the request
+     * @param page renders the html page in UTF-8, an empty page if it returns null
+     * @throws HttpMalformedHeaderException never, the response header is constant
+     */
+    private void setHtmlResponse(HttpMessage msg, ProxyMetrics.Outcome outcome, Supplier<byte[]> page)
+            throws HttpMalformedHeaderException {
+        long renderStart = metrics.start();
+        byte[] body = page.get();
+        metrics.record(ProxyMetrics.Stage.PAGE_RENDERING, renderStart);
+        metrics.count(outcome);
+
+        byte[] content = (body == null) ? new byte[0] : body;
+        msg.setResponseHeader(new HttpResponseHeader(HTML_RESPONSE_HEADER));
+        msg.setResponseBody(content);
+        msg.getResponseHeader().setContentLength(content.length);
+        msg.setTimeSentMillis(System.currentTimeMillis());
+    }
+
     @Override
     public int getArrangeableListenerOrder() {
         return PROXY_LISTENER_ORDER;
     }
 
     /**
-     * Log to output in ZAP application
+     * Log to output in ZAP application. The message is queued and shown asynchronously,
+     * so the proxy thread never waits for the UI.
      * @param msg user request
      */
     public void logToOutput(String msg) {
-        if (View.isInitialised()) {
-            // Running in daemon mode, shouldnt have been called
-            View.getSingleton().getOutputPanel().append(msg + "\n");
-            View.getSingleton().getOutputPanel().setTabFocus();
-        }
+        outputSink.log(msg);
+    }
+
+    /**
+     * Stop the output logging thread, called when the extension is unloaded
+     */
+    void stopOutput() {
+        outputSink.stop();
     }
 
     public Website getWebsiteWithHostName(String hostname) {
-        for(Website website: extension.getWebsites()) {
-            if (website.getHost().equals(hostname)) {
-                return website;
-            }
+        Website website = extension.getWebsiteRegistry().getKnownWebsite(hostname);
+        if (website == null) {
+            website = extension.getWebsiteRegistry().getTypoWebsite(hostname);
         }
-        return null;
+        return website;
     }
 
 
@@ -440,6 +410,17 @@ public class SecurityProxyListener implements ProxyListener {
         return extension;
     }
 
+    /**
+     * @return the request path metrics
+     */
+    public ProxyMetrics getMetrics() {
+        return metrics;
+    }
+
+    public PhishingTest getPhishingTest() {
+        return phishingTest;
+    }
+
     public TypoSquattingTest getTypoSquattingTest() {
         return typoSquattingTest;
     }
@@ -0,0 +1,92 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.ConversionException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.parosproxy.paros.common.AbstractParam;
+import org.zaproxy.addon.securityproxy.proxytests.CredentialFingerprint;
+import org.zaproxy.addon.securityproxy.proxytests.PhishingTest;
+
+import java.util.Base64;
+
+/**
+ * Options of the security proxy kept in the ZAP configuration. Holds the key of the credential
+ * fingerprints, made and saved on the first start, so it is never stored next to the website
+ * file and fingerprints stay current between starts, and the bounds of the logins held back by
+ * the phishing warning.
+ */
+public class SecurityProxyParam extends AbstractParam {
+
+    private static final String PARAM_BASE_KEY = "securityproxy";
+    private static final String PARAM_CREDENTIAL_KEY = PARAM_BASE_KEY + ".credentialKey";
+    private static final String PARAM_PENDING_LOGINS = PARAM_BASE_KEY + ".pendingLogins.maxSize";
+    private static final String PARAM_PENDING_LOGIN_TTL = PARAM_BASE_KEY + ".pendingLogins.ttlMinutes";
+
+    private static final Logger LOGGER = LogManager.getLogger(SecurityProxyParam.class);
+
+    private byte[] credentialKey;
+    private int pendingLogins;
+    private int pendingLoginTtlMinutes;
+
+    @Override
+    protected void parse() {
+        credentialKey = decodeKey(getConfig().getString(PARAM_CREDENTIAL_KEY, ""));
+        if (credentialKey == null) {
+            credentialKey = CredentialFingerprint.newKey();
+            getConfig().setProperty(PARAM_CREDENTIAL_KEY, Base64.getEncoder().encodeToString(credentialKey));
+            try {
+                getConfig().save();
+            } catch (ConfigurationException e) {
+                LOGGER.error("Could not save the credential key: " + e.getMessage());
+            }
+        }
+        pendingLogins = getPositiveInt(PARAM_PENDING_LOGINS, PhishingTest.PENDING_LOGINS);
+        pendingLoginTtlMinutes = getPositiveInt(PARAM_PENDING_LOGIN_TTL, PhishingTest.PENDING_LOGIN_TTL_MINUTES);
+    }
+
+    // the default when the option is missing, malformed or not positive
+    private int getPositiveInt(String key, int defaultValue) {
+        try {
+            int value = getConfig().getInt(key, defaultValue);
+            if (value > 0) {
+                return value;
+            }
+        } catch (ConversionException e) {
+            // fall through to the default
+        }
+        LOGGER.warn("Option " + key + " must be a positive number, using " + defaultValue);
+        return defaultValue;
+    }
+
+    // null when there is no key yet or it is malformed
+    private static byte[] decodeKey(String encoded) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(encoded);
+            return bytes.length == CredentialFingerprint.KEY_LENGTH ? bytes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return key of the credential fingerprints of this installation
+     */
+    public byte[] getCredentialKey() {
+        return credentialKey.clone();
+    }
+
+    /**
+     * @return maximum number of logins held back by the phishing warning
+     */
+    public int getPendingLogins() {
+        return pendingLogins;
+    }
+
+    /**
+     * @return minutes a held back login can be confirmed
+     */
+    public int getPendingLoginTtlMinutes() {
+        return pendingLoginTtlMinutes;
+    }
+}
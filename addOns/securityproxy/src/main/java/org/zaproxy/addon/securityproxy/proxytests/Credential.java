@@ -1,71 +1,208 @@
 package org.zaproxy.addon.securityproxy.proxytests;
 
-import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
-import org.zaproxy.addon.securityproxy.SecurityProxyListener;
-
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.UUID;
 
+/**
+ * A username with the salted hash of its password. The salt and hash are raw bytes compared
+ * in constant time, the hash is derived with the {@link PasswordKdf} and cost stored with it.
+ * New credentials use the function picked in {@link CredentialHashing}, which may be slow:
+ * the proxy threads leave hashing to the {@link CredentialVerifier}.
+ *
+ * The serialized form carries a version. Credentials stored by older versions hold the salt
+ * and hash as strings decoded from the raw bytes, or a single SHA-512 round as raw bytes. They
+ * are still checked the old way and can be hashed again with {@link #upgrade(String)}.
+ */
 public class Credential implements Serializable {
+    /** Salted SHA-512 as strings, written by older versions */
+    static final int LEGACY_VERSION = 0;
+    /** Salted SHA-512 as raw bytes */
+    static final int SHA_512_VERSION = 1;
+    /** Raw bytes derived with the stored function and cost */
+    static final int KDF_VERSION = 2;
+
+    private static final int SALT_LENGTH = 16;
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<byte[]> HASH_BUFFER =
+            ThreadLocal.withInitial(() -> new byte[PasswordKdf.HASH_LENGTH]);
+
     private String username;
+    // legacy salt and hash, null once the credential has a newer version
     private String salt;
     private String hashPassword;
     private List<String> safeHostnames;
+    // null for credentials stored by older versions
+    private volatile String fingerprint;
+    private int version;
+    private byte[] saltBytes;
+    private byte[] hash;
+    private String kdf;
+    private int cost;
+    private String id;
 
     static final long serialVersionUID = 43L;
 
+    /**
+     * Hash the password with the current function, which may take long
+     * @param username the username
+     * @param password the password
+     */
     public Credential(String username, String password) {
         this.username = username;
+        this.safeHostnames = new ArrayList<>();
+        this.id = UUID.randomUUID().toString();
+        rehash(password);
+        this.fingerprint = CredentialFingerprint.of(username, password);
+    }
 
-        SecureRandom random = new SecureRandom();
-        byte[] salt = new byte[16];
-        random.nextBytes(salt);
-        this.salt = new String(salt);
+    /**
+     * Check a password against the stored hash, which may take long
+     * @param password submitted password
+     * @return whether the password is the one of the credential
+     */
+    public boolean matches(String password) {
+        int currentVersion;
+        String legacySalt;
+        String legacyHash;
+        byte[] currentSalt;
+        byte[] currentHash;
+        String kdfName;
+        int kdfCost;
+        synchronized (this) {
+            currentVersion = version;
+            legacySalt = salt;
+            legacyHash = hashPassword;
+            currentSalt = saltBytes;
+            currentHash = hash;
+            kdfName = kdf;
+            kdfCost = cost;
+        }
 
-        this.hashPassword = this.hash(password);
-        this.safeHostnames = new ArrayList<>();
+        byte[] computed = HASH_BUFFER.get();
+        if (currentVersion == LEGACY_VERSION) {
+            if (legacySalt == null || legacyHash == null) {
+                return false;
+            }
+            Sha512Kdf.INSTANCE.derive(password, legacySalt.getBytes(StandardCharsets.UTF_8), 1, computed);
+            // the old hash is the digest decoded with the default charset
+            return MessageDigest.isEqual(
+                    legacyHash.getBytes(StandardCharsets.UTF_8),
+                    new String(computed).getBytes(StandardCharsets.UTF_8));
+        }
+        PasswordKdf function = currentVersion == SHA_512_VERSION
+                ? Sha512Kdf.INSTANCE
+                : CredentialHashing.getKdf(kdfName);
+        function.derive(password, currentSalt, kdfCost, computed);
+        return MessageDigest.isEqual(currentHash, computed);
+    }
+
+    /**
+     * @return whether the credential isn't hashed with the current function and cost
+     */
+    public synchronized boolean isOutdated() {
+        CredentialHashing.Scheme scheme = CredentialHashing.current();
+        return version != KDF_VERSION || !scheme.kdf.getName().equals(kdf) || scheme.cost != cost;
     }
 
-    public String hash(String password) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-512");
-            md.update(this.salt.getBytes(StandardCharsets.UTF_8));
-            byte[] hashedPassword = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            return new String(hashedPassword);
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
+    /**
+     * Hash an outdated credential again with the current function, once its password is known
+     * @param password password of the credential, as verified by the caller
+     */
+    public void upgrade(String password) {
+        if (isOutdated()) {
+            rehash(password);
+        }
+    }
+
+    private void rehash(String password) {
+        CredentialHashing.Scheme scheme = CredentialHashing.current();
+        byte[] newSalt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(newSalt);
+        byte[] newHash = new byte[PasswordKdf.HASH_LENGTH];
+        scheme.kdf.derive(password, newSalt, scheme.cost, newHash);
+
+        synchronized (this) {
+            this.saltBytes = newSalt;
+            this.hash = newHash;
+            this.kdf = scheme.kdf.getName();
+            this.cost = scheme.cost;
+            this.version = KDF_VERSION;
+            this.salt = null;
+            this.hashPassword = null;
         }
-        return ExtensionSecurityProxy.NULL;
     }
 
     public String getUsername() {
         return username;
     }
 
-    public String getSalt() {
-        return salt;
+    /**
+     * @return random id of the credential
+     */
+    public String getId() {
+        return id;
     }
 
-    public String getHashPassword() {
-        return hashPassword;
+    /**
+     * @return version of the stored hash
+     */
+    public synchronized int getVersion() {
+        return version;
     }
 
     public List<String> getSafeHostnames() {
         return safeHostnames;
     }
 
+    /**
+     * @return keyed fingerprint of the username and password, see {@link CredentialFingerprint}
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (version > KDF_VERSION) {
+            throw new InvalidObjectException("Credential version " + version + " is not supported");
+        }
+        if (version != LEGACY_VERSION && (saltBytes == null || saltBytes.length != SALT_LENGTH
+                || hash == null || hash.length != PasswordKdf.HASH_LENGTH)) {
+            throw new InvalidObjectException("Malformed credential of " + username);
+        }
+        if (version == KDF_VERSION && (kdf == null || cost < 1)) {
+            throw new InvalidObjectException("Malformed credential of " + username);
+        }
+        if (safeHostnames == null) {
+            safeHostnames = new ArrayList<>();
+        }
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+        }
+    }
+
     @Override
     public String toString() {
         return "Credential{" +
                 "username='" + username + '\'' +
-                ", salt='" + salt + '\'' +
-                ", hashPassword='" + hashPassword + '\'' +
+                ", version=" + getVersion() +
                 ", safeHostnames=" + safeHostnames +
                 '}';
     }
@@ -0,0 +1,107 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Keyed fingerprint of a username and password, HMAC-SHA256 with a key of this installation.
+ * The same credentials give the same fingerprint on every website, so credential reuse is
+ * found with one fingerprint and one map lookup. Without the key a fingerprint can't be
+ * brute forced, the key is kept in the ZAP options and never next to the website file.
+ *
+ * A fingerprint starts with the id of its key, fingerprints made with another key are not
+ * current and their credentials are handled as stored without fingerprint.
+ */
+public final class CredentialFingerprint {
+
+    /** Length in bytes of a key */
+    public static final int KEY_LENGTH = 32;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char SEPARATOR = ':';
+
+    // a random key until the key of the options is used, e.g. in the tests
+    private static volatile Key key = new Key(newKey());
+
+    private CredentialFingerprint() {
+    }
+
+    /**
+     * Use a key for the next fingerprints
+     * @param bytes key of this installation, made with {@link #newKey()}
+     * @throws IllegalArgumentException if the key is not {@link #KEY_LENGTH} bytes
+     */
+    public static void useKey(byte[] bytes) {
+        if (bytes.length != KEY_LENGTH) {
+            throw new IllegalArgumentException("Not a credential key");
+        }
+        key = new Key(bytes.clone());
+    }
+
+    /**
+     * @param username username of the credentials
+     * @param password password of the credentials
+     * @return the fingerprint of the credentials with the current key
+     */
+    public static String of(String username, String password) {
+        return key.fingerprint(username, password);
+    }
+
+    /**
+     * @param fingerprint a stored fingerprint, may be null
+     * @return whether the fingerprint was made with the current key
+     */
+    public static boolean isCurrent(String fingerprint) {
+        Key current = key;
+        return fingerprint != null
+                && fingerprint.length() > current.id.length()
+                && fingerprint.startsWith(current.id)
+                && fingerprint.charAt(current.id.length()) == SEPARATOR;
+    }
+
+    /**
+     * @return a new random key
+     */
+    public static byte[] newKey() {
+        byte[] bytes = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static final class Key {
+        private final SecretKeySpec spec;
+        private final String id;
+        private final ThreadLocal<Mac> mac;
+
+        private Key(byte[] bytes) {
+            this.spec = new SecretKeySpec(bytes, ALGORITHM);
+            this.mac = ThreadLocal.withInitial(this::newMac);
+            byte[] idBytes = mac.get().doFinal("key id".getBytes(StandardCharsets.UTF_8));
+            this.id = Base64.getUrlEncoder().withoutPadding().encodeToString(idBytes).substring(0, 8);
+        }
+
+        private String fingerprint(String username, String password) {
+            Mac current = mac.get();
+            byte[] name = username.getBytes(StandardCharsets.UTF_8);
+            // length first, so username and password can't be shifted into each other
+            current.update(ByteBuffer.allocate(Integer.BYTES).putInt(name.length).array());
+            current.update(name);
+            byte[] digest = current.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            return id + SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        }
+
+        private Mac newMac() {
+            try {
+                Mac created = Mac.getInstance(ALGORITHM);
+                created.init(spec);
+                return created;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
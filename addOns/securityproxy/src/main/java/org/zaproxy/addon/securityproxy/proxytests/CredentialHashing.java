@@ -0,0 +1,76 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The key derivation functions credentials can be hashed with, and the one new credentials
+ * are hashed with. Until the extension picks a slow function the credentials are hashed with
+ * a single SHA-512 round, e.g. in the tests.
+ */
+public final class CredentialHashing {
+
+    private static final Map<String, PasswordKdf> KDFS = new ConcurrentHashMap<>();
+    private static volatile Scheme current;
+
+    static {
+        register(Sha512Kdf.INSTANCE);
+        register(new Pbkdf2Kdf());
+        current = new Scheme(Sha512Kdf.INSTANCE, 1);
+    }
+
+    private CredentialHashing() {
+    }
+
+    /**
+     * Make a function available to check the credentials hashed with it
+     * @param kdf the function
+     */
+    public static void register(PasswordKdf kdf) {
+        KDFS.put(kdf.getName(), kdf);
+    }
+
+    /**
+     * Hash the next credentials with the given function and cost. Credentials hashed otherwise
+     * are hashed again the next time their password is known.
+     * @param kdf the function, registered if it isn't yet
+     * @param cost work factor of the function
+     */
+    public static void use(PasswordKdf kdf, int cost) {
+        if (cost < 1) {
+            throw new IllegalArgumentException("Cost must be positive: " + cost);
+        }
+        register(kdf);
+        current = new Scheme(kdf, cost);
+    }
+
+    /**
+     * @param name name of a registered function
+     * @return the function
+     * @throws IllegalArgumentException if no function is registered under the name
+     */
+    public static PasswordKdf getKdf(String name) {
+        PasswordKdf kdf = KDFS.get(name);
+        if (kdf == null) {
+            throw new IllegalArgumentException("Unknown key derivation function: " + name);
+        }
+        return kdf;
+    }
+
+    static Scheme current() {
+        return current;
+    }
+
+    /**
+     * A function with its cost
+     */
+    static final class Scheme {
+        final PasswordKdf kdf;
+        final int cost;
+
+        private Scheme(PasswordKdf kdf, int cost) {
+            this.kdf = kdf;
+            this.cost = cost;
+        }
+    }
+}
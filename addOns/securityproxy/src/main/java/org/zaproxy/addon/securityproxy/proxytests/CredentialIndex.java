@@ -0,0 +1,146 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the credentials of the legitimate websites by their {@link CredentialFingerprint}.
+ * Credential reuse is found with one fingerprint and one map lookup, however many credentials
+ * are stored. Credentials stored without a current fingerprint are kept aside to be checked
+ * against their hash, they are indexed as soon as one matches a submitted password.
+ *
+ * Lookups do not lock and may run while a credential is added: the maps are concurrent and the
+ * buckets are arrays replaced on every change. Changes are serialized on the index.
+ */
+public class CredentialIndex {
+
+    private final Map<String, Website[]> websites = new ConcurrentHashMap<>();
+    private final Map<Credential, Website> unindexed = new ConcurrentHashMap<>();
+
+    /**
+     * Index every credential of a legitimate website
+     * @param website the website
+     */
+    public synchronized void addAll(Website website) {
+        for (Credential credential : website.getCredentials()) {
+            add(website, credential);
+        }
+    }
+
+    /**
+     * Index a credential of a legitimate website
+     * @param website website holding the credential
+     * @param credential the credential
+     */
+    public synchronized void add(Website website, Credential credential) {
+        String fingerprint = credential.getFingerprint();
+        if (!CredentialFingerprint.isCurrent(fingerprint)) {
+            unindexed.put(credential, website);
+            return;
+        }
+        Website[] bucket = websites.get(fingerprint);
+        if (bucket == null) {
+            websites.put(fingerprint, new Website[] {website});
+        } else if (!contains(bucket, website)) {
+            Website[] grown = Arrays.copyOf(bucket, bucket.length + 1);
+            grown[bucket.length] = website;
+            websites.put(fingerprint, grown);
+        }
+    }
+
+    /**
+     * Drop a credential removed from its website
+     * @param website website that held the credential
+     * @param credential the credential
+     */
+    public synchronized void remove(Website website, Credential credential) {
+        unindexed.remove(credential);
+        String fingerprint = credential.getFingerprint();
+        Website[] bucket = fingerprint == null ? null : websites.get(fingerprint);
+        if (bucket == null) {
+            return;
+        }
+        Website[] kept = Arrays.stream(bucket).filter(w -> w != website).toArray(Website[]::new);
+        if (kept.length == 0) {
+            websites.remove(fingerprint);
+        } else if (kept.length != bucket.length) {
+            websites.put(fingerprint, kept);
+        }
+    }
+
+    /**
+     * Index a credential stored without a current fingerprint once its password is known
+     * @param website website holding the credential
+     * @param credential the credential
+     * @param password password of the credential, as verified by the caller
+     */
+    public synchronized void reindex(Website website, Credential credential, String password) {
+        remove(website, credential);
+        credential.setFingerprint(CredentialFingerprint.of(credential.getUsername(), password));
+        add(website, credential);
+    }
+
+    /**
+     * Find a legitimate website the credentials are stored for with a current fingerprint
+     * @param username submitted username
+     * @param password submitted password
+     * @return a website holding the credentials, null if there is none
+     */
+    public Website find(String username, String password) {
+        String fingerprint = CredentialFingerprint.of(username, password);
+        Website[] bucket = websites.get(fingerprint);
+        if (bucket == null) {
+            return null;
+        }
+        for (Website website : bucket) {
+            for (Credential credential : website.getCredentials()) {
+                if (fingerprint.equals(credential.getFingerprint()) && username.equals(credential.getUsername())) {
+                    return website;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param username submitted username
+     * @return the credentials of the username stored without a current fingerprint, with
+     * their website, to be checked against their hash
+     */
+    public List<Map.Entry<Credential, Website>> getUnindexed(String username) {
+        List<Map.Entry<Credential, Website>> found = new ArrayList<>();
+        for (Map.Entry<Credential, Website> entry : unindexed.entrySet()) {
+            if (entry.getKey().getUsername().equals(username)) {
+                found.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return number of fingerprints in the index
+     */
+    public int size() {
+        return websites.size();
+    }
+
+    /**
+     * @return number of credentials stored without a current fingerprint
+     */
+    public int getUnindexedCount() {
+        return unindexed.size();
+    }
+
+    private static boolean contains(Website[] bucket, Website website) {
+        for (Website w : bucket) {
+            if (w == website) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,259 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Runs the slow credential hashing of {@link Credential} on a small bounded pool, so a proxy
+ * thread never derives a hash itself. A login starts the checks of its password at once and
+ * waits for them up to its deadline, a check that isn't done by then is unknown, never a
+ * mismatch. Check results are kept per credential id and password fingerprint, so the same
+ * login is not checked twice.
+ *
+ * Without started workers everything runs on the calling thread.
+ */
+public class CredentialVerifier {
+
+    /** Result of {@link #findMatch} when the password is none of the credentials */
+    public static final int NO_MATCH = -1;
+    /** Result of {@link #findMatch} when no credential matched but not every check was done */
+    public static final int UNKNOWN = -2;
+
+    private static final Logger LOGGER = LogManager.getLogger(CredentialVerifier.class);
+
+    private final int maxSize;
+    private final Map<String, Boolean> results;
+    private volatile ThreadPoolExecutor executor;
+    private volatile long timeoutNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of check results kept
+     */
+    public CredentialVerifier(int maxSize) {
+        this.maxSize = maxSize;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > CredentialVerifier.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Hash on worker threads, a login waits for them at most the timeout
+     * @param threads number of hashing threads
+     * @param queueSize number of hashing tasks that may wait for a thread, more are rejected
+     * @param timeout time a login waits for its checks
+     * @param unit unit of the timeout
+     */
+    public synchronized void start(int threads, int queueSize, long timeout, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        timeoutNanos = unit.toNanos(timeout);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "ZAP-SecurityProxy-CredentialHashing-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Stop the hashing threads, the next hashing runs on the calling thread
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * @return the deadline of a login starting now, for {@link #findMatch(List, String, long)}
+     */
+    public long deadline() {
+        return System.nanoTime() + timeoutNanos;
+    }
+
+    /**
+     * Check a password against a credential
+     * @param credential the credential
+     * @param password submitted password
+     * @return whether the password is the one of the credential
+     */
+    public CompletableFuture<Boolean> check(Credential credential, String password) {
+        String key = credential.getId() + ' ' + CredentialFingerprint.of(credential.getUsername(), password);
+        Boolean cached = get(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submit(() -> {
+            boolean matches = credential.matches(password);
+            put(key, matches);
+            return matches;
+        });
+    }
+
+    /**
+     * Check a password against a credential, waiting up to the deadline of the login
+     * @param credential the credential
+     * @param password submitted password
+     * @param deadline {@link System#nanoTime()} the login stops waiting at
+     * @return whether the password is the one of the credential, null if the check isn't done
+     * by the deadline or couldn't run
+     */
+    public Boolean matches(Credential credential, String password, long deadline) {
+        return await(credential, check(credential, password), deadline);
+    }
+
+    /**
+     * Check a password against several credentials at once, waiting up to the deadline of the
+     * login. The checks run side by side on the workers, so the login waits for the slowest
+     * one rather than for their sum.
+     * @param credentials the credentials
+     * @param password submitted password
+     * @param deadline {@link System#nanoTime()} the login stops waiting at
+     * @return index of a credential the password is the one of, {@link #NO_MATCH} if it is none
+     * of them, {@link #UNKNOWN} if none matched but a check isn't done by the deadline or
+     * couldn't run
+     */
+    public int findMatch(List<Credential> credentials, String password, long deadline) {
+        List<CompletableFuture<Boolean>> checks = new ArrayList<>(credentials.size());
+        for (Credential credential : credentials) {
+            checks.add(check(credential, password));
+        }
+        int result = NO_MATCH;
+        for (int i = 0; i < checks.size(); i++) {
+            Boolean matches = await(credentials.get(i), checks.get(i), deadline);
+            if (matches == null) {
+                result = UNKNOWN;
+            } else if (matches) {
+                return i;
+            }
+        }
+        return result;
+    }
+
+    private Boolean await(Credential credential, CompletableFuture<Boolean> check, long deadline) {
+        try {
+            return check.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // the check goes on, its result is kept for the next login
+            timeouts.increment();
+            LOGGER.warn("Credential check of " + credential.getId() + " not done by the login deadline");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.warn("Credential check of " + credential.getId() + " failed: " + e.getCause().getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Hash a new credential
+     * @param username the username
+     * @param password the password
+     * @return the credential
+     */
+    public CompletableFuture<Credential> create(String username, String password) {
+        return submit(() -> new Credential(username, password));
+    }
+
+    /**
+     * Hash a credential again with the current function if it is outdated
+     * @param credential the credential
+     * @param password password of the credential, as verified by the caller
+     * @return done once the credential is hashed again
+     */
+    public CompletableFuture<Void> upgrade(Credential credential, String password) {
+        if (!credential.isOutdated()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return submit(() -> {
+            credential.upgrade(password);
+            return null;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            CompletableFuture<T> done = new CompletableFuture<>();
+            try {
+                done.complete(task.get());
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+            return done;
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, current);
+        } catch (RejectedExecutionException e) {
+            // never hash on a proxy thread, busy workers fail the task instead
+            rejections.increment();
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private synchronized Boolean get(String key) {
+        return results.get(key);
+    }
+
+    private synchronized void put(String key, boolean matches) {
+        results.put(key, matches);
+    }
+
+    /**
+     * Drop every kept check result
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * @return number of checks answered by a kept result
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of checks a login stopped waiting for
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return number of hashing tasks rejected because every worker was busy
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+}
@@ -0,0 +1,193 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.parosproxy.paros.Constant;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * An HTML page template from the ZAP home directory. The file is read once and split into
+ * literal and placeholder segments, every render then only copies the encoded literals and
+ * values into the body. The file is checked for changes at most once per second and reloaded
+ * when it was modified, so pages can still be edited while ZAP runs.
+ */
+public class HtmlTemplate {
+
+    private static final Logger LOGGER = LogManager.getLogger(HtmlTemplate.class);
+    private static final long RELOAD_CHECK_INTERVAL_MILLIS = 1000;
+
+    private final Supplier<File> file;
+    private final LongSupplier clock;
+    private final String[] placeholders;
+
+    private volatile Compiled compiled;
+    private volatile long nextCheckMillis;
+
+    /**
+     * @param path path of the template relative to the ZAP home directory
+     * @param placeholders the placeholders of the template, in the order of the render values
+     */
+    public HtmlTemplate(String path, String... placeholders) {
+        this(() -> new File(Constant.getZapHome(), path), System::currentTimeMillis, placeholders);
+    }
+
+    /**
+     * @param file the template file, resolved on every check for changes
+     * @param clock current time in milliseconds
+     * @param placeholders the placeholders of the template, in the order of the render values
+     */
+    HtmlTemplate(Supplier<File> file, LongSupplier clock, String... placeholders) {
+        this.file = file;
+        this.clock = clock;
+        this.placeholders = placeholders.clone();
+    }
+
+    /**
+     * Render the template as UTF-8
+     * @param values the values of the placeholders, in the order given at creation
+     * @return the page, or null if the template can not be read
+     */
+    public byte[] render(String... values) {
+        Compiled current = getCompiled();
+        if (current == null) {
+            return null;
+        }
+
+        byte[][] encodedValues = new byte[placeholders.length][];
+        for (int i = 0; i < placeholders.length; i++) {
+            encodedValues[i] = (i < values.length && values[i] != null)
+                    ? values[i].getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+        }
+
+        int length = 0;
+        for (byte[] literal : current.literals) {
+            length += literal.length;
+        }
+        for (int slot : current.slots) {
+            length += encodedValues[slot].length;
+        }
+
+        byte[] body = new byte[length];
+        int pos = 0;
+        for (int i = 0; i < current.slots.length; i++) {
+            pos = copy(current.literals[i], body, pos);
+            pos = copy(encodedValues[current.slots[i]], body, pos);
+        }
+        copy(current.literals[current.slots.length], body, pos);
+        return body;
+    }
+
+    /**
+     * @param values the values of the placeholders, in the order given at creation
+     * @return the page as a String, or null if the template can not be read
+     */
+    public String renderString(String... values) {
+        byte[] body = render(values);
+        return body == null ? null : new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static int copy(byte[] src, byte[] dest, int pos) {
+        System.arraycopy(src, 0, dest, pos, src.length);
+        return pos + src.length;
+    }
+
+    private Compiled getCompiled() {
+        long now = clock.getAsLong();
+        if (now < nextCheckMillis) {
+            return compiled;
+        }
+
+        synchronized (this) {
+            if (now < nextCheckMillis) {
+                return compiled;
+            }
+            File template = file.get();
+            Compiled current = compiled;
+            if (current == null
+                    || current.lastModified != template.lastModified()
+                    || current.length != template.length()) {
+                compiled = load(template);
+            }
+            nextCheckMillis = now + RELOAD_CHECK_INTERVAL_MILLIS;
+            return compiled;
+        }
+    }
+
+    private Compiled load(File template) {
+        try {
+            long lastModified = template.lastModified();
+            long length = template.length();
+            StringBuilder content = new StringBuilder();
+            try (BufferedReader reader = Files.newBufferedReader(template.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    content.append(line).append("\n");
+                }
+            }
+            LOGGER.log(Level.INFO, "Loaded template " + template.getName());
+            return compile(content.toString(), lastModified, length);
+        } catch (IOException e) {
+            LOGGER.log(Level.ERROR, e.getMessage());
+        }
+        return null;
+    }
+
+    private Compiled compile(String content, long lastModified, long length) {
+        List<byte[]> literals = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+
+        int start = 0;
+        while (true) {
+            int found = -1;
+            int slot = -1;
+            for (int i = 0; i < placeholders.length; i++) {
+                int index = content.indexOf(placeholders[i], start);
+                if (index >= 0 && (found < 0 || index < found)) {
+                    found = index;
+                    slot = i;
+                }
+            }
+            if (found < 0) {
+                break;
+            }
+            literals.add(content.substring(start, found).getBytes(StandardCharsets.UTF_8));
+            slots.add(slot);
+            start = found + placeholders[slot].length();
+        }
+        literals.add(content.substring(start).getBytes(StandardCharsets.UTF_8));
+
+        int[] slotArray = new int[slots.size()];
+        for (int i = 0; i < slotArray.length; i++) {
+            slotArray[i] = slots.get(i);
+        }
+        return new Compiled(literals.toArray(new byte[0][]), slotArray, lastModified, length);
+    }
+
+    /**
+     * The template split into literals around the placeholders: literal 0, slot 0, literal 1, ...
+     */
+    private static class Compiled {
+        private final byte[][] literals;
+        private final int[] slots;
+        private final long lastModified;
+        private final long length;
+
+        private Compiled(byte[][] literals, int[] slots, long lastModified, long length) {
+            this.literals = literals;
+            this.slots = slots;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+/**
+ * Key derivation function turning a password and a salt into the stored hash of a credential.
+ * A credential keeps the name and cost it was hashed with, so the cost can be raised without
+ * breaking stored credentials. Implementations are registered with {@link CredentialHashing}.
+ */
+public interface PasswordKdf {
+
+    /** Length in bytes of every derived hash */
+    int HASH_LENGTH = 64;
+
+    /**
+     * @return name the function is stored and registered under
+     */
+    String getName();
+
+    /**
+     * Derive the hash of a password
+     * @param password the password
+     * @param salt salt of the credential
+     * @param cost work factor, e.g. the number of iterations
+     * @param out array of {@link #HASH_LENGTH} bytes receiving the hash
+     */
+    void derive(String password, byte[] salt, int cost, byte[] out);
+}
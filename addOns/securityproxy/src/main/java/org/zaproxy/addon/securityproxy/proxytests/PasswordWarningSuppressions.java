@@ -0,0 +1,165 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The (host, username) combinations the user chose not to be warned about weak passwords for.
+ * Each combination is kept once, with the time it expires at, and is found with one map lookup.
+ * Expired combinations are dropped when they are looked up or written to the file.
+ *
+ * The file holds a version, the number of combinations and every host, username and expiry.
+ */
+public class PasswordWarningSuppressions {
+
+    /** Expiry of a combination suppressed until removed */
+    public static final long NEVER = Long.MAX_VALUE;
+    private static final int FILE_VERSION = 1;
+
+    private final Map<CreHostCombi, Long> expiries = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public PasswordWarningSuppressions() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock current time in milliseconds
+     */
+    PasswordWarningSuppressions(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Suppress the warnings of a combination until it is removed
+     * @param host sanitized host
+     * @param username the username
+     * @return whether the combination was not suppressed yet
+     */
+    public boolean suppress(String host, String username) {
+        return expiries.put(new CreHostCombi(host, username), NEVER) == null;
+    }
+
+    /**
+     * Suppress the warnings of a combination for a while
+     * @param host sanitized host
+     * @param username the username
+     * @param duration time the warnings are suppressed
+     * @param unit unit of the time
+     * @return whether the combination was not suppressed yet
+     */
+    public boolean suppress(String host, String username, long duration, TimeUnit unit) {
+        long now = clock.getAsLong();
+        long millis = unit.toMillis(duration);
+        long expiry = millis >= NEVER - now ? NEVER : now + millis;
+        return expiries.put(new CreHostCombi(host, username), expiry) == null;
+    }
+
+    /**
+     * @param host sanitized host
+     * @param username the username
+     * @return whether the warnings of the combination are suppressed
+     */
+    public boolean isSuppressed(String host, String username) {
+        CreHostCombi combi = new CreHostCombi(host, username);
+        Long expiry = expiries.get(combi);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry <= clock.getAsLong()) {
+            expiries.remove(combi, expiry);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Warn about the combination again
+     * @param host sanitized host
+     * @param username the username
+     */
+    public void remove(String host, String username) {
+        expiries.remove(new CreHostCombi(host, username));
+    }
+
+    /**
+     * Drop every suppressed combination
+     */
+    public void clear() {
+        expiries.clear();
+    }
+
+    /**
+     * @return number of suppressed combinations, expired ones included until they are dropped
+     */
+    public int size() {
+        return expiries.size();
+    }
+
+    /**
+     * Replace the suppressed combinations with the ones of a file, nothing changes if there is
+     * no file
+     * @param file the file
+     * @throws IOException if the file can't be read or is malformed
+     */
+    public void readFrom(File file) throws IOException {
+        if (!file.isFile()) {
+            return;
+        }
+        Map<CreHostCombi, Long> read = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            int version = in.readInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Suppression file version " + version + " is not supported");
+            }
+            int count = in.readInt();
+            if (count < 0) {
+                throw new IOException("Malformed suppression file");
+            }
+            long now = clock.getAsLong();
+            for (int i = 0; i < count; i++) {
+                CreHostCombi combi = new CreHostCombi(in.readUTF(), in.readUTF());
+                long expiry = in.readLong();
+                if (expiry > now) {
+                    read.put(combi, expiry);
+                }
+            }
+        }
+        expiries.clear();
+        expiries.putAll(read);
+    }
+
+    /**
+     * Write the combinations that have not expired to a file, replacing it once complete
+     * @param file the file
+     * @throws IOException if the file can't be written
+     */
+    public void writeTo(File file) throws IOException {
+        long now = clock.getAsLong();
+        expiries.values().removeIf(expiry -> expiry <= now);
+        Map<CreHostCombi, Long> snapshot = new HashMap<>(expiries);
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<CreHostCombi, Long> entry : snapshot.entrySet()) {
+                out.writeUTF(entry.getKey().getHost());
+                out.writeUTF(entry.getKey().getUsername());
+                out.writeLong(entry.getValue());
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
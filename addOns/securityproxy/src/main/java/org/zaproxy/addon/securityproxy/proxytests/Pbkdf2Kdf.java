@@ -0,0 +1,47 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * PBKDF2 with HMAC-SHA512 of the JDK, the cost is the number of iterations.
+ */
+public final class Pbkdf2Kdf implements PasswordKdf {
+    public static final String NAME = "PBKDF2WithHmacSHA512";
+    /** Iterations recommended by OWASP for PBKDF2-HMAC-SHA512 */
+    public static final int DEFAULT_ITERATIONS = 210000;
+
+    private static final ThreadLocal<SecretKeyFactory> FACTORY = ThreadLocal.withInitial(Pbkdf2Kdf::newFactory);
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void derive(String password, byte[] salt, int cost, byte[] out) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, cost, HASH_LENGTH * 8);
+        try {
+            byte[] derived = FACTORY.get().generateSecret(spec).getEncoded();
+            System.arraycopy(derived, 0, out, 0, HASH_LENGTH);
+            Arrays.fill(derived, (byte) 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    private static SecretKeyFactory newFactory() {
+        try {
+            return SecretKeyFactory.getInstance(NAME);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
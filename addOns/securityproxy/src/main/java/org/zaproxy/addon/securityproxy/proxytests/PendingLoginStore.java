@@ -0,0 +1,249 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Size and time bounded store of the logins held back by the phishing warning, until the user
+ * confirms the credentials are theirs. Only the host, the username and the password are kept,
+ * never the request itself. The password is kept encrypted with a random key of the store and
+ * wiped when the login is dropped, it is only hashed once the login is confirmed, so logins
+ * that are never confirmed cost no hashing. A login is taken once: confirming it twice, or
+ * after it expired or was evicted by newer logins, finds nothing.
+ */
+public class PendingLoginStore {
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int KEY_LENGTH = 16;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKey key;
+    private int maxSize;
+    private long ttlNanos;
+    private final Map<String, PendingLogin> entries;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of logins kept
+     * @param ttlMillis time in milliseconds a login can be confirmed
+     */
+    public PendingLoginStore(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    /**
+     * @param maxSize maximum number of logins kept
+     * @param ttlMillis time in milliseconds a login can be confirmed
+     * @param nanoClock current time in nanoseconds, like {@link System#nanoTime()}
+     */
+    PendingLoginStore(int maxSize, long ttlMillis, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        byte[] keyBytes = new byte[KEY_LENGTH];
+        RANDOM.nextBytes(keyBytes);
+        this.key = new SecretKeySpec(keyBytes, "AES");
+        // insertion order, the eldest entry is the first to expire
+        this.entries = new LinkedHashMap<>(16, 0.75f, false) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PendingLogin> eldest) {
+                if (size() > PendingLoginStore.this.maxSize) {
+                    eldest.getValue().wipe();
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Change the bounds, logins beyond them are dropped right away
+     * @param maxSize maximum number of logins kept
+     * @param ttl time a login can be confirmed
+     * @param unit unit of the time
+     */
+    public synchronized void setLimits(int maxSize, long ttl, TimeUnit unit) {
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        expire(nanoClock.getAsLong());
+        Iterator<PendingLogin> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next().wipe();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Hold back a login
+     * @param host sanitized host the credentials are submitted to
+     * @param username submitted username
+     * @param password submitted password
+     * @return id to confirm the login with
+     */
+    public synchronized String put(String host, String username, String password) {
+        long now = nanoClock.getAsLong();
+        expire(now);
+        String id = UUID.randomUUID().toString();
+        entries.put(id, new PendingLogin(host, username, seal(password), now));
+        return id;
+    }
+
+    /**
+     * Take a held back login out of the store
+     * @param id id of the login
+     * @return the login, null if there is no login with the id or it expired
+     */
+    public synchronized PendingLogin take(String id) {
+        long now = nanoClock.getAsLong();
+        expire(now);
+        return entries.remove(id);
+    }
+
+    private void expire(long now) {
+        Iterator<PendingLogin> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            PendingLogin login = iterator.next();
+            if (now - login.createdNanos < ttlNanos) {
+                return;
+            }
+            login.wipe();
+            iterator.remove();
+            expirations.increment();
+        }
+    }
+
+    /**
+     * Drop every held back login
+     */
+    public synchronized void clear() {
+        entries.values().forEach(PendingLogin::wipe);
+        entries.clear();
+    }
+
+    // the iv followed by the encrypted password
+    private byte[] seal(String password) {
+        byte[] iv = new byte[IV_LENGTH];
+        RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = Arrays.copyOf(iv, IV_LENGTH + encrypted.length);
+            System.arraycopy(encrypted, 0, sealed, IV_LENGTH, encrypted.length);
+            return sealed;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String open(byte[] sealed) {
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, sealed, 0, IV_LENGTH));
+            byte[] password = cipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+            try {
+                return new String(password, StandardCharsets.UTF_8);
+            } finally {
+                Arrays.fill(password, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return number of held back logins, expired ones included until the next change
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return maximum number of held back logins
+     */
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of logins dropped because the store was full
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of logins dropped because they were not confirmed in time
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PendingLoginStore{" +
+                "size=" + size() +
+                ", maxSize=" + getMaxSize() +
+                ", evictions=" + getEvictions() +
+                ", expirations=" + getExpirations() +
+                '}';
+    }
+
+    /**
+     * A held back login
+     */
+    public class PendingLogin {
+        private final String host;
+        private final String username;
+        private final byte[] password;
+        private final long createdNanos;
+
+        private PendingLogin(String host, String username, byte[] password, long createdNanos) {
+            this.host = host;
+            this.username = username;
+            this.password = password;
+            this.createdNanos = createdNanos;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * @return the submitted password, decrypted
+         */
+        public String getPassword() {
+            return open(password);
+        }
+
+        private void wipe() {
+            Arrays.fill(password, (byte) 0);
+        }
+    }
+}
@@ -1,33 +1,47 @@
 package org.zaproxy.addon.securityproxy.proxytests;
 
 import org.apache.commons.httpclient.URI;
-import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.parosproxy.paros.Constant;
 import org.parosproxy.paros.network.HtmlParameter;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
 import org.zaproxy.addon.securityproxy.SecurityProxyListener;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.BreachedPasswConstraint;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.NumericPasswConstraint;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.PasswordCheckPipeline;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.PopularPasswConstraint;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.SafePasswordConstraint;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.CrackLibPasswConstraint;
 
-import java.io.File;
-import java.util.List;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.List;
 import java.util.Iterator;
-import java.util.Scanner;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class PhishingTest extends ProxyTest{
 
     private static final Logger LOGGER = LogManager.getLogger(TypoSquattingTest.class);
-    private final List<SafePasswordConstraint> constraints;
-    private static final String SAFE = "safe";
+    private static final int PASSWORD_VERDICTS = 1024;
+    private static final int CREDENTIAL_CHECK_RESULTS = 1024;
+    /** Default maximum number of held back logins, see SecurityProxyParam */
+    public static final int PENDING_LOGINS = 256;
+    /** Default minutes a held back login can be confirmed, see SecurityProxyParam */
+    public static final int PENDING_LOGIN_TTL_MINUTES = 10;
+    private final PasswordCheckPipeline passwordPipeline;
+    private final CredentialVerifier credentialVerifier;
+    // credentials being hashed, by host and username
+    private final Map<String, CompletableFuture<Credential>> pendingCredentials = new ConcurrentHashMap<>();
+    private final CrackLibPasswConstraint crackLibConstraint;
+    public static final String SAFE = "safe";
+    /** Result of the reuse check when a check of the credentials was not done in time */
+    public static final String UNKNOWN = "unknown";
+    private static final String UNKNOWN_HOST = "a website whose check did not finish in time";
     private List<String> usernameFields;
     private List<String> passwordFields;
     private static final String PHISHING_HOST = "[PhishingHost]";
@@ -35,16 +49,24 @@ public class PhishingTest extends ProxyTest{
     private static final String REASON = "[Reason]";
     private static final String USERNAME = "[Username]";
     private static final String UUID = "[UUID]";
-    private Map<String, HttpMessage> loginMessageMap;
-    private List<CreHostCombi> ignorePasswordCheckList;
+    private final PendingLoginStore pendingLogins;
+    private final PasswordWarningSuppressions passwordWarningSuppressions;
+    private final HtmlTemplate warningTemplate = new HtmlTemplate(
+            ExtensionSecurityProxy.PHISHING_HTML_TEMPLATE, PHISHING_HOST, CRE_USED_HOST, USERNAME, UUID);
+    private final HtmlTemplate weakPasswordTemplate = new HtmlTemplate(
+            ExtensionSecurityProxy.PASSWORD_HTML_TEMPLATE, PHISHING_HOST, REASON, USERNAME);
 
     public PhishingTest(SecurityProxyListener listener) {
         super(listener);
-        this.constraints = List.of(
+        this.crackLibConstraint = new CrackLibPasswConstraint();
+        List<SafePasswordConstraint> constraints = List.of(
                 new NumericPasswConstraint(),
                 new PopularPasswConstraint(),
-                new CrackLibPasswConstraint()
+                new BreachedPasswConstraint(),
+                crackLibConstraint
         );
+        this.passwordPipeline = new PasswordCheckPipeline(constraints, PASSWORD_VERDICTS);
+        this.credentialVerifier = new CredentialVerifier(CREDENTIAL_CHECK_RESULTS);
 
         this.usernameFields = List.of(
                 "username",
@@ -57,8 +79,43 @@ public class PhishingTest extends ProxyTest{
                 "password",
                 "pwd"
         );
-        loginMessageMap = new HashMap<>();
-        ignorePasswordCheckList = new ArrayList<>();
+        pendingLogins = new PendingLoginStore(PENDING_LOGINS, TimeUnit.MINUTES.toMillis(PENDING_LOGIN_TTL_MINUTES));
+        passwordWarningSuppressions = new PasswordWarningSuppressions();
+    }
+
+    /**
+     * Open the CrackLib dictionary read-only, it is shared by all password checks
+     * @throws IOException if the dictionary files can't be read
+     */
+    public void openPasswordDictionary() throws IOException {
+        crackLibConstraint.openDictionary();
+        passwordPipeline.clear();
+    }
+
+    /**
+     * Close the CrackLib dictionary, password checks then only use the CrackLib rules
+     */
+    public void closePasswordDictionary() {
+        crackLibConstraint.closeDictionary();
+        passwordPipeline.clear();
+    }
+
+    /**
+     * @return the password constraints in the order they are checked, with the kept verdicts
+     */
+    public PasswordCheckPipeline getPasswordPipeline() {
+        return passwordPipeline;
+    }
+
+    /**
+     * @return the pool hashing and checking the stored credentials
+     */
+    public CredentialVerifier getCredentialVerifier() {
+        return credentialVerifier;
+    }
+
+    public CrackLibPasswConstraint getCrackLibConstraint() {
+        return crackLibConstraint;
     }
 
     public boolean isPasswordSafe(String password) {
@@ -66,16 +123,28 @@ public class PhishingTest extends ProxyTest{
     }
 
     public String isPasswordSafeWithReason(String password) {
-        String res = SAFE;
+        String reason = passwordPipeline.check(password);
+        return reason == null ? SAFE : reason;
+    }
 
-        for(SafePasswordConstraint constraint: this.constraints) {
-            if (!constraint.passedConstraint(password)) {
-                res = constraint.getReason();
-                break;
-            }
-        }
+    /**
+     * Start checking a password, the expensive constraints go on in the background
+     * @param password submitted password
+     * @return the running check, to pass to {@link #getPasswordCheckResult}
+     */
+    public CompletableFuture<String> checkPasswordAsync(String password) {
+        return passwordPipeline.checkAsync(password);
+    }
 
-        return res;
+    /**
+     * Wait for a password check, a check that takes too long or can't be done doesn't hold the
+     * login back
+     * @param check check started with {@link #checkPasswordAsync}
+     * @return safe, or why the password is weak
+     */
+    public String getPasswordCheckResult(CompletableFuture<String> check) {
+        String reason = passwordPipeline.await(check);
+        return reason == null ? SAFE : reason;
     }
 
     public boolean isLoginRequest(HttpMessage msg) {
@@ -100,6 +169,22 @@ public class PhishingTest extends ProxyTest{
         return hasPassword && hasUsername;
     }
 
+    /**
+     * @param name form parameter name
+     * @return whether the parameter holds a username
+     */
+    public boolean isUsernameField(String name) {
+        return usernameFields.contains(name);
+    }
+
+    /**
+     * @param name form parameter name
+     * @return whether the parameter holds a password
+     */
+    public boolean isPasswordField(String name) {
+        return passwordFields.contains(name);
+    }
+
     public String getUsername(HttpMessage msg) {
         for (Iterator<HtmlParameter> it = msg.getFormParams().descendingIterator(); it.hasNext(); ) {
             HtmlParameter param = it.next();
@@ -121,36 +206,81 @@ public class PhishingTest extends ProxyTest{
     }
 
     public String isSafeWithReason(HttpMessage msg) {
-        List<Website> legitWebsites = getKnownWebsites();
-        String username = getUsername(msg);
-        String password = getPassword(msg);
+        return isSafeWithReason(
+                sanitizeHostname(msg.getRequestHeader().getHostName()),
+                getUsername(msg),
+                getPassword(msg)
+        );
+    }
+
+    /**
+     * Determine whether the credentials submitted to a host were already used on another website
+     * @param host sanitized hostname the credentials are submitted to
+     * @param username submitted username
+     * @param password submitted password
+     * @return safe, the host the credentials belong to, or unknown if a check of the stored
+     * credentials was not done by the login deadline
+     */
+    public String isSafeWithReason(String host, String username, String password) {
+        WebsiteRegistry registry = getWebsiteRegistry();
+        CredentialIndex index = registry.getCredentialIndex();
 
         //If a host already contains username -> safe
-        for(Website website: legitWebsites) {
-            if (website.getHost().equals(sanitizeHostname(msg.getRequestHeader().getHostName()))) {
-                for(Credential credential: website.getCredentials()) {
-                    if (credential.getUsername().equals(username)) {
-                        return SAFE;
-                    }
+        Website requestedWebsite = registry.getKnownWebsite(host);
+        if (requestedWebsite != null) {
+            for(Credential credential: requestedWebsite.getCredentials()) {
+                if (credential.getUsername().equals(username)) {
+                    migrateCredential(index, requestedWebsite, credential, password);
+                    return SAFE;
                 }
             }
         }
 
         //Check if other website contain combination
-        for(Website website: legitWebsites) {
-            for(Credential credential: website.getCredentials()) {
-                if (
-                        credential.getUsername().equals(username) &&
-                        credential.getHashPassword().equals(credential.hash(password))
-                ) {
-                    return website.getHost();
-                }
-            }
+        Website website = index.find(username, password);
+        if (website != null) {
+            return website.getHost();
         }
 
+        // credentials stored without a current fingerprint are checked against their hash
+        List<Map.Entry<Credential, Website>> unindexed = index.getUnindexed(username);
+        if (unindexed.isEmpty()) {
+            return SAFE;
+        }
+        List<Credential> candidates = new ArrayList<>(unindexed.size());
+        for (Map.Entry<Credential, Website> entry : unindexed) {
+            candidates.add(entry.getKey());
+        }
+        int match = credentialVerifier.findMatch(candidates, password, credentialVerifier.deadline());
+        if (match == CredentialVerifier.UNKNOWN) {
+            return UNKNOWN;
+        }
+        if (match != CredentialVerifier.NO_MATCH) {
+            Map.Entry<Credential, Website> entry = unindexed.get(match);
+            index.reindex(entry.getValue(), entry.getKey(), password);
+            credentialVerifier.upgrade(entry.getKey(), password);
+            return entry.getValue().getHost();
+        }
         return SAFE;
     }
 
+    /**
+     * Bring a credential submitted to its own website up to date in the background: index it
+     * if it has no current fingerprint, hash it again if its hash is outdated
+     */
+    private void migrateCredential(CredentialIndex index, Website website, Credential credential, String password) {
+        if (CredentialFingerprint.of(credential.getUsername(), password).equals(credential.getFingerprint())) {
+            credentialVerifier.upgrade(credential, password);
+        } else if (!CredentialFingerprint.isCurrent(credential.getFingerprint())) {
+            credentialVerifier.check(credential, password).thenAccept(matches -> {
+                if (matches) {
+                    index.reindex(website, credential, password);
+                    credentialVerifier.upgrade(credential, password);
+                }
+            });
+        }
+    }
+
     @Override
     public boolean isSafe(HttpMessage msg) {
         return isSafeWithReason(msg).equals(SAFE);
@@ -165,11 +295,8 @@ public class PhishingTest extends ProxyTest{
     /**
      * @return a list of legitimate websites from storage
      */
-    public List<Website> getKnownWebsites() {
-        return this.listener.getExtension().getWebsites()
-                .stream()
-                .filter(website -> website.getDirectedWebsite() == null)
-                .collect(Collectors.toList());
+    public Collection<Website> getKnownWebsites() {
+        return getWebsiteRegistry().getKnownWebsites();
     }
 
     public String sanitizeHostname(String hostname) {
@@ -179,94 +306,127 @@ public class PhishingTest extends ProxyTest{
                 .replace("http://", "");
     }
 
+    /**
+     * Add the credential to the website and index it when the website is legitimate
+     * @param credential the credential
+     * @param website website the credential is used on
+     */
     public void addCredential(Credential credential, Website website) {
-        for(Credential credential1: website.getCredentials()) {
-            if (credential.getUsername().equals(credential1.getUsername())) {
-                return;
+        if (website.addCredential(credential) && website.getDirectedWebsite() == null) {
+            getWebsiteRegistry().getCredentialIndex().add(website, credential);
+        }
+    }
+
+    /**
+     * Hash the credentials on the credential verifier and add them to the website, unless the
+     * website already holds the username. Removing the username before they are hashed drops
+     * them.
+     * @param username submitted username
+     * @param password submitted password
+     * @param website website the credentials are used on
+     * @return done once the credentials are added or dropped
+     */
+    public CompletableFuture<Void> addCredential(String username, String password, Website website) {
+        for (Credential credential : website.getCredentials()) {
+            if (credential.getUsername().equals(username)) {
+                return CompletableFuture.completedFuture(null);
             }
         }
-        website.getCredentials().add(credential);
+        String key = website.getHost() + ' ' + username;
+        CompletableFuture<Credential> creation = credentialVerifier.create(username, password);
+        pendingCredentials.put(key, creation);
+        return creation
+                .thenAccept(credential -> {
+                    synchronized (website) {
+                        if (pendingCredentials.remove(key, creation)) {
+                            addCredential(credential, website);
+                        }
+                    }
+                })
+                .exceptionally(e -> {
+                    pendingCredentials.remove(key, creation);
+                    LOGGER.warn("Credential for " + website.getHost() + " not stored: " + e.getMessage());
+                    return null;
+                });
     }
 
     public void removeCredential(String username, Website website) {
-        Credential credentialRM = null;
-        for(Credential credential1: website.getCredentials()) {
-            if (username.equals(credential1.getUsername())) {
-                credentialRM = credential1;
-                break;
+        CredentialIndex index = getWebsiteRegistry().getCredentialIndex();
+        synchronized (website) {
+            pendingCredentials.remove(website.getHost() + ' ' + username);
+            for (Credential credential : website.getCredentials()) {
+                if (credential.getUsername().equals(username)) {
+                    index.remove(website, credential);
+                }
             }
+            website.removeCredential(username);
         }
-        if (credentialRM != null) {
-            website.getCredentials().remove(credentialRM);
-        }
     }
 
-    public Map<String, HttpMessage> getLoginMessageMap() {
-        return loginMessageMap;
+    private WebsiteRegistry getWebsiteRegistry() {
+        return this.listener.getExtension().getWebsiteRegistry();
+    }
+
+    /**
+     * Hold back a login suspected of phishing until the user confirms the credentials are
+     * theirs, they are only hashed once confirmed
+     * @param host sanitized host the credentials are submitted to
+     * @param username submitted username
+     * @param password submitted password
+     * @return id to confirm the login with
+     */
+    public String holdLogin(String host, String username, String password) {
+        return pendingLogins.put(host, username, password);
     }
 
-    public List<CreHostCombi> getIgnorePasswordCheckList() {
-        return ignorePasswordCheckList;
+    /**
+     * @return the logins held back by the phishing warning
+     */
+    public PendingLoginStore getPendingLogins() {
+        return pendingLogins;
+    }
+
+    /**
+     * @return the combinations the weak password warnings are suppressed for
+     */
+    public PasswordWarningSuppressions getPasswordWarningSuppressions() {
+        return passwordWarningSuppressions;
     }
 
     public boolean ignoreCombi(String host, String username) {
-        for (CreHostCombi combi: ignorePasswordCheckList) {
-            if (combi.getUsername().equals(username) && combi.getHost().equals(host)) {
-                return true;
-            }
-        }
-        return false;
+        return passwordWarningSuppressions.isSuppressed(host, username);
     }
 
     public String getWeakPasswordPage(String... args) {
-        String host = args[0];
-        String reason = args[1];
-        String username = args[2];
-
-        try {
-            File ff = new File(Constant.getZapHome(), ExtensionSecurityProxy.PASSWORD_HTML_TEMPLATE);
-            Scanner myReader = new Scanner(ff);
-            StringBuilder html_content = new StringBuilder();
-            while (myReader.hasNextLine()) {
-                html_content.append(myReader.nextLine()).append("\n");
-            }
-            myReader.close();
-
-            return html_content.toString()
-                    .replace(PHISHING_HOST, host)
-                    .replace(USERNAME, username)
-                    .replace(REASON, reason);
+        return weakPasswordTemplate.renderString(args[0], args[1], args[2]);
+    }
 
-        } catch (Exception e) {
-            LOGGER.log(Level.ERROR, e.getMessage());
-        }
-        return null;
+    /**
+     * Render the weak password page directly as response body
+     * @param host host the password is submitted to
+     * @param reason why the password is weak
+     * @param username submitted username
+     * @return html page in UTF-8, null if the template can not be read
+     */
+    public byte[] getWeakPasswordPageBody(String host, String reason, String username) {
+        return weakPasswordTemplate.render(host, reason, username);
     }
 
     @Override
     public String getWarningPage(String... args) {
-        String phishingHost = args[0];
-        String creUsedHost = args[1];
-        String username = args[2];
-        String uuid = args[3];
-
-        try {
-            File ff = new File(Constant.getZapHome(), ExtensionSecurityProxy.PHISHING_HTML_TEMPLATE);
-            Scanner myReader = new Scanner(ff);
-            StringBuilder html_content = new StringBuilder();
-            while (myReader.hasNextLine()) {
-                html_content.append(myReader.nextLine()).append("\n");
-            }
-            myReader.close();
-
-            return html_content.toString()
-                    .replace(PHISHING_HOST, phishingHost)
-                    .replace(CRE_USED_HOST, creUsedHost)
-                    .replace(USERNAME, username)
-                    .replace(UUID, uuid);
-        } catch (Exception e) {
-            LOGGER.log(Level.ERROR, e.getMessage());
-        }
-        return null;
+        return warningTemplate.renderString(args[0], args[1], args[2], args[3]);
+    }
+
+    /**
+     * Render the phishing warning page directly as response body
+     * @param phishingHost host the credentials are submitted to
+     * @param creUsedHost host the credentials belong to
+     * @param username submitted username
+     * @param uuid id of the held back login request
+     * @return html page in UTF-8, null if the template can not be read
+     */
+    public byte[] getWarningPageBody(String phishingHost, String creUsedHost, String username, String uuid) {
+        return warningTemplate.render(
+                phishingHost, UNKNOWN.equals(creUsedHost) ? UNKNOWN_HOST : creUsedHost, username, uuid);
     }
 }
@@ -0,0 +1,45 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A single salted SHA-512 round, the hash of the credentials stored by older versions. Cheap,
+ * the cost is ignored. The digests are reused per thread.
+ */
+public final class Sha512Kdf implements PasswordKdf {
+    public static final String NAME = "SHA-512";
+    public static final Sha512Kdf INSTANCE = new Sha512Kdf();
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(Sha512Kdf::newDigest);
+
+    private Sha512Kdf() {
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void derive(String password, byte[] salt, int cost, byte[] out) {
+        MessageDigest md = DIGEST.get();
+        md.update(salt);
+        md.update(password.getBytes(StandardCharsets.UTF_8));
+        try {
+            md.digest(out, 0, HASH_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(NAME);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.zaproxy.addon.securityproxy.proxytests.constraints.TypoClassifier;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A deletion-neighbourhood (SymSpell style) index over the legitimate host names.
+ * Every known host is stored under itself and under every string obtained by deleting
+ * one of its characters. A host that is one swap, extra, missing or replaced character
+ * away from a known host always shares one of those keys with it, so a lookup only
+ * verifies the few hosts stored under the keys of the tested host instead of running
+ * the constraints against the whole host store.
+ *
+ * Lookups do not lock and may run while a host is added: the maps are concurrent and the
+ * buckets are arrays replaced on every change. Changes are serialized on the index.
+ */
+public class TypoCandidateIndex {
+
+    private final TypoClassifier classifier;
+    private final Map<String, Entry> hosts;
+    private final Map<String, Entry[]> neighbourhoods;
+    private int ordinal;
+
+    /**
+     * Create an empty index verifying candidates with the typo classifier
+     */
+    public TypoCandidateIndex() {
+        this.classifier = new TypoClassifier();
+        this.hosts = new ConcurrentHashMap<>();
+        this.neighbourhoods = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add a legitimate host to the index. Adding a host again marks it as the most recent one,
+     * the same way a later entry in the host list wins over an earlier one.
+     * @param host legitimate hostname
+     */
+    public synchronized void add(String host) {
+        Entry entry = hosts.get(host);
+        if (entry != null) {
+            entry.ordinal = ordinal++;
+            return;
+        }
+
+        entry = new Entry(host, ordinal++);
+        addToBucket(host, entry);
+        for (int i = 0; i < host.length(); i++) {
+            addToBucket(deleteCharAt(host, i), entry);
+        }
+        hosts.put(host, entry);
+    }
+
+    private void addToBucket(String key, Entry entry) {
+        Entry[] entries = neighbourhoods.get(key);
+        if (entries == null) {
+            neighbourhoods.put(key, new Entry[] {entry});
+            return;
+        }
+        for (Entry e : entries) {
+            if (e == entry) {
+                return;
+            }
+        }
+        Entry[] copy = Arrays.copyOf(entries, entries.length + 1);
+        copy[entries.length] = entry;
+        neighbourhoods.put(key, copy);
+    }
+
+    /**
+     * Remove every host from the index
+     */
+    public synchronized void clear() {
+        hosts.clear();
+        neighbourhoods.clear();
+        ordinal = 0;
+    }
+
+    /**
+     * @param host hostname
+     * @return whether the hostname is a known host
+     */
+    public boolean contains(String host) {
+        return host != null && hosts.containsKey(host);
+    }
+
+    /**
+     * @return number of distinct hosts in the index
+     */
+    public int size() {
+        return hosts.size();
+    }
+
+    /**
+     * Find the known host the given hostname is a typo of. When several known hosts match,
+     * the most recently added one is returned.
+     * @param testHost the potential typo hostname
+     * @return the match, or null when no constraint is violated
+     */
+    public Match findTypoOf(String testHost) {
+        if (testHost == null) {
+            return null;
+        }
+
+        Match best = verify(testHost, neighbourhoods.get(testHost), null);
+        for (int i = 0; i < testHost.length(); i++) {
+            best = verify(testHost, neighbourhoods.get(deleteCharAt(testHost, i)), best);
+        }
+        return best;
+    }
+
+    private Match verify(String testHost, Entry[] candidates, Match best) {
+        if (candidates == null) {
+            return best;
+        }
+
+        for (Entry candidate : candidates) {
+            int candidateOrdinal = candidate.ordinal;
+            if (best != null && best.ordinal >= candidateOrdinal) {
+                continue;
+            }
+            TypoClassifier.TypoType typoType = classifier.classify(testHost, candidate.host);
+            if (typoType != null) {
+                best = new Match(candidate.host, typoType, candidateOrdinal);
+            }
+        }
+        return best;
+    }
+
+    private static String deleteCharAt(String s, int i) {
+        return new StringBuilder(s.length() - 1)
+                .append(s, 0, i)
+                .append(s, i + 1, s.length())
+                .toString();
+    }
+
+    private static class Entry {
+        private final String host;
+        private volatile int ordinal;
+
+        private Entry(String host, int ordinal) {
+            this.host = host;
+            this.ordinal = ordinal;
+        }
+    }
+
+    /**
+     * A known host together with the kind of typo the tested hostname is.
+     */
+    public static class Match {
+        private final String knownHost;
+        private final TypoClassifier.TypoType typoType;
+        private final int ordinal;
+
+        private Match(String knownHost, TypoClassifier.TypoType typoType, int ordinal) {
+            this.knownHost = knownHost;
+            this.typoType = typoType;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * @return the legitimate host the tested hostname is a typo of
+         */
+        public String getKnownHost() {
+            return knownHost;
+        }
+
+        /**
+         * @return the kind of typo, which tells the constraint that was violated
+         */
+        public TypoClassifier.TypoType getTypoType() {
+            return typoType;
+        }
+    }
+}
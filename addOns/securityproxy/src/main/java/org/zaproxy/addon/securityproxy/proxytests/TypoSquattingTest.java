@@ -4,20 +4,11 @@ import org.apache.commons.httpclient.URI;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.parosproxy.paros.Constant;
 import org.parosproxy.paros.network.HttpMessage;
 import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
 import org.zaproxy.addon.securityproxy.SecurityProxyListener;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.AdjSwappedCharacterConstraint;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.ExtraCharacterConstraint;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.MissingCharacterConstraint;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.ReplacedCharacterConstraint;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.TypoSquattingConstraint;
 
-import java.io.File;
-import java.util.List;
-import java.util.Scanner;
-import java.util.stream.Collectors;
+import java.util.Collection;
 
 /**
  * TypoSquatting Test is extended from ProxyTest
@@ -27,26 +18,28 @@ import java.util.stream.Collectors;
  */
 public class TypoSquattingTest extends ProxyTest {
 
-    private final List<TypoSquattingConstraint> constraints;
-
     public static final String HOST_NAME_SAFE_RESULT = "safe";
     private static final String TYPO_HOST = "[TypoHost]";
     private static final String ORIGIN_HOST = "[OriginPage]";
+    private static final String REDIRECT_HOST = "[RedirectHost]";
+    private static final int VERDICT_CACHE_SIZE = 4096;
+    private static final long VERDICT_CACHE_TTL_MILLIS = 10 * 60 * 1000L;
 
     private static final Logger LOGGER = LogManager.getLogger(TypoSquattingTest.class);
 
+    private final HtmlTemplate warningTemplate =
+            new HtmlTemplate(ExtensionSecurityProxy.TYPO_HTML_TEMPLATE, TYPO_HOST, ORIGIN_HOST);
+    private final HtmlTemplate redirectTemplate =
+            new HtmlTemplate(ExtensionSecurityProxy.REDIRECT_HTML, REDIRECT_HOST);
+    private final TypoVerdictCache verdictCache =
+            new TypoVerdictCache(VERDICT_CACHE_SIZE, VERDICT_CACHE_TTL_MILLIS);
+
     /**
      * Create the TypoSquattingTest with the ProxyListener to pass on requests
      * @param listener a ProxyListener
      */
     public TypoSquattingTest(SecurityProxyListener listener) {
         super(listener);
-        constraints = List.of(
-                new AdjSwappedCharacterConstraint(),
-                new ExtraCharacterConstraint(),
-                new MissingCharacterConstraint(),
-                new ReplacedCharacterConstraint()
-        );
     }
 
     /**
@@ -68,50 +61,51 @@ public class TypoSquattingTest extends ProxyTest {
      * @return safe when no violations found and intended website in case of violation
      */
     public String isSafeWithReason(HttpMessage msg) {
-        String testHostName = extractSearchHost(msg);
+        return isSafeWithReason(
+                extractSearchHost(msg),
+                uriStringToHostName(msg.getRequestHeader().getURI().toString()));
+    }
 
-        for(String knownHostName : this.getKnownUrlList()) {
-            if (knownHostName.equals(testHostName)) {
-                return HOST_NAME_SAFE_RESULT;
-            }
+    /**
+     * Determine whether the host pair of a request violates any constraints. Verdicts are
+     * cached per host pair until the host store changes or the verdict expires.
+     * @param searchHostName the sanitized origin/referer hostname, or the request hostname
+     * @param uriHostName the sanitized request hostname
+     * @return safe when no violations found and intended website in case of violation
+     */
+    public String isSafeWithReason(String searchHostName, String uriHostName) {
+        if (searchHostName == null || uriHostName == null) {
+            return computeVerdict(getRegistry().getTypoCandidateIndex(), searchHostName, uriHostName);
         }
 
-        String result1 = HOST_NAME_SAFE_RESULT;
-        String result2 = HOST_NAME_SAFE_RESULT;
-
-        for(String knownHostName : this.getKnownUrlList()) {
-            for(TypoSquattingConstraint constraint : constraints) {
-                if (constraint.passedConstraint(testHostName, knownHostName)) { //swap testHostName and knownHostName I think (results will be same)
-                    LOGGER.log(Level.INFO, "Constraint " +
-                            constraint.getClass().getName() +
-                            "Fail: " + testHostName + " - " + knownHostName);
-                    result1 = knownHostName;
-                    break;
-                }
-            }
+        WebsiteRegistry registry = getRegistry();
+        long generation = registry.getGeneration();
+        String key = TypoVerdictCache.key(searchHostName, uriHostName);
+        String verdict = verdictCache.get(key, generation);
+        if (verdict == null) {
+            verdict = computeVerdict(registry.getTypoCandidateIndex(), searchHostName, uriHostName);
+            verdictCache.put(key, verdict, generation);
         }
+        return verdict;
+    }
 
-        if (uriStringToHostName(msg.getRequestHeader().getURI().toString()).equals(testHostName)) {
-            return result1;
+    private String computeVerdict(TypoCandidateIndex index, String testHostName, String uriHostName) {
+        if (index.contains(testHostName)) {
+            return HOST_NAME_SAFE_RESULT;
         }
 
-        testHostName = uriStringToHostName(msg.getRequestHeader().getURI().toString());
-        for(String knownHostName : this.getKnownUrlList()) {
-            if (knownHostName.equals(testHostName)) {
-                return HOST_NAME_SAFE_RESULT;
-            }
+        String result1 = findIntendedHost(index, testHostName);
 
-            for(TypoSquattingConstraint constraint : constraints) {
-                if (constraint.passedConstraint(testHostName, knownHostName)) {
-                    LOGGER.log(Level.INFO, "Constraint " +
-                            constraint.getClass().getName() +
-                            "Fail: " + testHostName + " - " + knownHostName);
-                    result2 = knownHostName;
-                    break;
-                }
-            }
+        if (uriHostName.equals(testHostName)) {
+            return result1;
         }
 
+        if (index.contains(uriHostName)) {
+            return HOST_NAME_SAFE_RESULT;
+        }
+
+        String result2 = findIntendedHost(index, uriHostName);
+
         if (result1.equals(HOST_NAME_SAFE_RESULT) || result2.equals(HOST_NAME_SAFE_RESULT)) {
             return HOST_NAME_SAFE_RESULT;
         }
@@ -119,6 +113,24 @@ public class TypoSquattingTest extends ProxyTest {
         return result1;
     }
 
+    /**
+     * Look up the known host that the hostname is a typo of
+     * @param index the typo candidate index of the known hosts
+     * @param testHostName the hostname to test
+     * @return the intended known host, or safe when no constraint is violated
+     */
+    private String findIntendedHost(TypoCandidateIndex index, String testHostName) {
+        TypoCandidateIndex.Match match = index.findTypoOf(testHostName);
+        if (match == null) {
+            return HOST_NAME_SAFE_RESULT;
+        }
+
+        LOGGER.log(Level.INFO, "Constraint " +
+                match.getTypoType() +
+                "Fail: " + testHostName + " - " + match.getKnownHost());
+        return match.getKnownHost();
+    }
+
     /**
      * Return hostname from URI string
      * @param uri uri
@@ -182,25 +194,17 @@ public class TypoSquattingTest extends ProxyTest {
      */
     @Override
     public String getWarningPage(String... args) {
-        String typoHost = args[0];
-        String originPage = args[1];
-
-        try {
-            File ff = new File(Constant.getZapHome(), ExtensionSecurityProxy.TYPO_HTML_TEMPLATE);
-            Scanner myReader = new Scanner(ff);
-            StringBuilder html_content = new StringBuilder();
-            while (myReader.hasNextLine()) {
-                html_content.append(myReader.nextLine()).append("\n");
-            }
-            myReader.close();
+        return warningTemplate.renderString(args[0], args[1]);
+    }
 
-            return html_content.toString()
-                    .replace(TYPO_HOST, typoHost)
-                    .replace(ORIGIN_HOST, originPage);
-        } catch (Exception e) {
-            LOGGER.log(Level.ERROR, e.getMessage());
-        }
-        return null;
+    /**
+     * Render the warning page directly as response body
+     * @param typoHost the typo host name that fails the constraints
+     * @param originPage the intended hostname
+     * @return html warning page in UTF-8, null if the template can not be read
+     */
+    public byte[] getWarningPageBody(String typoHost, String originPage) {
+        return warningTemplate.render(typoHost, originPage);
     }
 
     /**
@@ -208,19 +212,17 @@ public class TypoSquattingTest extends ProxyTest {
      * @return html of redirect page
      */
     public String getRedirectPage() {
-        try {
-            File ff = new File(Constant.getZapHome(), ExtensionSecurityProxy.REDIRECT_HTML);
-            Scanner myReader = new Scanner(ff);
-            StringBuilder html_content = new StringBuilder();
-            while (myReader.hasNextLine()) {
-                html_content.append(myReader.nextLine()).append("\n");
-            }
-            myReader.close();
-            return html_content.toString();
-        } catch (Exception e) {
-            LOGGER.log(Level.ERROR, e.getMessage());
-        }
-        return "null";
+        String page = redirectTemplate.renderString(REDIRECT_HOST);
+        return page == null ? ExtensionSecurityProxy.NULL : page;
+    }
+
+    /**
+     * Render the page that redirects on load directly as response body
+     * @param redirectHost the url to redirect to
+     * @return html of redirect page in UTF-8, null if the template can not be read
+     */
+    public byte[] getRedirectPageBody(String redirectHost) {
+        return redirectTemplate.render(redirectHost);
     }
 
     /**
@@ -229,7 +231,7 @@ public class TypoSquattingTest extends ProxyTest {
      * @param origin intended website
      */
     public void addTypoHost(String host, Website origin) {
-        this.listener.getExtension().getWebsites().add(new Website(host, origin));
+        getRegistry().add(new Website(host, origin));
     }
 
     /**
@@ -238,13 +240,7 @@ public class TypoSquattingTest extends ProxyTest {
      * @return whether the host exists or not
      */
     public boolean addKnownHost(String host) {
-        for (Website web: this.getKnownWebsites()) {
-            if (web.getHost().equals(host)) {
-                return false;
-            }
-        }
-        this.listener.getExtension().getWebsites().add(new Website(host));
-        return true;
+        return getRegistry().add(new Website(host));
     }
 
     /**
@@ -253,12 +249,7 @@ public class TypoSquattingTest extends ProxyTest {
      * @return legitimate website object of hostname
      */
     public Website getKnownWebsite(String host) {
-        for(Website web: this.getKnownWebsites()) {
-            if (web.getHost().equals(host)) {
-                return web;
-            }
-        }
-        return null;
+        return getRegistry().getKnownWebsite(host);
     }
 
     /**
@@ -266,41 +257,46 @@ public class TypoSquattingTest extends ProxyTest {
      * @return whether the hostname belongs to any stored typo website object
      */
     public boolean isTypoWebsite(String host) {
-        for(Website web: this.getTypoWebsites()) {
-            if (web.getHost().equals(host)) {
-                return true;
-            }
-        }
-        return false;
+        return getRegistry().isTypoHost(host);
+    }
+
+    /**
+     * @param host typo hostname
+     * @return the stored typo website object of the hostname, null if there is none
+     */
+    public Website getTypoWebsite(String host) {
+        return getRegistry().getTypoWebsite(host);
     }
 
     /**
      * @return a list of legitimate websites from storage
      */
-    public List<Website> getKnownWebsites() {
-        return this.listener.getExtension().getWebsites()
-                .stream()
-                .filter(website -> website.getDirectedWebsite() == null)
-                .collect(Collectors.toList());
+    public Collection<Website> getKnownWebsites() {
+        return getRegistry().getKnownWebsites();
     }
 
     /**
      * @return a list of typo websites from storage
      */
-    public List<Website> getTypoWebsites() {
-        return this.listener.getExtension().getWebsites()
-                .stream()
-                .filter(website -> website.getDirectedWebsite() != null)
-                .collect(Collectors.toList());
+    public Collection<Website> getTypoWebsites() {
+        return getRegistry().getTypoWebsites();
     }
 
     /**
      * @return a list of legitimate websites from storage as hostname
      */
-    public List<String> getKnownUrlList() {
-        return this.getKnownWebsites()
-                .stream()
-                .map(Website::getHost)
-                .collect(Collectors.toList());
+    public Collection<String> getKnownUrlList() {
+        return getRegistry().getKnownHosts();
+    }
+
+    /**
+     * @return the cache of typosquatting verdicts per host pair
+     */
+    public TypoVerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    private WebsiteRegistry getRegistry() {
+        return this.listener.getExtension().getWebsiteRegistry();
     }
 }
@@ -0,0 +1,172 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size and time bounded LRU cache of typosquatting verdicts keyed by the sanitized
+ * (search host, URI host) pair. Every entry belongs to a generation of the host store,
+ * the whole cache is dropped as soon as the store reports a new generation, so a host
+ * added with addKnownHost or addTypoHost is taken into account by the next request.
+ */
+public class TypoVerdictCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<String, CachedVerdict> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * @param maxSize maximum number of verdicts kept
+     * @param ttlMillis time in milliseconds after which a verdict is recomputed
+     */
+    public TypoVerdictCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedVerdict> eldest) {
+                if (size() > TypoVerdictCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param searchHost sanitized origin/referer hostname
+     * @param uriHost sanitized request hostname
+     * @return the key of the host pair
+     */
+    public static String key(String searchHost, String uriHost) {
+        return searchHost + ' ' + uriHost;
+    }
+
+    /**
+     * Get a cached verdict
+     * @param key the key of the host pair
+     * @param currentGeneration the current generation of the host store
+     * @return the verdict, or null if there is no valid verdict for the key
+     */
+    public synchronized String get(String key, long currentGeneration) {
+        invalidateIfStale(currentGeneration);
+
+        CachedVerdict cached = entries.get(key);
+        if (cached == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - cached.createdNanos >= ttlNanos) {
+            entries.remove(key);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.verdict;
+    }
+
+    /**
+     * Store a verdict, unless the host store changed since the verdict was computed
+     * @param key the key of the host pair
+     * @param verdict the verdict
+     * @param computedGeneration the generation of the host store the verdict was computed with
+     */
+    public synchronized void put(String key, String verdict, long computedGeneration) {
+        invalidateIfStale(computedGeneration);
+        if (computedGeneration == generation) {
+            entries.put(key, new CachedVerdict(verdict, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Drop every cached verdict
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private void invalidateIfStale(long currentGeneration) {
+        if (currentGeneration > generation) {
+            if (!entries.isEmpty()) {
+                invalidations.increment();
+                entries.clear();
+            }
+            generation = currentGeneration;
+        }
+    }
+
+    /**
+     * @return number of cached verdicts
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return maximum number of cached verdicts
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that had to compute the verdict
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of verdicts dropped because the cache was full
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return number of times the cache was dropped because the host store changed
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TypoVerdictCache{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", invalidations=" + getInvalidations() +
+                '}';
+    }
+
+    private static class CachedVerdict {
+        private final String verdict;
+        private final long createdNanos;
+
+        private CachedVerdict(String verdict, long createdNanos) {
+            this.verdict = verdict;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package org.zaproxy.addon.securityproxy.proxytests;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Website class represents the visited website. Website is model to be compact for storing yet contains
  * enough information for process future requests.
+ * The credentials are a copy-on-write list, so they can be read by proxy threads while
+ * another thread adds or removes a credential.
  */
 public class Website implements Serializable {
     private String host;
@@ -21,7 +25,7 @@ public class Website implements Serializable {
      */
     public Website(String host) {
         this.host = host;
-        this.credentials = new ArrayList<>();
+        this.credentials = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -32,7 +36,7 @@ public class Website implements Serializable {
     public Website(String host, Website directedWebsite) {
         this.host = host;
         this.directedWebsite = directedWebsite;
-        this.credentials = new ArrayList<>();
+        this.credentials = new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -53,6 +57,37 @@ public class Website implements Serializable {
         return credentials;
     }
 
+    /**
+     * Add the credential unless the website already has a credential with the same username
+     * @param credential the credential to add
+     * @return whether the credential was added
+     */
+    public synchronized boolean addCredential(Credential credential) {
+        for (Credential existing : credentials) {
+            if (existing.getUsername().equals(credential.getUsername())) {
+                return false;
+            }
+        }
+        return credentials.add(credential);
+    }
+
+    /**
+     * Remove the credential with the given username
+     * @param username username of the credential
+     * @return whether a credential was removed
+     */
+    public synchronized boolean removeCredential(String username) {
+        return credentials.removeIf(credential -> username.equals(credential.getUsername()));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // websites stored by older versions hold a plain ArrayList
+        credentials = credentials == null
+                ? new CopyOnWriteArrayList<>()
+                : new CopyOnWriteArrayList<>(credentials);
+    }
+
     @Override
     public String toString() {
         return "Website{" +
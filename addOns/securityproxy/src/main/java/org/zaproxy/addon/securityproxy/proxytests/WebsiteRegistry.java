@@ -0,0 +1,206 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-memory store of the visited websites. Legitimate websites and typo websites (the ones
+ * with a directed website) are kept in separate maps keyed by hostname, and the legitimate
+ * hosts are also indexed for typo lookups and their credentials for reuse lookups, so every
+ * host lookup on the request path is a hash lookup. The insertion order is kept for storing the websites to file.
+ *
+ * The proxy listener is called from many proxy worker threads. Reads never lock: the maps
+ * are concurrent and the ordered lists are copy-on-write. Writes are serialized on the
+ * registry, and clearing swaps in a fresh, empty state at once.
+ */
+public class WebsiteRegistry {
+
+    private volatile State state;
+    private volatile long generation;
+
+    public WebsiteRegistry() {
+        state = new State();
+    }
+
+    /**
+     * Add a website, a legitimate one if it has no directed website and a typo one otherwise.
+     * A hostname is only registered once per kind, the first website added for it is kept.
+     * @param website the website to add
+     * @return whether the website was added
+     */
+    public synchronized boolean add(Website website) {
+        State current = state;
+        if (!current.register(website)) {
+            return false;
+        }
+        current.websites.add(website);
+        if (website.getDirectedWebsite() == null) {
+            current.knownList.add(website);
+        } else {
+            current.typoList.add(website);
+        }
+        generation++;
+        return true;
+    }
+
+    /**
+     * Add every website of the collection
+     * @param websites the websites to add
+     */
+    public synchronized void addAll(Collection<Website> websites) {
+        State current = state;
+        List<Website> added = new ArrayList<>();
+        List<Website> addedKnown = new ArrayList<>();
+        List<Website> addedTypo = new ArrayList<>();
+        for (Website website : websites) {
+            if (current.register(website)) {
+                added.add(website);
+                (website.getDirectedWebsite() == null ? addedKnown : addedTypo).add(website);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        // one copy of each list for the whole batch
+        current.websites.addAll(added);
+        current.knownList.addAll(addedKnown);
+        current.typoList.addAll(addedTypo);
+        generation++;
+    }
+
+    /**
+     * Remove every website
+     */
+    public synchronized void clear() {
+        state = new State();
+        generation++;
+    }
+
+    /**
+     * @param host hostname
+     * @return the legitimate website of the hostname, null if the host is not known
+     */
+    public Website getKnownWebsite(String host) {
+        return host == null ? null : state.knownWebsites.get(host);
+    }
+
+    /**
+     * @param host typo hostname
+     * @return the typo website of the hostname, null if the host is not a stored typo
+     */
+    public Website getTypoWebsite(String host) {
+        return host == null ? null : state.typoWebsites.get(host);
+    }
+
+    /**
+     * @param host hostname
+     * @return whether the hostname belongs to a legitimate website
+     */
+    public boolean isKnownHost(String host) {
+        return host != null && state.knownWebsites.containsKey(host);
+    }
+
+    /**
+     * @param host hostname
+     * @return whether the hostname belongs to a stored typo website
+     */
+    public boolean isTypoHost(String host) {
+        return host != null && state.typoWebsites.containsKey(host);
+    }
+
+    /**
+     * @return read-only view of all websites in insertion order
+     */
+    public List<Website> getWebsites() {
+        return state.websitesView;
+    }
+
+    /**
+     * @return read-only view of the legitimate websites in insertion order
+     */
+    public Collection<Website> getKnownWebsites() {
+        return state.knownWebsitesView;
+    }
+
+    /**
+     * @return read-only view of the typo websites in insertion order
+     */
+    public Collection<Website> getTypoWebsites() {
+        return state.typoWebsitesView;
+    }
+
+    /**
+     * @return read-only view of the legitimate hostnames
+     */
+    public Set<String> getKnownHosts() {
+        return state.knownHostsView;
+    }
+
+    /**
+     * @return the typo candidate index of the legitimate hostnames
+     */
+    public TypoCandidateIndex getTypoCandidateIndex() {
+        return state.typoCandidateIndex;
+    }
+
+    /**
+     * @return the index of the credentials of the legitimate websites
+     */
+    public CredentialIndex getCredentialIndex() {
+        return state.credentialIndex;
+    }
+
+    /**
+     * @return counter that changes every time a website is added or the store is cleared
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return number of websites
+     */
+    public int size() {
+        return state.websites.size();
+    }
+
+    /**
+     * The content of the registry between two clears. Only mutated under the registry lock.
+     */
+    private static class State {
+        private final List<Website> websites = new CopyOnWriteArrayList<>();
+        private final List<Website> knownList = new CopyOnWriteArrayList<>();
+        private final List<Website> typoList = new CopyOnWriteArrayList<>();
+        private final Map<String, Website> knownWebsites = new ConcurrentHashMap<>();
+        private final Map<String, Website> typoWebsites = new ConcurrentHashMap<>();
+        private final TypoCandidateIndex typoCandidateIndex = new TypoCandidateIndex();
+        private final CredentialIndex credentialIndex = new CredentialIndex();
+
+        private final List<Website> websitesView = Collections.unmodifiableList(websites);
+        private final Collection<Website> knownWebsitesView = Collections.unmodifiableList(knownList);
+        private final Collection<Website> typoWebsitesView = Collections.unmodifiableList(typoList);
+        private final Set<String> knownHostsView = Collections.unmodifiableSet(knownWebsites.keySet());
+
+        /**
+         * Put the website in its host map and index it if it is new
+         * @return whether the hostname was not registered yet
+         */
+        private boolean register(Website website) {
+            if (website.getDirectedWebsite() == null) {
+                if (knownWebsites.putIfAbsent(website.getHost(), website) != null) {
+                    return false;
+                }
+                typoCandidateIndex.add(website.getHost());
+                credentialIndex.addAll(website);
+                return true;
+            }
+            return typoWebsites.putIfAbsent(website.getHost(), website) == null;
+        }
+    }
+}
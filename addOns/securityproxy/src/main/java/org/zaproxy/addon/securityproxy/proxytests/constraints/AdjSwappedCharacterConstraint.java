@@ -17,7 +17,7 @@ public class AdjSwappedCharacterConstraint implements TypoSquattingConstraint{
         int n=original.length();
         if (typo.length() != n) return false;
         int nError = 0;
-        for (int i = 0; i < n-1; i++) {
+        for (int i = 0; i < n; i++) {
             if (!(original.charAt(i)==typo.charAt(i))) {
                 if (i==n-1) return false;
                 if (original.charAt(i+1)==typo.charAt(i) && original.charAt(i)==typo.charAt(i+1)) {
@@ -0,0 +1,35 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.parosproxy.paros.Constant;
+
+import java.io.File;
+
+/**
+ * Rejects passwords that appear in the local store of breached password hashes. Without an
+ * imported store every password passes.
+ */
+public class BreachedPasswConstraint implements SafePasswordConstraint {
+    private static final String BREACHED_PASSW_STRING = "example/breachedPasswords";
+    private final File store;
+
+    public BreachedPasswConstraint() {
+        this(new File(Constant.getZapHome(), BREACHED_PASSW_STRING));
+    }
+
+    /**
+     * @param store directory of the range files written by {@link BreachedPasswordStore#importDump}
+     */
+    public BreachedPasswConstraint(File store) {
+        this.store = store;
+    }
+
+    @Override
+    public boolean passedConstraint(String password) {
+        return !BreachedPasswordStore.get(store).contains(password);
+    }
+
+    @Override
+    public String getReason() {
+        return "password appears in a data breach";
+    }
+}
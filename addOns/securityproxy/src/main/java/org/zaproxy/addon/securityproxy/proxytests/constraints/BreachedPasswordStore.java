@@ -0,0 +1,372 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Offline store of the SHA-1 hashes of breached passwords, as published in the Pwned Passwords
+ * dumps. The hashes are split on their first {@link #PREFIX_BITS} bits into range files, like
+ * the ranges of the k-anonymity API. Each range file holds the next 64 bits of its hashes,
+ * sorted, and is mapped read-only the first time a password of its range is checked. SHA-1 is
+ * uniform, so the position of a hash in its range is interpolated and a lookup usually reads a
+ * single page. 76 bits of each hash are kept, an unlisted password matches a listed one about
+ * once in 2^76 / size checks.
+ */
+public class BreachedPasswordStore implements PasswordSet {
+    public static final int MAGIC = 0x70774252;
+    public static final String EXTENSION = ".range";
+    public static final int PREFIX_BITS = 12;
+
+    private static final int RANGES = 1 << PREFIX_BITS;
+    private static final int HEADER_SIZE = 8;
+    // the dump is split on its first byte before the ranges are sorted
+    private static final int PARTITIONS = 256;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final Logger LOGGER = LogManager.getLogger(BreachedPasswordStore.class);
+    private static final ConcurrentHashMap<File, BreachedPasswordStore> STORES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final File directory;
+    private final AtomicReferenceArray<ByteBuffer> ranges = new AtomicReferenceArray<>(RANGES);
+    private final int size;
+
+    /**
+     * @param directory directory of the range files, the store is empty if there are none
+     */
+    public BreachedPasswordStore(File directory) {
+        this.directory = directory;
+        long hashes = 0;
+        for (int prefix = 0; prefix < RANGES; prefix++) {
+            long length = rangeFile(directory, prefix).length();
+            if (length > HEADER_SIZE) {
+                hashes += (length - HEADER_SIZE) / Long.BYTES;
+            }
+        }
+        this.size = (int) Math.min(hashes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param directory directory of the range files
+     * @return the store of the directory, shared by all constraints using it
+     */
+    public static BreachedPasswordStore get(File directory) {
+        return STORES.computeIfAbsent(directory.getAbsoluteFile(), BreachedPasswordStore::new);
+    }
+
+    @Override
+    public boolean contains(String password) {
+        MessageDigest sha1 = SHA1.get();
+        return containsHash(sha1.digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @param sha1 SHA-1 hash of a password
+     * @return whether the hash is in the store
+     */
+    public boolean containsHash(byte[] sha1) {
+        long high = ByteBuffer.wrap(sha1).getLong();
+        int prefix = (int) (high >>> (Long.SIZE - PREFIX_BITS));
+        long key = (high << PREFIX_BITS) | ((sha1[8] & 0xffL) << 4) | ((sha1[9] & 0xff) >>> 4);
+        return indexOf(range(prefix), key) >= 0;
+    }
+
+    /**
+     * @return number of hashes in the store, capped to Integer.MAX_VALUE
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private ByteBuffer range(int prefix) {
+        ByteBuffer range = ranges.get(prefix);
+        if (range == null) {
+            range = map(rangeFile(directory, prefix));
+            if (!ranges.compareAndSet(prefix, null, range)) {
+                range = ranges.get(prefix);
+            }
+        }
+        return range;
+    }
+
+    private static ByteBuffer map(File file) {
+        if (!file.isFile()) {
+            return EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new EOFException(file + " truncated");
+                }
+            }
+            int count = header.getInt(4);
+            if (header.getInt(0) != MAGIC || channel.size() != HEADER_SIZE + (long) count * Long.BYTES) {
+                throw new IOException(file + " is not a range file");
+            }
+            ByteBuffer keys = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            keys.position(HEADER_SIZE);
+            return keys.slice();
+        } catch (IOException e) {
+            // kept empty, not mapped again on every check
+            LOGGER.error("Breached password range not used: " + e.getMessage());
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Interpolates the position of the key from its value, then gallops from there to bracket
+     * it and searches the bracket.
+     */
+    private static int indexOf(ByteBuffer range, long key) {
+        int n = range.limit() / Long.BYTES;
+        if (n == 0) {
+            return -1;
+        }
+        double fraction = ((key >>> 11) + 0.5) / (1L << 53);
+        int guess = (int) Math.min(n - 1, (long) (fraction * n));
+        int low;
+        int high;
+        int comparison = Long.compareUnsigned(range.getLong(guess * Long.BYTES), key);
+        if (comparison == 0) {
+            return guess;
+        } else if (comparison < 0) {
+            low = guess + 1;
+            high = low;
+            for (int step = 1; high < n && Long.compareUnsigned(range.getLong(high * Long.BYTES), key) < 0; step <<= 1) {
+                low = high + 1;
+                high = (int) Math.min(n, (long) high + step);
+            }
+            high = Math.min(high, n - 1);
+        } else {
+            high = guess - 1;
+            low = high;
+            for (int step = 1; low >= 0 && Long.compareUnsigned(range.getLong(low * Long.BYTES), key) > 0; step <<= 1) {
+                high = low - 1;
+                low = (int) Math.max(-1, (long) low - step);
+            }
+            low = Math.max(low, 0);
+        }
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            comparison = Long.compareUnsigned(range.getLong(middle * Long.BYTES), key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static File rangeFile(File directory, int prefix) {
+        return new File(directory, String.format("%03X", prefix) + EXTENSION);
+    }
+
+    // ---
+
+    /**
+     * Import a Pwned Passwords dump, in hash or in prevalence order. Each line is the hex SHA-1 of
+     * a password, optionally followed by ':' and the number of breaches it was seen in. The lines
+     * are split into partition files next to the store first, so only one partition is sorted in
+     * memory at a time. Every range file of the directory is replaced.
+     * @param dump lines of the dump
+     * @param directory directory of the range files
+     * @param minCount hashes seen in fewer breaches are left out, lines without count are kept
+     * @return number of hashes stored
+     * @throws IOException if the dump can't be read or the store can't be written
+     */
+    public static long importDump(BufferedReader dump, File directory, long minCount) throws IOException {
+        Files.createDirectories(directory.toPath());
+        File partitions = Files.createTempDirectory(directory.toPath(), "import").toFile();
+        try {
+            partition(dump, partitions, minCount);
+            long stored = 0;
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                stored += writeRanges(new File(partitions, Integer.toString(partition)), directory, partition);
+            }
+            STORES.remove(directory.getAbsoluteFile());
+            return stored;
+        } finally {
+            File[] files = partitions.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            Files.deleteIfExists(partitions.toPath());
+        }
+    }
+
+    private static void partition(BufferedReader dump, File partitions, long minCount) throws IOException {
+        DataOutputStream[] out = new DataOutputStream[PARTITIONS];
+        try {
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                out[partition] = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(partitions, Integer.toString(partition))), 1 << 14));
+            }
+            byte[] sha1 = new byte[20];
+            long lineNumber = 0;
+            long skipped = 0;
+            String line;
+            while ((line = dump.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                if (!parseHex(colon < 0 ? line : line.substring(0, colon), sha1)) {
+                    skipped++;
+                    continue;
+                }
+                if (colon >= 0 && parseCount(line.substring(colon + 1)) < minCount) {
+                    continue;
+                }
+                long high = ByteBuffer.wrap(sha1).getLong();
+                // the rest of the prefix, then the key
+                out[sha1[0] & 0xff].writeByte((int) (high >>> (Long.SIZE - PREFIX_BITS)) & 0xf);
+                out[sha1[0] & 0xff].writeLong((high << PREFIX_BITS) | ((sha1[8] & 0xffL) << 4) | ((sha1[9] & 0xff) >>> 4));
+            }
+            if (skipped > 0) {
+                LOGGER.warn("Skipped " + skipped + " of " + lineNumber + " lines that aren't SHA-1 hashes");
+            }
+        } finally {
+            IOException failure = null;
+            for (DataOutputStream stream : out) {
+                if (stream != null) {
+                    try {
+                        stream.close();
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static long writeRanges(File partition, File directory, int first) throws IOException {
+        int ranges = RANGES / PARTITIONS;
+        long records = partition.length() / (1 + Long.BYTES);
+        if (records > Integer.MAX_VALUE - 8) {
+            throw new IOException("Partition " + first + " too large to sort");
+        }
+        byte[] nibbles = new byte[(int) records];
+        long[] keys = new long[(int) records];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(partition), 1 << 16))) {
+            for (int i = 0; i < keys.length; i++) {
+                nibbles[i] = in.readByte();
+                keys[i] = in.readLong();
+            }
+        }
+
+        int[] starts = new int[ranges + 1];
+        for (byte nibble : nibbles) {
+            starts[nibble + 1]++;
+        }
+        for (int range = 0; range < ranges; range++) {
+            starts[range + 1] += starts[range];
+        }
+        long[] sorted = new long[keys.length];
+        int[] next = Arrays.copyOf(starts, ranges);
+        for (int i = 0; i < keys.length; i++) {
+            // flipping the sign bit sorts unsigned keys with the signed sort
+            sorted[next[nibbles[i]]++] = keys[i] ^ Long.MIN_VALUE;
+        }
+
+        long stored = 0;
+        for (int range = 0; range < ranges; range++) {
+            Arrays.sort(sorted, starts[range], starts[range + 1]);
+            int count = 0;
+            for (int i = starts[range]; i < starts[range + 1]; i++) {
+                if (count == 0 || sorted[i] != sorted[starts[range] + count - 1]) {
+                    sorted[starts[range] + count++] = sorted[i];
+                }
+            }
+            writeRange(sorted, starts[range], count, rangeFile(directory, first * ranges + range));
+            stored += count;
+        }
+        return stored;
+    }
+
+    private static void writeRange(long[] sorted, int from, int count, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for (int i = from; i < from + count; i++) {
+                out.writeLong(sorted[i] ^ Long.MIN_VALUE);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean parseHex(String hex, byte[] sha1) {
+        if (hex.length() != 2 * sha1.length) {
+            return false;
+        }
+        for (int i = 0; i < sha1.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return false;
+            }
+            sha1[i] = (byte) ((high << 4) | low);
+        }
+        return true;
+    }
+
+    private static long parseCount(String count) {
+        try {
+            return Long.parseLong(count.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("BreachedPasswordStore <dump> <directory> [<min count>]");
+            System.exit(1);
+        }
+        long minCount = args.length == 3 ? Long.parseLong(args[2]) : 0;
+        try (BufferedReader dump = new BufferedReader(
+                new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.US_ASCII), 1 << 16)) {
+            System.out.println(importDump(dump, new File(args[1]), minCount) + " hashes stored");
+        }
+    }
+}
@@ -1,25 +1,159 @@
 package org.zaproxy.addon.securityproxy.proxytests.constraints;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.BloomFilter;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.CrackLib;
-import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.Packer;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.FilteredDictionary;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.HashedDictionary;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.MappedPacker;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.WordDictionary;
 
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Checks passwords with CrackLib. The dictionary is mapped read-only once and shared by all
+ * checks, its lookups don't lock. Without an opened dictionary only the rules
+ * of CrackLib are checked.
+ */
 public class CrackLibPasswConstraint implements SafePasswordConstraint{
+    public static final String DICTIONARY = "test";
+
+    private static final Logger LOGGER = LogManager.getLogger(CrackLibPasswConstraint.class);
+    private volatile WordDictionary dictionary;
+    private volatile ForkJoinPool lookupPool;
+    private volatile long lookupTimeoutNanos;
+
+    /**
+     * Open the default dictionary read-only, replacing the current one. The compact hashed
+     * format is used when it was built, otherwise the cracklib files behind their Bloom filter
+     * when there is one.
+     * @throws IOException if the dictionary files can't be read
+     */
+    public void openDictionary() throws IOException {
+        if (HashedDictionary.exists(DICTIONARY)) {
+            setDictionary(new HashedDictionary(DICTIONARY));
+            return;
+        }
+
+        WordDictionary packer = new MappedPacker(DICTIONARY);
+        if (BloomFilter.exists(DICTIONARY)) {
+            try {
+                packer = new FilteredDictionary(packer, BloomFilter.read(DICTIONARY));
+            } catch (IOException | IllegalArgumentException e) {
+                // a stale filter would reject dictionary words, look them all up instead
+                LOGGER.warn("Bloom filter not used: " + e.getMessage());
+            }
+        }
+        setDictionary(packer);
+    }
+
+    /**
+     * Use the given dictionary for the next checks and close the current one
+     * @param dictionary dictionary to look passwords up in, or null to check the rules only
+     */
+    public synchronized void setDictionary(WordDictionary dictionary) {
+        WordDictionary old = this.dictionary;
+        this.dictionary = dictionary;
+        closeQuietly(old);
+    }
+
+    /**
+     * Close the dictionary, the next checks only use the rules
+     */
+    public void closeDictionary() {
+        setDictionary(null);
+    }
+
+    /**
+     * Look the candidates of each password up in parallel, a check that takes longer than the
+     * timeout fails
+     * @param parallelism number of lookup threads
+     * @param timeout time a check may take
+     * @param unit unit of the timeout
+     */
+    public synchronized void startParallelLookup(int parallelism, long timeout, TimeUnit unit) {
+        if (lookupPool != null) {
+            return;
+        }
+        lookupTimeoutNanos = unit.toNanos(timeout);
+        lookupPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ZAP-SecurityProxy-CrackLib-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Stop the parallel lookups, the next checks look up on the calling thread
+     */
+    public synchronized void stopParallelLookup() {
+        if (lookupPool != null) {
+            lookupPool.shutdownNow();
+            lookupPool = null;
+        }
+    }
+
     @Override
     public boolean passedConstraint(String password) {
+        ForkJoinPool pool = lookupPool;
         try {
-            Packer p = new Packer("test","rw");
-            //CrackLib cl = new CrackLib();
-            return CrackLib.fascistLook(p, password, null);
+            if (pool != null) {
+                return CrackLib.fascistLook(dictionary, password, null, pool, lookupTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            return CrackLib.fascistLook(dictionary, password, null);
         } catch (IOException e) {
-            e.printStackTrace();
+            // timed out or closed dictionary, the password is not known to fail
+            throw new UndeterminedConstraintException("Dictionary lookup failed: " + e.getMessage(), e);
         }
-        return false;
+    }
+
+    /**
+     * @return number of dictionary lookups since the dictionary was opened, 0 without a Bloom filter
+     */
+    public long getDictionaryLookups() {
+        WordDictionary current = dictionary;
+        return current instanceof FilteredDictionary ? ((FilteredDictionary) current).getLookups() : 0;
+    }
+
+    /**
+     * @return number of lookups answered by the Bloom filter alone
+     */
+    public long getFilterRejections() {
+        WordDictionary current = dictionary;
+        return current instanceof FilteredDictionary ? ((FilteredDictionary) current).getRejected() : 0;
+    }
+
+    /**
+     * @return number of lookups the Bloom filter let through for words not in the dictionary
+     */
+    public long getFilterFalsePositives() {
+        WordDictionary current = dictionary;
+        return current instanceof FilteredDictionary ? ((FilteredDictionary) current).getFalsePositives() : 0;
     }
 
     @Override
     public String getReason() {
         return "Password fails crackLib";
     }
+
+    @Override
+    public int getCost() {
+        return EXPENSIVE;
+    }
+
+    private static void closeQuietly(WordDictionary dictionary) {
+        if (dictionary == null) {
+            return;
+        }
+        try {
+            dictionary.close();
+        } catch (IOException e) {
+            LOGGER.error(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Password list held in a hash set, for lists small enough to keep as strings.
+ */
+public class HashPasswordSet implements PasswordSet {
+    private final Set<String> passwords;
+
+    public HashPasswordSet(Collection<String> passwords) {
+        this.passwords = new HashSet<>(passwords);
+    }
+
+    @Override
+    public boolean contains(String password) {
+        return passwords.contains(password);
+    }
+
+    @Override
+    public int size() {
+        return passwords.size();
+    }
+}
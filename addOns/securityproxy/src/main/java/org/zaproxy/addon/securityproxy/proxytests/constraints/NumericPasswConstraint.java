@@ -19,4 +19,9 @@ public class NumericPasswConstraint implements SafePasswordConstraint{
     public String getReason() {
         return "Password only contains numbers";
     }
+
+    @Override
+    public int getCost() {
+        return CHEAP;
+    }
 }
@@ -0,0 +1,352 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks a password against a list of constraints, cheapest first, and stops at the first
+ * constraint the password fails. Constraints of the same cost keep their order. The verdict is
+ * kept per salted SHA-256 digest of the password, so a password submitted again is not checked
+ * again until the verdicts are cleared, and no password is kept in memory.
+ *
+ * A constraint that can't tell whether the password passes, see
+ * {@link UndeterminedConstraintException}, doesn't fail it. The verdict of such a check is not
+ * kept, the password is checked again when it is submitted again.
+ *
+ * Once the async checks are started, constraints of at least {@link SafePasswordConstraint#EXPENSIVE}
+ * cost run on a small thread pool while the caller goes on. Concurrent checks of one password
+ * share the same run.
+ */
+public class PasswordCheckPipeline {
+
+    /** Constraints of at least this cost run on the async check threads */
+    public static final int ASYNC_COST = SafePasswordConstraint.EXPENSIVE;
+
+    private static final Logger LOGGER = LogManager.getLogger(PasswordCheckPipeline.class);
+    private static final int SALT_LENGTH = 16;
+    private static final int QUEUE_SIZE = 64;
+    // a password that passed every constraint, reasons are never empty
+    private static final String PASSED = "";
+    // a password that failed no constraint but was not checked against every one, never kept
+    private static final String UNDETERMINED = null;
+
+    private final List<SafePasswordConstraint> constraints;
+    private final int firstAsync;
+    private final int maxSize;
+    private final byte[] salt = new byte[SALT_LENGTH];
+    private final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(PasswordCheckPipeline::sha256);
+    private final Map<ByteBuffer, String> verdicts;
+    private final Map<ByteBuffer, CompletableFuture<String>> running = new ConcurrentHashMap<>();
+    private long generation;
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile long timeoutNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder undetermined = new LongAdder();
+
+    /**
+     * @param constraints constraints to check, in the order used for constraints of the same cost
+     * @param maxSize maximum number of verdicts kept, the least recently used is dropped first
+     */
+    public PasswordCheckPipeline(Collection<? extends SafePasswordConstraint> constraints, int maxSize) {
+        List<SafePasswordConstraint> sorted = new ArrayList<>(constraints);
+        sorted.sort(Comparator.comparingInt(SafePasswordConstraint::getCost));
+        this.constraints = sorted;
+
+        int i = 0;
+        while (i < sorted.size() && sorted.get(i).getCost() < ASYNC_COST) {
+            i++;
+        }
+        this.firstAsync = i;
+        this.maxSize = maxSize;
+        this.verdicts = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, String> eldest) {
+                return size() > PasswordCheckPipeline.this.maxSize;
+            }
+        };
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * Run the expensive constraints on their own threads, a caller waits at most the timeout
+     * for them
+     * @param threads number of check threads
+     * @param timeout time a caller waits for the expensive constraints
+     * @param unit unit of the timeout
+     */
+    public synchronized void startAsyncChecks(int threads, long timeout, TimeUnit unit) {
+        if (executor != null) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        timeoutNanos = unit.toNanos(timeout);
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "ZAP-SecurityProxy-PasswordCheck-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Stop the async checks, the next checks run every constraint on the calling thread. The
+     * checks that are still running are cancelled.
+     */
+    public synchronized void stopAsyncChecks() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            for (CompletableFuture<String> check : running.values()) {
+                check.cancel(false);
+            }
+            running.clear();
+        }
+    }
+
+    /**
+     * Check a password on the calling thread
+     * @param password password to check
+     * @return the reason of the first failed constraint, null if the password passed them all
+     * or failed none that could be checked
+     */
+    public String check(String password) {
+        ByteBuffer key = key(password);
+        String verdict = get(key);
+        if (verdict != null) {
+            return reason(verdict);
+        }
+        long computedGeneration = getGeneration();
+        verdict = run(password, 0, constraints.size());
+        put(key, verdict, computedGeneration);
+        return reason(verdict);
+    }
+
+    /**
+     * Check a password, the cheap constraints on the calling thread and the expensive ones on
+     * the async check threads when they are started
+     * @param password password to check
+     * @return the reason of the first failed constraint, null if the password passed them all
+     * or failed none that could be checked
+     */
+    public CompletableFuture<String> checkAsync(String password) {
+        ThreadPoolExecutor current = executor;
+        if (current == null || firstAsync == constraints.size()) {
+            return CompletableFuture.completedFuture(check(password));
+        }
+
+        ByteBuffer key = key(password);
+        String verdict = get(key);
+        if (verdict != null) {
+            return CompletableFuture.completedFuture(reason(verdict));
+        }
+        long computedGeneration = getGeneration();
+        String cheapVerdict = run(password, 0, firstAsync);
+        if (cheapVerdict != PASSED && cheapVerdict != UNDETERMINED) {
+            put(key, cheapVerdict, computedGeneration);
+            return CompletableFuture.completedFuture(reason(cheapVerdict));
+        }
+
+        CompletableFuture<String> check = new CompletableFuture<>();
+        CompletableFuture<String> other = running.putIfAbsent(key, check);
+        if (other != null) {
+            return other;
+        }
+        Runnable task = () -> {
+            try {
+                String result = run(password, firstAsync, constraints.size());
+                if (result == PASSED) {
+                    result = cheapVerdict;
+                }
+                put(key, result, computedGeneration);
+                // no longer running before it is done, so a later submit either finds the
+                // kept verdict or runs the check again, never joins an undetermined one
+                running.remove(key, check);
+                check.complete(reason(result));
+            } catch (RuntimeException | Error e) {
+                running.remove(key, check);
+                check.completeExceptionally(e);
+            }
+        };
+        try {
+            current.execute(task);
+        } catch (RejectedExecutionException e) {
+            // stopped or too many checks waiting
+            task.run();
+        }
+        return check;
+    }
+
+    /**
+     * Wait for a check started with {@link #checkAsync(String)}. A check that isn't done
+     * within the timeout goes on, its verdict is kept for the next submit of the password.
+     * @param check the check
+     * @return the reason of the first failed constraint, null if the password passed them all,
+     * the check timed out or was cancelled
+     */
+    public String await(CompletableFuture<String> check) {
+        try {
+            return check.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            LOGGER.warn("Password check not done after " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            LOGGER.debug("Password check cancelled");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+        return null;
+    }
+
+    /**
+     * Drop every verdict, e.g. when a constraint changed. Checks still running when the verdicts
+     * are dropped don't keep theirs.
+     */
+    public synchronized void clear() {
+        verdicts.clear();
+        generation++;
+    }
+
+    private String run(String password, int from, int to) {
+        String verdict = PASSED;
+        for (int i = from; i < to; i++) {
+            SafePasswordConstraint constraint = constraints.get(i);
+            try {
+                if (!constraint.passedConstraint(password)) {
+                    return constraint.getReason();
+                }
+            } catch (UndeterminedConstraintException e) {
+                undetermined.increment();
+                LOGGER.warn(constraint.getClass().getSimpleName() + " not checked: " + e.getMessage());
+                verdict = UNDETERMINED;
+            }
+        }
+        return verdict;
+    }
+
+    private synchronized String get(ByteBuffer key) {
+        String verdict = verdicts.get(key);
+        if (verdict == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return verdict;
+    }
+
+    private synchronized void put(ByteBuffer key, String verdict, long computedGeneration) {
+        if (verdict != UNDETERMINED && computedGeneration == generation) {
+            verdicts.put(key, verdict);
+        }
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private ByteBuffer key(String password) {
+        MessageDigest md = digest.get();
+        md.update(salt);
+        return ByteBuffer.wrap(md.digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String reason(String verdict) {
+        return verdict == PASSED || verdict == UNDETERMINED ? null : verdict;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the constraints in the order they are checked
+     */
+    public List<SafePasswordConstraint> getConstraints() {
+        return constraints;
+    }
+
+    /**
+     * @return number of kept verdicts
+     */
+    public synchronized int size() {
+        return verdicts.size();
+    }
+
+    /**
+     * @return number of checks answered by a kept verdict
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of checks that ran the constraints
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of checks a caller stopped waiting for
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return number of constraints that could not be checked
+     */
+    public long getUndetermined() {
+        return undetermined.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PasswordCheckPipeline{" +
+                "size=" + size() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", timeouts=" + getTimeouts() +
+                ", undetermined=" + getUndetermined() +
+                '}';
+    }
+}
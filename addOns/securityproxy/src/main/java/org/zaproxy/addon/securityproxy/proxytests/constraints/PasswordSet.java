@@ -0,0 +1,18 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+/**
+ * A list of passwords to reject, loaded once and shared by the constraints that use it.
+ */
+public interface PasswordSet {
+
+    /**
+     * @param password password to look up, as typed
+     * @return whether the password is in the list
+     */
+    boolean contains(String password);
+
+    /**
+     * @return number of distinct passwords in the list
+     */
+    int size();
+}
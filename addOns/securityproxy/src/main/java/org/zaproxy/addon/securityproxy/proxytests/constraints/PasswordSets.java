@@ -0,0 +1,80 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Loads each password list once, on first use, and shares it between all constraints that
+ * check against it. Lists up to {@link #HASH_SET_MAX_BYTES} are held in a hash set, larger
+ * ones as mapped sorted hashes.
+ */
+public final class PasswordSets {
+    /**
+     * Size of the largest list held as strings
+     */
+    public static final long HASH_SET_MAX_BYTES = 1 << 20;
+
+    private static final Logger LOGGER = LogManager.getLogger(PasswordSets.class);
+    private static final PasswordSet EMPTY = new HashPasswordSet(Collections.emptyList());
+    private static final ConcurrentHashMap<File, PasswordSet> SETS = new ConcurrentHashMap<>();
+
+    private PasswordSets() {
+    }
+
+    /**
+     * @param list password list, one password per line
+     * @return the shared passwords of the list, empty if it can't be read
+     */
+    public static PasswordSet get(File list) {
+        return SETS.computeIfAbsent(list.getAbsoluteFile(), PasswordSets::loadQuietly);
+    }
+
+    /**
+     * Load a list without sharing it
+     * @param list password list, one password per line
+     * @return the passwords of the list
+     * @throws IOException if the list can't be read
+     */
+    public static PasswordSet load(File list) throws IOException {
+        if (list.length() <= HASH_SET_MAX_BYTES) {
+            List<String> passwords = new ArrayList<>();
+            forEachLine(list, passwords::add);
+            return new HashPasswordSet(passwords);
+        }
+        return SortedHashPasswordSet.load(list);
+    }
+
+    static void forEachLine(File list, Consumer<String> action) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(list), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                action.accept(line);
+            }
+        }
+    }
+
+    private static PasswordSet loadQuietly(File list) {
+        LOGGER.info("start loading passwords of " + list.getName());
+        try {
+            PasswordSet set = load(list);
+            LOGGER.info("Loaded: " + set.size() + " passwords of " + list.getName());
+            return set;
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.error(e.getMessage());
+            return EMPTY;
+        }
+    }
+}
@@ -5,6 +5,25 @@ import java.io.IOException;
 
 public interface SafePasswordConstraint {
 
+    /** Cost of a check that only looks at the characters of the password */
+    int CHEAP = 1;
+    /** Cost of a single lookup in a set held in memory or mapped from disk */
+    int LOOKUP = 10;
+    /** Cost of a check that applies many rules or lookups */
+    int EXPENSIVE = 100;
+
+    /**
+     * @param password password to check
+     * @return whether the password passes the constraint
+     * @throws UndeterminedConstraintException if the password could not be checked
+     */
     public abstract boolean passedConstraint(String password);
     public abstract String getReason();
+
+    /**
+     * @return relative cost of a check, cheaper constraints are checked first
+     */
+    default int getCost() {
+        return LOOKUP;
+    }
 }
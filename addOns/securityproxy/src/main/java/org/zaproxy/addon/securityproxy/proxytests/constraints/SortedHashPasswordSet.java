@@ -0,0 +1,153 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.HashedDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Password list kept as the sorted 64 bit hashes of its passwords, 8 bytes per password. The
+ * hashes are written once next to the list and mapped read-only afterwards, so a list of
+ * millions of passwords costs no heap and no parsing on later loads. A password that isn't
+ * listed but has the hash of a listed one is rejected too, about one in 2^64 / size.
+ */
+public class SortedHashPasswordSet implements PasswordSet {
+    public static final int MAGIC = 0x70775348;
+    public static final String EXTENSION = ".hashes";
+
+    private static final int HEADER_SIZE = 24;
+    private static final int MAX_SIZE = (Integer.MAX_VALUE - HEADER_SIZE) / Long.BYTES;
+    private static final Logger LOGGER = LogManager.getLogger(SortedHashPasswordSet.class);
+
+    private final LongBuffer hashes;
+
+    private SortedHashPasswordSet(LongBuffer hashes) {
+        this.hashes = hashes;
+    }
+
+    /**
+     * Map the hashes of the list, hashing it first when the hash file next to it is missing or
+     * was made from another version of the list. When the hash file can't be written the
+     * hashes are kept on the heap.
+     * @param list password list, one password per line
+     * @return the passwords of the list
+     * @throws IOException if the list can't be read
+     */
+    public static SortedHashPasswordSet load(File list) throws IOException {
+        File file = new File(list.getPath() + EXTENSION);
+        if (!isHashFileOf(file, list)) {
+            long[] sorted = hash(list);
+            try {
+                write(sorted, list, file);
+            } catch (IOException e) {
+                LOGGER.warn("Password hashes kept in memory, " + file + " not written: " + e.getMessage());
+                return new SortedHashPasswordSet(LongBuffer.wrap(sorted));
+            }
+        }
+        return map(file);
+    }
+
+    @Override
+    public boolean contains(String password) {
+        long hash = HashedDictionary.hash(password);
+        int low = 0;
+        int high = hashes.limit() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = hashes.get(middle);
+            if (value < hash) {
+                low = middle + 1;
+            } else if (value > hash) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return hashes.limit();
+    }
+
+    private static long[] hash(File list) throws IOException {
+        long[][] hashes = {new long[1024]};
+        int[] count = {0};
+        PasswordSets.forEachLine(list, password -> {
+            if (count[0] == hashes[0].length) {
+                if (count[0] == MAX_SIZE) {
+                    throw new IllegalStateException("More than " + MAX_SIZE + " passwords in " + list);
+                }
+                hashes[0] = Arrays.copyOf(hashes[0], (int) Math.min(2L * count[0], MAX_SIZE));
+            }
+            hashes[0][count[0]++] = HashedDictionary.hash(password);
+        });
+
+        long[] sorted = hashes[0];
+        Arrays.sort(sorted, 0, count[0]);
+        int distinct = 0;
+        for (int i = 0; i < count[0]; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static void write(long[] sorted, File list, File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(sorted.length);
+            out.writeLong(list.length());
+            out.writeLong(list.lastModified());
+            for (long hash : sorted) {
+                out.writeLong(hash);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean isHashFileOf(File file, File list) throws IOException {
+        if (!file.isFile() || file.length() < HEADER_SIZE) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return false;
+                }
+            }
+            return header.getInt(0) == MAGIC
+                    && channel.size() == HEADER_SIZE + (long) header.getInt(4) * Long.BYTES
+                    && header.getLong(8) == list.length()
+                    && header.getLong(16) == list.lastModified();
+        }
+    }
+
+    private static SortedHashPasswordSet map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position(HEADER_SIZE);
+            return new SortedHashPasswordSet(buffer.slice().asLongBuffer());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+/**
+ * A constraint that checks the swap, extra, missing and replaced character typos in a single
+ * pass over both strings. Strings whose lengths differ by more than one are rejected without
+ * looking at their characters. The four typo kinds are mutually exclusive, so the classifier
+ * also tells which one was made.
+ */
+public class TypoClassifier implements TypoSquattingConstraint {
+
+    /**
+     * The kind of typo found between two strings.
+     */
+    public enum TypoType {
+        /** Two adjacent characters are swapped, see {@link AdjSwappedCharacterConstraint} */
+        ADJ_SWAPPED,
+        /** One character is added to the typo, see {@link ExtraCharacterConstraint} */
+        EXTRA_CHARACTER,
+        /** One character is removed from the typo, see {@link MissingCharacterConstraint} */
+        MISSING_CHARACTER,
+        /** One character is replaced in the typo, see {@link ReplacedCharacterConstraint} */
+        REPLACED_CHARACTER
+    }
+
+    /**
+     * @param original The string to be checked against.
+     * @param typo     The potential typo.
+     * @return true if the typo string is one swap, extra, missing or replaced character away from the original string.
+     */
+    @Override
+    public boolean passedConstraint(String original, String typo) {
+        return classify(original, typo) != null;
+    }
+
+    /**
+     * @param original The string to be checked against.
+     * @param typo     The potential typo.
+     * @return the kind of typo made, or null if the typo string is not a single typo of the original string.
+     */
+    public TypoType classify(String original, String typo) {
+        int n = original.length();
+        int m = typo.length();
+        if (n == m) {
+            return classifySameLength(original, typo, n);
+        }
+        if (m == n + 1) {
+            return isOneInsertion(original, typo, n) ? TypoType.EXTRA_CHARACTER : null;
+        }
+        if (n == m + 1) {
+            return isOneInsertion(typo, original, m) ? TypoType.MISSING_CHARACTER : null;
+        }
+        return null;
+    }
+
+    private static TypoType classifySameLength(String original, String typo, int n) {
+        int i = firstMismatch(original, typo, 0, n);
+        if (i == n) {
+            return null;
+        }
+        if (i + 1 == n || original.charAt(i + 1) == typo.charAt(i + 1)) {
+            return firstMismatch(original, typo, i + 1, n) == n ? TypoType.REPLACED_CHARACTER : null;
+        }
+        if (original.charAt(i) == typo.charAt(i + 1) && original.charAt(i + 1) == typo.charAt(i)) {
+            return firstMismatch(original, typo, i + 2, n) == n ? TypoType.ADJ_SWAPPED : null;
+        }
+        return null;
+    }
+
+    /**
+     * @param shorter string of length n
+     * @param longer string of length n + 1
+     * @param n length of the shorter string
+     * @return whether the longer string is the shorter one with one character inserted
+     */
+    private static boolean isOneInsertion(String shorter, String longer, int n) {
+        int i = firstMismatch(shorter, longer, 0, n);
+        for (; i < n; i++) {
+            if (shorter.charAt(i) != longer.charAt(i + 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int firstMismatch(String a, String b, int from, int to) {
+        int i = from;
+        while (i < to && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
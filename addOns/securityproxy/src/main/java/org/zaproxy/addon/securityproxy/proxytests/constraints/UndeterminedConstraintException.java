@@ -0,0 +1,15 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+/**
+ * Thrown by a {@link SafePasswordConstraint} that could not tell whether a password passes it,
+ * e.g. because a dictionary lookup timed out or the dictionary was closed. The password neither
+ * passed nor failed the constraint.
+ */
+public class UndeterminedConstraintException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UndeterminedConstraintException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+   BloomFilter.java
+
+   Bloom filter of the words of a dictionary, written next to the
+   dictionary files as name.pwb. Most candidates CrackLib looks up
+   aren't dictionary words, the filter answers those without touching
+   the dictionary.
+
+   File layout, little endian:
+
+     magic, number of words, number of hash functions, number of longs
+     length and CRC-32 of the name.pwd the filter was made of
+     the bits, as longs
+
+   A filter is only used for the name.pwd it was made of, a dictionary
+   rebuilt with other words gets a new filter.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+public class BloomFilter {
+
+  public static final int MAGIC = 0x70774232;
+  public static final String EXTENSION = ".pwb";
+  public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01;
+
+  private static final int HEADERSIZ = 4 * Packer.INTSIZ + 2 * 8;
+
+  private final long[] bits;
+  private final long numBits;
+  private final int numHashes;
+  private int numWords;
+  // identity of the data file the filter was made of, 0 if unknown
+  private long dataLength;
+  private long dataChecksum;
+
+  /**
+   * @param expectedWords The number of words that will be put.
+   * @param falsePositiveRate The rate of words not put that
+   * mightContain still accepts, between 0 and 1.
+   */
+  public BloomFilter(int expectedWords, double falsePositiveRate)
+  {
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+      {
+        throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+      }
+
+    double ln2 = Math.log(2);
+    long m = (long) Math.ceil(-Math.max(1, expectedWords) * Math.log(falsePositiveRate) / (ln2 * ln2));
+    bits = new long[(int) Math.min((m + 63) >>> 6, Integer.MAX_VALUE - 8)];
+    numBits = (long) bits.length << 6;
+    numHashes = Math.max(1, (int) Math.round((double) numBits / Math.max(1, expectedWords) * ln2));
+  }
+
+  private BloomFilter(long[] bits, int numHashes, int numWords, long dataLength, long dataChecksum)
+  {
+    this.bits = bits;
+    this.numBits = (long) bits.length << 6;
+    this.numHashes = numHashes;
+    this.numWords = numWords;
+    this.dataLength = dataLength;
+    this.dataChecksum = dataChecksum;
+  }
+
+  public void put(String s)
+  {
+    long h = HashedDictionary.hash(s);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+
+    for (int i=1; i<=numHashes; i++)
+      {
+        long bit = index(h1 + (long) i * h2);
+        bits[(int) (bit >>> 6)] |= 1L << bit;
+      }
+
+    numWords++;
+  }
+
+  /**
+   * @return false if s was never put, true if it was or for a
+   * fraction of the other words.
+   */
+  public boolean mightContain(String s)
+  {
+    long h = HashedDictionary.hash(s);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32);
+
+    for (int i=1; i<=numHashes; i++)
+      {
+        long bit = index(h1 + (long) i * h2);
+
+        if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0)
+          {
+            return false;
+          }
+      }
+
+    return true;
+  }
+
+  private long index(long combined)
+  {
+    return (combined < 0 ? ~combined : combined) % numBits;
+  }
+
+  /**
+   * @return The number of words put, to check that the filter belongs
+   * to a dictionary.
+   */
+  public int size()
+  {
+    return numWords;
+  }
+
+  public int getNumHashes()
+  {
+    return numHashes;
+  }
+
+  public long getNumBits()
+  {
+    return numBits;
+  }
+
+  // ---
+
+  /**
+   * Writes the filter of the words of the cracklib dictionary name in
+   * the given directory, as name.pwb next to it.
+   *
+   * @param directory The directory of the dictionary files.
+   * @param name The filename prefix of the dictionary.
+   * @param falsePositiveRate The false positive rate of the filter.
+   */
+  public static final BloomFilter make(File directory, String name, double falsePositiveRate) throws IOException
+  {
+    MappedPacker dictionary = new MappedPacker(directory, name);
+
+    try
+      {
+        BloomFilter filter = new BloomFilter(dictionary.size(), falsePositiveRate);
+
+        for (int i=0; i<dictionary.size(); i++)
+          {
+            filter.put(dictionary.get(i));
+          }
+
+        File data = new File(directory, name + ".pwd");
+        filter.dataLength = data.length();
+        filter.dataChecksum = checksum(data);
+
+        filter.write(new File(directory, name + EXTENSION));
+        return filter;
+      }
+    finally
+      {
+        dictionary.close();
+      }
+  }
+
+  public void write(File file) throws IOException
+  {
+    try (DataOutputStream out = new DataOutputStream(
+             new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+      {
+        out.writeInt(Integer.reverseBytes(MAGIC));
+        out.writeInt(Integer.reverseBytes(numWords));
+        out.writeInt(Integer.reverseBytes(numHashes));
+        out.writeInt(Integer.reverseBytes(bits.length));
+        out.writeLong(Long.reverseBytes(dataLength));
+        out.writeLong(Long.reverseBytes(dataChecksum));
+
+        for (long l : bits)
+          {
+            out.writeLong(Long.reverseBytes(l));
+          }
+      }
+  }
+
+  /**
+   * @param name The filename prefix of the dictionary.
+   * @return Whether the dictionary directory holds name.pwb.
+   */
+  public static boolean exists(String name)
+  {
+    return new File(Packer.resolveLocation(), name + EXTENSION).isFile();
+  }
+
+  public static BloomFilter read(String name) throws IOException
+  {
+    return read(Packer.resolveLocation(), name);
+  }
+
+  /**
+   * Reads name.pwb of the given directory, checking it was made of the
+   * name.pwd next to it.
+   *
+   * @param directory The directory of the dictionary files.
+   * @param name The filename prefix of the dictionary.
+   * @throws IOException if the filter can't be read or was made of
+   * another dictionary.
+   */
+  public static BloomFilter read(File directory, String name) throws IOException
+  {
+    BloomFilter filter = read(new File(directory, name + EXTENSION));
+
+    if (!filter.isFilterOf(new File(directory, name + ".pwd")))
+      {
+        throw new IOException("Filter of another dictionary");
+      }
+
+    return filter;
+  }
+
+  /**
+   * @param data A data file written by Packer.
+   * @return Whether the filter was made of the file as it is now.
+   */
+  public boolean isFilterOf(File data) throws IOException
+  {
+    return dataLength != 0 && data.length() == dataLength
+      && checksum(data) == dataChecksum;
+  }
+
+  private static long checksum(File file) throws IOException
+  {
+    CRC32 crc = new CRC32();
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+      {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+        while (channel.read(buf) >= 0)
+          {
+            buf.flip();
+            crc.update(buf);
+            buf.clear();
+          }
+      }
+
+    return crc.getValue();
+  }
+
+  public static BloomFilter read(File file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+      {
+        ByteBuffer header = ByteBuffer.allocate(HEADERSIZ).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header);
+
+        if (header.getInt(0) != MAGIC)
+          {
+            throw new IOException("Magic Number mismatch");
+          }
+
+        int numWords = header.getInt(4);
+        int numHashes = header.getInt(8);
+        int numLongs = header.getInt(12);
+        long dataLength = header.getLong(16);
+        long dataChecksum = header.getLong(24);
+
+        if (numHashes < 1 || numLongs < 1
+            || channel.size() < HEADERSIZ + (long) numLongs * 8)
+          {
+            throw new IOException("Filter file truncated");
+          }
+
+        long[] bits = new long[numLongs];
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        int i = 0;
+
+        while (i < numLongs)
+          {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), (numLongs - i) * 8L));
+            readFully(channel, buf);
+            buf.flip();
+
+            while (buf.hasRemaining())
+              {
+                bits[i++] = buf.getLong();
+              }
+          }
+
+        return new BloomFilter(bits, numHashes, numWords, dataLength, dataChecksum);
+      }
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf) throws IOException
+  {
+    while (buf.hasRemaining())
+      {
+        if (channel.read(buf) < 0)
+          {
+            throw new IOException("Filter file truncated");
+          }
+      }
+  }
+
+  // ---
+
+  public static final void usage()
+  {
+    System.err.println("BloomFilter -make <dir> <dict> [<false positive rate>]");
+  }
+
+  public static final void main(String[] args) throws Exception
+  {
+    if ((args.length == 3 || args.length == 4) && args[0].equals("-make"))
+      {
+        double rate = args.length == 4 ? Double.parseDouble(args[3]) : DEFAULT_FALSE_POSITIVE_RATE;
+        BloomFilter filter = make(new File(args[1]), args[2], rate);
+        System.out.println(filter.size() + " words, " + filter.getNumBits() + " bits, "
+                           + filter.getNumHashes() + " hash functions");
+      }
+    else
+      {
+        usage();
+        System.exit(1);
+      }
+
+    System.exit(0);
+  }
+}
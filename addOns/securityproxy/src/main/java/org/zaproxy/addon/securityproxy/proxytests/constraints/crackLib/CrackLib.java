@@ -21,6 +21,9 @@ package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
 import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.Rules;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 
 public class CrackLib {
@@ -404,16 +407,21 @@ public class CrackLib {
     "fr",
     "rf"};
 
+  /* the tables above, compiled once without repeated rules */
+  static final RuleTree destructorTree = new RuleTree(RuleProgram.compileAll(destructors));
+  private static final RuleTree constructorTree = new RuleTree(RuleProgram.compileAll(constructors));
+
   public static final boolean gTry(String rawtext, String password)
   {
     /* use destructors to turn password into rawtext */
     /* note use of Reverse() to save duplicating all rules */
 
     String mp;
+    RuleTree.Results results = destructorTree.apply(password);
 
-    for (int i=0; i<destructors.length; i++)
+    for (int i=0; i<results.size(); i++)
       {
-	if ((mp = Rules.mangle(password, destructors[i])) == null)
+	if ((mp = results.get(i)) == null)
 	  {
 	    continue;
 	  }
@@ -429,9 +437,11 @@ public class CrackLib {
 	  }
       }
 
-    for (int i=0;i<constructors.length; i++)
+    results = constructorTree.apply(rawtext);
+
+    for (int i=0;i<results.size(); i++)
       {
-	if ((mp = Rules.mangle(rawtext, constructors[i])) == null)
+	if ((mp = results.get(i)) == null)
 	  {
 	    continue;
 	  }
@@ -449,30 +459,132 @@ public class CrackLib {
    * Returns a message string if the password is considered to be
    * unacceptable, or null if the submitted password is okay.
    *
-   * @param p A reference to a org.solinger.cracklib.Packer object associated
-   * with a dictionary list
+   * @param p A Packer or MappedPacker associated with a dictionary
+   * list, or null when no dictionary is available.
    * @param password The prospective password to be examined.  Must not be null.
    * @param username The username that we're approving the password for.  May be null.
    */
 
-  public static final boolean fascistLook(Packer p, String password, String username) throws IOException
+  public static final boolean fascistLook(WordDictionary p, String password, String username) throws IOException
+  {
+    if ((password = fascistRules(password)) == null)
+      {
+	return false;
+      }
+
+    if ((p == null || p.size() == 0) && username == null)
+      {
+	// No dictionary found, abort
+
+	return true;
+      }
+
+    RuleTree.Results results = destructorTree.apply(password);
+
+    for (int i=0; i<results.size(); i++)
+      {
+	String mp;
+
+	if ((mp = results.get(i)) == null)
+	  {
+	    continue;
+	  }
+
+	if (mp.equals(username))
+	  {
+	    // "It is based on your username."
+	    return false;
+	  }
+
+	if (p != null && p.find(mp) != -1)
+	  {
+	    // "It is based on the dictionary word {0}."
+	    return false;
+	  }
+      }
+
+    password = Rules.reverse(password);
+    results = destructorTree.apply(password);
+
+    for (int i=0; i<results.size(); i++)
+      {
+	String mp;
+
+	if ((mp = results.get(i)) == null)
+	  {
+	    continue;
+	  }
+
+	if (mp.equals(username))
+	  {
+	    // "It is based on your username."
+	    return false;
+	  }
+
+	if (p != null && p.find(mp) != -1)
+	  {
+	    // "It is based on the reversed dictionary word {0}."
+	    return false;
+	  }
+      }
+
+    return true;
+  }
+
+  /**
+   * Like fascistLook, but the dictionary is looked up by tasks of the
+   * given pool: the candidates of the password and of the reversed
+   * password are made in parallel, and their lookups are split between
+   * the workers. The first candidate found stops the other lookups.
+   *
+   * @param pool The pool to run the lookups in.
+   * @param timeout How long to wait for the lookups.
+   * @param unit The unit of timeout.
+   * @throws InterruptedIOException If the lookups didn't finish in time.
+   */
+
+  public static final boolean fascistLook(WordDictionary p, String password, String username,
+					  ForkJoinPool pool, long timeout, TimeUnit unit) throws IOException
+  {
+    if ((password = fascistRules(password)) == null)
+      {
+	return false;
+      }
+
+    if ((p == null || p.size() == 0) && username == null)
+      {
+	// No dictionary found, abort
+
+	return true;
+      }
+
+    return !ParallelLook.found(pool, p, password, username, timeout, unit);
+  }
+
+  /**
+   * The checks of fascistLook that don't use the dictionary.
+   *
+   * @return The password to look up, or null if it fails a check.
+   */
+
+  private static String fascistRules(String password)
   {
     if (password.length() < 4)
       {
 	// "It''s WAY too short."
-	return false;
+	return null;
       }
 
     if (password.length() < MINLEN)
       {
 	// "It''s too short."
-	return false;
+	return null;
       }
 
     if ((password = password.trim()).length() == 0)
       {
 	// "It is all whitespace."
-	return false;
+	return null;
       }
 
     StringBuilder junk = new StringBuilder(password.substring(0,1));
@@ -494,7 +606,7 @@ public class CrackLib {
     if (junk.length() < MINDIFF)
       {
 	// "It does not contain enough DIFFERENT characters."
-	return false;
+	return null;
       }
 
     // make sure we don't have an all-numeric password
@@ -509,7 +621,7 @@ public class CrackLib {
     if (Rules.pMatch(numPat.toString(), password))
       {
 	// "It is too simplistic / too predictable."
-	return false;
+	return null;
       }
 
     // test for step up / step down patternings
@@ -527,13 +639,13 @@ public class CrackLib {
     if (complexity > MAXSTEP)
       {
 	// "It is too simplistic / too predictable."
-	return false;
+	return null;
       }
 
     if (password.toUpperCase().equals(password) || password.toLowerCase().equals(password))
       {
 	// "It needs to be mixed case."
-	return false;
+	return null;
       }
 
     // check for character classes.. we require at least one
@@ -545,7 +657,7 @@ public class CrackLib {
 	  Rules.indexOf(password, 'w') > -1))
       {
 	// "It requires at least one punctuation, numeric, or whitespace character."
-	return false;
+	return null;
       }
 
     // we want at least one uppercase and one lower case letter
@@ -554,7 +666,7 @@ public class CrackLib {
 	Rules.indexOf(password, 'u') == -1)
       {
 	// "It is too simplistic / too predictable."
-	return false;
+	return null;
       }
 
     // check for worrisome numbers and such
@@ -563,13 +675,13 @@ public class CrackLib {
       {
 	// smirk
 	// "It looks like a National Insurance number."
-	return false;
+	return null;
       }
 
     if (Rules.pMatch("ddd#dd#dddd", password))
       {
 	// "It looks like a Social Security number."
-	return false;
+	return null;
       }
 
     if (Rules.pMatch("ddd#dddd", password) ||
@@ -577,67 +689,10 @@ public class CrackLib {
 	Rules.pMatch("#ddd#ddd#dddd", password))
       {
 	// "It looks like a phone number." (american, that is)
-	return false;
+	return null;
       }
 
-    // check for dictionary/username matches
-
-    password = password.toLowerCase();
-
-    if (p.size() == 0 && username == null)
-      {
-	// No dictionary found, abort
-
-	return true;
-      }
-
-    for (int i=0; i<destructors.length; i++)
-      {
-	String mp;
-
-	if ((mp = Rules.mangle(password, destructors[i])) == null)
-	  {
-	    continue;
-	  }
-
-	if (mp.equals(username))
-	  {
-	    // "It is based on your username."
-	    return false;
-	  }
-
-	if (p.find(mp) != -1)
-	  {
-	    // "It is based on the dictionary word {0}."
-	    return false;
-	  }
-      }
-
-    password = Rules.reverse(password);
-
-    for (int i=0; i<destructors.length; i++)
-      {
-	String mp;
-
-	if ((mp = Rules.mangle(password, destructors[i])) == null)
-	  {
-	    continue;
-	  }
-
-	if (mp.equals(username))
-	  {
-	    // "It is based on your username."
-	    return false;
-	  }
-
-	if (p.find(mp) != -1)
-	  {
-	    // "It is based on the reversed dictionary word {0}."
-	    return false;
-	  }
-      }
-
-    return true;
+    return password.toLowerCase();
   }
 
   public static final void usage()
@@ -0,0 +1,98 @@
+/*
+   FilteredDictionary.java
+
+   Dictionary with a Bloom filter in front of it, a word the filter
+   rejects isn't looked up. Counts how often the filter answered and
+   how often it let a word through that the dictionary then didn't
+   have.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+public class FilteredDictionary implements WordDictionary {
+
+  private final WordDictionary dictionary;
+  private final BloomFilter filter;
+
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder falsePositives = new LongAdder();
+
+  /**
+   * @param dictionary The dictionary to look the accepted words up in.
+   * @param filter A filter of all words of the dictionary.
+   */
+  public FilteredDictionary(WordDictionary dictionary, BloomFilter filter)
+  {
+    if (filter.size() != dictionary.size())
+      {
+        throw new IllegalArgumentException("Filter of " + filter.size()
+                                           + " words for a dictionary of " + dictionary.size());
+      }
+
+    this.dictionary = dictionary;
+    this.filter = filter;
+  }
+
+  @Override
+  public int size()
+  {
+    return dictionary.size();
+  }
+
+  @Override
+  public int find(String s) throws IOException
+  {
+    lookups.increment();
+
+    if (!filter.mightContain(s))
+      {
+        rejected.increment();
+        return -1;
+      }
+
+    int i = dictionary.find(s);
+
+    if (i == -1)
+      {
+        falsePositives.increment();
+      }
+
+    return i;
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    dictionary.close();
+  }
+
+  /**
+   * @return The number of lookups.
+   */
+  public long getLookups()
+  {
+    return lookups.sum();
+  }
+
+  /**
+   * @return The number of lookups the filter answered alone.
+   */
+  public long getRejected()
+  {
+    return rejected.sum();
+  }
+
+  /**
+   * @return The number of lookups the filter let through for a word
+   * the dictionary doesn't have.
+   */
+  public long getFalsePositives()
+  {
+    return falsePositives.sum();
+  }
+}
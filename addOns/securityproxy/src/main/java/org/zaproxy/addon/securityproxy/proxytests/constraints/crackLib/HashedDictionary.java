@@ -0,0 +1,458 @@
+/*
+   HashedDictionary.java
+
+   Compact alternative to the Packer dictionary files. The words are
+   stored as a minimal perfect hash with a 32 bit fingerprint per
+   word, in a single name.pwh file. A lookup reads one displacement
+   and one fingerprint from the memory mapped file, whatever the size
+   of the dictionary.
+
+   The words themselves aren't stored, so a word that isn't in the
+   dictionary is found with a probability of 2^-32.
+
+   File layout, little endian ints:
+
+     magic, number of words, number of buckets, 0
+     one displacement per bucket
+     one fingerprint per word
+
+   The words of a bucket are placed with the first seed that maps them
+   to free slots, a negative displacement is the complement of the
+   slot of a bucket with a single word.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class HashedDictionary implements WordDictionary {
+
+  public static final int MAGIC = 0x70774831;
+  public static final String EXTENSION = ".pwh";
+
+  private static final int HEADERSIZ = 4 * Packer.INTSIZ;
+  private static final int WORDS_PER_BUCKET = 4;
+  private static final int MAX_SEED = Integer.MAX_VALUE;
+
+  // the file is mapped in chunks, an int never crosses a chunk
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+  private static final long BUCKET_SEED = 0x5851f42d4c957f2dL;
+  private static final long FINGERPRINT_SEED = 0x14057b7ef767814fL;
+  private static final long SLOT_SEED = 0x9e3779b97f4a7c15L;
+
+  private final ByteBuffer[] chunks;
+  private final int numWords;
+  private final int numBuckets;
+  private final long fingerprints; // offset of the fingerprints
+
+  private volatile boolean closed;
+
+  public HashedDictionary(String name) throws IOException
+  {
+    this(Packer.resolveLocation(), name);
+  }
+
+  /**
+   * Maps the dictionary file name.pwh of the given directory.
+   *
+   * @param directory The directory of the dictionary file.
+   * @param name The filename prefix of the dictionary.
+   */
+  public HashedDictionary(File directory, String name) throws IOException
+  {
+    File file = new File(directory, name + EXTENSION);
+
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+      {
+        long length = channel.size();
+
+        if (length < HEADERSIZ)
+          {
+            throw new IOException("Dictionary file truncated");
+          }
+
+        chunks = new ByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_BITS)];
+
+        for (int i=0; i<chunks.length; i++)
+          {
+            long start = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                                    Math.min(CHUNK_MASK + 1, length - start))
+              .order(ByteOrder.LITTLE_ENDIAN);
+          }
+
+        if (getInt(0) != MAGIC)
+          {
+            throw new IOException("Magic Number mismatch");
+          }
+
+        numWords = getInt(4);
+        numBuckets = getInt(8);
+        fingerprints = HEADERSIZ + (long) numBuckets * Packer.INTSIZ;
+
+        if (numWords < 0 || numBuckets < 0
+            || length < fingerprints + (long) numWords * Packer.INTSIZ)
+          {
+            throw new IOException("Dictionary file truncated");
+          }
+      }
+  }
+
+  /**
+   * @param name The filename prefix of the dictionary.
+   * @return Whether the dictionary directory holds name.pwh.
+   */
+  public static boolean exists(String name)
+  {
+    return new File(Packer.resolveLocation(), name + EXTENSION).isFile();
+  }
+
+  @Override
+  public int size()
+  {
+    return numWords;
+  }
+
+  /**
+   * @return The slot of the word, or -1 if it isn't in the dictionary.
+   */
+  @Override
+  public int find(String s) throws IOException
+  {
+    if (closed)
+      {
+        throw new IOException("Dictionary closed");
+      }
+
+    if (numWords == 0)
+      {
+        return -1;
+      }
+
+    long h = hash(s);
+    int bucket = bucket(h, numBuckets);
+    int displacement = getInt(HEADERSIZ + (long) bucket * Packer.INTSIZ);
+    int slot = displacement < 0 ? ~displacement : slot(h, displacement, numWords);
+
+    if (getInt(fingerprints + (long) slot * Packer.INTSIZ) != fingerprint(h))
+      {
+        return -1;
+      }
+
+    return slot;
+  }
+
+  @Override
+  public void close()
+  {
+    // the mappings are released by the garbage collector
+    closed = true;
+  }
+
+  private int getInt(long offset)
+  {
+    return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+  }
+
+  // ---
+
+  /**
+   * Reads a word list from in, one word per line in any order, and
+   * writes the dictionary file name.pwh of the given directory. Words
+   * are truncated like Packer.put does.
+   *
+   * @param in The word list to read in.
+   * @param directory The directory of the dictionary file.
+   * @param name The filename prefix of the dictionary.
+   */
+  public static final void make(InputStream in, File directory, String name) throws IOException
+  {
+    BufferedReader br = new BufferedReader(new InputStreamReader(in));
+    long[] hashes = new long[1024];
+    int count = 0;
+    String s;
+
+    while ((s = br.readLine()) != null)
+      {
+        if (s.isEmpty())
+          {
+            continue;
+          }
+
+        if (count == hashes.length)
+          {
+            if (count == Integer.MAX_VALUE - 8)
+              {
+                throw new IOException("Too many words");
+              }
+
+            hashes = Arrays.copyOf(hashes, (int) Math.min(2L * count, Integer.MAX_VALUE - 8));
+          }
+
+        hashes[count++] = hash(s.length() > Packer.MAXWORDLEN-1
+                               ? s.substring(0, Packer.MAXWORDLEN-1) : s);
+      }
+
+    write(hashes, count, new File(directory, name + EXTENSION));
+  }
+
+  private static void write(long[] hashes, int count, File file) throws IOException
+  {
+    // a word list may repeat words
+    Arrays.sort(hashes, 0, count);
+    int n = 0;
+
+    for (int i=0; i<count; i++)
+      {
+        if (n == 0 || hashes[i] != hashes[n-1])
+          {
+            hashes[n++] = hashes[i];
+          }
+      }
+
+    int numBuckets = Math.max(1, (n + WORDS_PER_BUCKET - 1) / WORDS_PER_BUCKET);
+
+    // group the hashes by bucket
+    int[] start = new int[numBuckets + 1];
+
+    for (int i=0; i<n; i++)
+      {
+        start[bucket(hashes[i], numBuckets) + 1]++;
+      }
+
+    int maxSize = 0;
+
+    for (int i=0; i<numBuckets; i++)
+      {
+        maxSize = Math.max(maxSize, start[i + 1]);
+        start[i + 1] += start[i];
+      }
+
+    long[] grouped = new long[n];
+    int[] next = Arrays.copyOf(start, numBuckets);
+
+    for (int i=0; i<n; i++)
+      {
+        grouped[next[bucket(hashes[i], numBuckets)]++] = hashes[i];
+      }
+
+    // place the biggest buckets first, the single words last
+    int[] bySize = new int[maxSize + 2];
+
+    for (int i=0; i<numBuckets; i++)
+      {
+        bySize[maxSize - (start[i + 1] - start[i]) + 1]++;
+      }
+
+    for (int i=1; i<bySize.length; i++)
+      {
+        bySize[i] += bySize[i - 1];
+      }
+
+    int[] order = new int[numBuckets];
+
+    for (int i=0; i<numBuckets; i++)
+      {
+        order[bySize[maxSize - (start[i + 1] - start[i])]++] = i;
+      }
+
+    int[] displacements = new int[numBuckets];
+    int[] fingerprints = new int[n];
+    long[] taken = new long[(n + 63) >>> 6];
+    int[] slots = new int[maxSize];
+    int free = 0;
+
+    for (int bucket : order)
+      {
+        int from = start[bucket];
+        int size = start[bucket + 1] - from;
+
+        if (size == 0)
+          {
+            break;
+          }
+
+        if (size == 1)
+          {
+            while ((taken[free >>> 6] & (1L << free)) != 0)
+              {
+                free++;
+              }
+
+            slots[0] = free;
+            displacements[bucket] = ~free;
+          }
+        else
+          {
+            displacements[bucket] = place(grouped, from, size, n, taken, slots);
+          }
+
+        for (int i=0; i<size; i++)
+          {
+            taken[slots[i] >>> 6] |= 1L << slots[i];
+            fingerprints[slots[i]] = fingerprint(grouped[from + i]);
+          }
+      }
+
+    try (DataOutputStream out = new DataOutputStream(
+             new BufferedOutputStream(new FileOutputStream(file), 1 << 16)))
+      {
+        out.writeInt(Integer.reverseBytes(MAGIC));
+        out.writeInt(Integer.reverseBytes(n));
+        out.writeInt(Integer.reverseBytes(numBuckets));
+        out.writeInt(0);
+
+        for (int d : displacements)
+          {
+            out.writeInt(Integer.reverseBytes(d));
+          }
+
+        for (int f : fingerprints)
+          {
+            out.writeInt(Integer.reverseBytes(f));
+          }
+      }
+  }
+
+  /**
+   * Finds the first seed that maps the words of a bucket to distinct
+   * free slots, and leaves those slots in slots.
+   */
+  private static int place(long[] grouped, int from, int size, int n,
+                           long[] taken, int[] slots) throws IOException
+  {
+    seeds:
+    for (int seed = 0; seed < MAX_SEED; seed++)
+      {
+        for (int i=0; i<size; i++)
+          {
+            int slot = slot(grouped[from + i], seed, n);
+
+            if ((taken[slot >>> 6] & (1L << slot)) != 0)
+              {
+                continue seeds;
+              }
+
+            for (int j=0; j<i; j++)
+              {
+                if (slots[j] == slot)
+                  {
+                    continue seeds;
+                  }
+              }
+
+            slots[i] = slot;
+          }
+
+        return seed;
+      }
+
+    throw new IOException("No seed found for a bucket of " + size + " words");
+  }
+
+  // ---
+
+  /**
+   * 64 bit hash of the chars of a word, FNV-1a finished with the
+   * murmur3 mixer.
+   */
+  public static long hash(String s)
+  {
+    long h = 0xcbf29ce484222325L;
+
+    for (int i=0; i<s.length(); i++)
+      {
+        h = (h ^ s.charAt(i)) * 0x100000001b3L;
+      }
+
+    return mix(h ^ s.length());
+  }
+
+  private static int bucket(long h, int numBuckets)
+  {
+    return (int) Long.remainderUnsigned(mix(h ^ BUCKET_SEED), numBuckets);
+  }
+
+  private static int slot(long h, int seed, int n)
+  {
+    return (int) Long.remainderUnsigned(mix(h + seed * SLOT_SEED), n);
+  }
+
+  private static int fingerprint(long h)
+  {
+    return (int) (mix(h ^ FINGERPRINT_SEED) >>> 32);
+  }
+
+  private static long mix(long h)
+  {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  // ---
+
+  public static final void usage()
+  {
+    System.err.println("HashedDictionary -make <dir> <dict> <wordlist> | -find <dir> <dict> <word>");
+  }
+
+  public static final void main(String[] args) throws Exception
+  {
+    if (args.length == 4 && args[0].equals("-make"))
+      {
+        try (InputStream in = new FileInputStream(args[3]))
+          {
+            make(in, new File(args[1]), args[2]);
+          }
+      }
+    else if (args.length == 4 && args[0].equals("-find"))
+      {
+        HashedDictionary d = new HashedDictionary(new File(args[1]), args[2]);
+
+        try
+          {
+            int i = d.find(args[3]);
+
+            if (i != -1)
+              {
+                System.out.println("Found " + args[3] + " at " + i);
+              }
+            else
+              {
+                System.out.println(args[3] + " not found.");
+              }
+          }
+        finally
+          {
+            d.close();
+          }
+      }
+    else
+      {
+        usage();
+        System.exit(1);
+      }
+
+    System.exit(0);
+  }
+}
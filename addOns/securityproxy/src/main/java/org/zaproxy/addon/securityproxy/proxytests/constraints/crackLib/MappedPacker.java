@@ -0,0 +1,422 @@
+/*
+   MappedPacker.java
+
+   Read-only reader of the dictionary files written by Packer. The
+   files are memory mapped and only read with absolute gets, so any
+   number of threads can look words up without a lock.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+public class MappedPacker implements WordDictionary {
+
+  private static final int NUMWORDS = Packer.NUMWORDS;
+
+  // one word of a block, reused by the lookups of a thread
+  private static final ThreadLocal<byte[]> WORD =
+    ThreadLocal.withInitial(() -> new byte[Packer.MAXBLOCKLEN]);
+
+  // the word looked up, encoded by the lookups of a thread
+  private static final ThreadLocal<byte[]> KEY =
+    ThreadLocal.withInitial(() -> new byte[Packer.MAXBLOCKLEN]);
+
+  private final ByteBuffer data; // data file
+  private final ByteBuffer index; // index file
+  private final int[] hwms; // null without a usable hash file
+  private final int numWords;
+  private final int numBlocks;
+
+  private volatile boolean closed;
+
+  public MappedPacker(String name) throws IOException
+  {
+    this(Packer.resolveLocation(), name);
+  }
+
+  /**
+   * Maps the dictionary files name.pwd, name.pwi and name.hwm of the
+   * given directory.
+   *
+   * @param directory The directory of the dictionary files.
+   * @param name The filename prefix of the dictionary.
+   */
+  public MappedPacker(File directory, String name) throws IOException
+  {
+    data = map(new File(directory, name+".pwd"));
+    index = map(new File(directory, name+".pwi"));
+
+    if (index.limit() < PackerHeader.sizeOf())
+      {
+        throw new IOException("Index file truncated");
+      }
+
+    byte[] b = new byte[PackerHeader.sizeOf()];
+    for (int i=0; i<b.length; i++)
+      {
+        b[i] = index.get(i);
+      }
+    PackerHeader header = PackerHeader.parse(b);
+
+    if (header.getMagic() != Packer.MAGIC)
+      {
+        throw new IOException("Magic Number mismatch");
+      }
+    else if (header.getBlockLen() != NUMWORDS)
+      {
+        throw new IOException("Size mismatch");
+      }
+
+    numWords = header.getNumWords();
+    numBlocks = (numWords + NUMWORDS - 1) / NUMWORDS;
+
+    if (index.limit() < PackerHeader.sizeOf() + (long) numBlocks * Packer.INTSIZ)
+      {
+        throw new IOException("Index file truncated");
+      }
+
+    // the hash file only narrows the search, without it all blocks
+    // are searched.
+    File hwm = new File(directory, name+".hwm");
+    int[] h = null;
+
+    if (hwm.length() >= 256L * Packer.INTSIZ)
+      {
+        ByteBuffer hash = map(hwm);
+        h = new int[256];
+
+        for (int i=0; i<h.length; i++)
+          {
+            h[i] = hash.getInt(i * Packer.INTSIZ);
+          }
+      }
+
+    hwms = h;
+  }
+
+  private static ByteBuffer map(File file) throws IOException
+  {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+      {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+          .order(ByteOrder.LITTLE_ENDIAN);
+      }
+  }
+
+  @Override
+  public int size()
+  {
+    return numWords;
+  }
+
+  /**
+   * Like Packer.find, words are compared as the bytes Packer wrote,
+   * which gives the order of put for ASCII dictionaries. The word is
+   * encoded in UTF-8, whatever the platform charset.
+   */
+  @Override
+  public int find(String s) throws IOException
+  {
+    checkOpen();
+
+    if (s.isEmpty() || numWords == 0)
+      {
+        return -1;
+      }
+
+    byte[] key = KEY.get();
+    int keyLen = encode(s, key);
+
+    if (keyLen == -1)
+      {
+        // longer than any word Packer can store
+        return -1;
+      }
+
+    int lo = 0;
+    int hi = numBlocks - 1;
+
+    if (hwms != null)
+      {
+        int c = s.charAt(0) & 0xff;
+        lo = (c != 0 ? hwms[c - 1] : 0) / NUMWORDS;
+        hi = Math.min(hwms[c] / NUMWORDS, numBlocks - 1);
+      }
+
+    // find the last block starting with a word before the key, the
+    // first word of a block is stored in full.
+    int block = -1;
+
+    while (lo <= hi)
+      {
+        int middle = (lo + hi) >>> 1;
+        int cmp = compareFirstWord(key, keyLen, blockStart(middle));
+
+        if (cmp == 0)
+          {
+            return middle * NUMWORDS;
+          }
+
+        if (cmp < 0)
+          {
+            hi = middle - 1;
+          }
+        else
+          {
+            block = middle;
+            lo = middle + 1;
+          }
+      }
+
+    if (block == -1)
+      {
+        return -1;
+      }
+
+    return findInBlock(key, keyLen, block);
+  }
+
+  public String get(int num) throws IOException
+  {
+    checkOpen();
+
+    if (num < 0 || num >= numWords)
+      {
+        return null;
+      }
+
+    int block = num / NUMWORDS;
+    int end = blockEnd(block);
+    byte[] word = WORD.get();
+    int pos = blockStart(block);
+    int len = readSuffix(pos, end, word, 0);
+    pos += len + 1;
+
+    for (int i = 1; i <= num % NUMWORDS; i++)
+      {
+        if (pos + 1 >= end || data.get(pos + 1) == 0)
+          {
+            return null;
+          }
+
+        int prefix = prefix(pos, len);
+        int n = readSuffix(pos + 1, end, word, prefix);
+        pos += n + 2;
+        len = prefix + n;
+      }
+
+    return new String(word, 0, len, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close()
+  {
+    // the mappings are released by the garbage collector
+    closed = true;
+  }
+
+  /**
+   * The words after the first one of a block are stored as the length
+   * of the prefix shared with the word before, followed by the rest of
+   * the word.
+   */
+  private int findInBlock(byte[] key, int keyLen, int block) throws IOException
+  {
+    int end = blockEnd(block);
+    byte[] word = WORD.get();
+    int pos = blockStart(block);
+    int len = readSuffix(pos, end, word, 0);
+    pos += len + 1;
+
+    for (int i = 1; i < NUMWORDS; i++)
+      {
+        // a 0 instead of the rest of a word ends a short block
+        if (pos + 1 >= end || data.get(pos + 1) == 0)
+          {
+            return -1;
+          }
+
+        int prefix = prefix(pos, len);
+        int n = readSuffix(pos + 1, end, word, prefix);
+        pos += n + 2;
+        len = prefix + n;
+
+        int cmp = compare(key, keyLen, word, len);
+
+        if (cmp == 0)
+          {
+            return block * NUMWORDS + i;
+          }
+
+        if (cmp < 0)
+          {
+            return -1;
+          }
+      }
+
+    return -1;
+  }
+
+  private int prefix(int pos, int len) throws IOException
+  {
+    int prefix = data.get(pos) & 0xff;
+
+    if (prefix > len)
+      {
+        throw new IOException("Corrupt data file at " + pos);
+      }
+
+    return prefix;
+  }
+
+  /**
+   * Copies the null terminated bytes at pos to word after off.
+   *
+   * @return The number of bytes copied.
+   */
+  private int readSuffix(int pos, int end, byte[] word, int off) throws IOException
+  {
+    int n = 0;
+    byte b;
+
+    while (pos + n < end && (b = data.get(pos + n)) != 0)
+      {
+        if (off + n == word.length)
+          {
+            throw new IOException("Corrupt data file at " + pos);
+          }
+
+        word[off + n] = b;
+        n++;
+      }
+
+    return n;
+  }
+
+  private int compareFirstWord(byte[] key, int keyLen, int pos)
+  {
+    int end = data.limit();
+
+    for (int i = 0; ; i++)
+      {
+        int b = pos + i < end ? data.get(pos + i) & 0xff : 0;
+
+        if (i == keyLen)
+          {
+            return b == 0 ? 0 : -1;
+          }
+
+        if (b == 0)
+          {
+            return 1;
+          }
+
+        int cmp = (key[i] & 0xff) - b;
+
+        if (cmp != 0)
+          {
+            return cmp;
+          }
+      }
+  }
+
+  private static int compare(byte[] key, int keyLen, byte[] word, int len)
+  {
+    int n = Math.min(keyLen, len);
+
+    for (int i = 0; i < n; i++)
+      {
+        int cmp = (key[i] & 0xff) - (word[i] & 0xff);
+
+        if (cmp != 0)
+          {
+            return cmp;
+          }
+      }
+
+    return keyLen - len;
+  }
+
+  /**
+   * Encodes s in UTF-8 into buf without allocating, unpaired surrogates
+   * become '?' as with String.getBytes.
+   *
+   * @return The number of bytes, -1 if s does not fit in buf.
+   */
+  static int encode(String s, byte[] buf)
+  {
+    int n = 0;
+
+    for (int i = 0; i < s.length(); i++)
+      {
+        int c = s.charAt(i);
+
+        if (Character.isHighSurrogate((char) c) && i + 1 < s.length()
+            && Character.isLowSurrogate(s.charAt(i + 1)))
+          {
+            c = Character.toCodePoint((char) c, s.charAt(++i));
+          }
+        else if (Character.isSurrogate((char) c))
+          {
+            c = '?';
+          }
+
+        int len = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+
+        if (n + len > buf.length)
+          {
+            return -1;
+          }
+
+        switch (len)
+          {
+          case 1:
+            buf[n++] = (byte) c;
+            break;
+          case 2:
+            buf[n++] = (byte) (0xc0 | (c >> 6));
+            buf[n++] = (byte) (0x80 | (c & 0x3f));
+            break;
+          case 3:
+            buf[n++] = (byte) (0xe0 | (c >> 12));
+            buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buf[n++] = (byte) (0x80 | (c & 0x3f));
+            break;
+          default:
+            buf[n++] = (byte) (0xf0 | (c >> 18));
+            buf[n++] = (byte) (0x80 | ((c >> 12) & 0x3f));
+            buf[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buf[n++] = (byte) (0x80 | (c & 0x3f));
+            break;
+          }
+      }
+
+    return n;
+  }
+
+  private int blockStart(int block)
+  {
+    return index.getInt(PackerHeader.sizeOf() + block * Packer.INTSIZ);
+  }
+
+  private int blockEnd(int block)
+  {
+    return block + 1 < numBlocks ? blockStart(block + 1) : data.limit();
+  }
+
+  private void checkOpen() throws IOException
+  {
+    if (closed)
+      {
+        throw new IOException("Dictionary closed");
+      }
+  }
+}
@@ -18,6 +18,10 @@
 
    https://sourceforge.net/tracker/?func=detail&aid=1220213&group_id=357&atid=100357
 
+   find() has since been changed to search the whole bucket of the
+   first character, the patched version never compared the last word
+   of a bucket.
+
 */
 
 package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
@@ -33,7 +37,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 
-public class Packer implements java.io.Closeable {
+public class Packer implements WordDictionary {
 
   public static final int MAGIC = 0x70775631;
   public static final int STRINGSIZE = 1024;
@@ -63,6 +67,19 @@ public class Packer implements java.io.Closeable {
 
 
   public Packer(String name, String mode) throws IOException
+  {
+    this(resolveLocation(), name, mode);
+  }
+
+  /**
+   * Opens the dictionary files name.pwd, name.pwi and name.hwm of
+   * the given directory.
+   *
+   * @param directory The directory of the dictionary files.
+   * @param name The filename prefix of the dictionary.
+   * @param mode "r" to look words up, "rw" to create the dictionary.
+   */
+  public Packer(File directory, String name, String mode) throws IOException
   {
     this.mode = mode;
 
@@ -71,27 +88,24 @@ public class Packer implements java.io.Closeable {
         throw new IllegalArgumentException("Mode must be \"rw\" or \"r\"");
       }
 
-    File f = new File(LOCATION1);
-    if (f.exists()) {
-      LOCATION = LOCATION1;
-    } else {
-      LOCATION = Constant.getZapHome() + "example/";
-    }
+    File pwd = new File(directory, name+".pwd");
+    File pwi = new File(directory, name+".pwi");
+    File hwm = new File(directory, name+".hwm");
 
     if (mode.equals("rw"))
       {
         // we have to blow it away on write.
-        new File(LOCATION+name+".pwd").delete();
-        new File(LOCATION+name+".pwi").delete();
-        new File(LOCATION+name+".hwm").delete();
+        pwd.delete();
+        pwi.delete();
+        hwm.delete();
       }
 
-    dataFile = new RandomAccessFile(LOCATION+name+".pwd",mode); // data file
-    indexFile = new RandomAccessFile(LOCATION+name+".pwi",mode); // index file
+    dataFile = new RandomAccessFile(pwd,mode); // data file
+    indexFile = new RandomAccessFile(pwi,mode); // index file
 
     try
       {
-        hashFile = new RandomAccessFile(LOCATION+name+".hwm",mode); // hash file
+        hashFile = new RandomAccessFile(hwm,mode); // hash file
       }
     catch (IOException e)
       {
@@ -121,6 +135,14 @@ public class Packer implements java.io.Closeable {
             throw new IOException("Size mismatch");
           }
 
+        // an empty or truncated hash file can't be used, the hwms are
+        // then rebuilt from the words.
+        if (hashFile != null && hashFile.length() < (long) hwms.length * INTSIZ)
+          {
+            hashFile.close();
+            hashFile = null;
+          }
+
         // populate the hwms..
         if (hashFile != null)
           {
@@ -132,15 +154,55 @@ public class Packer implements java.io.Closeable {
                 hwms[i] = Util.getIntLE(b);
               }
           }
+        else
+          {
+            rebuildHwms();
+          }
+      }
+  }
+
+  /**
+   * Computes the hwms the same way put and close do, by reading every
+   * word of the dictionary once.
+   */
+  private void rebuildHwms() throws IOException
+  {
+    for (int i=0; i<header.getNumWords(); i++)
+      {
+        hwms[get(i).charAt(0) & 0xff] = i;
+      }
+
+    for (int i=1; i<=0xff; i++)
+      {
+        if (hwms[i] == 0)
+          {
+            hwms[i] = hwms[i-1];
+          }
       }
   }
 
+  static File resolveLocation()
+  {
+    File f = new File(LOCATION1);
+    if (f.exists()) {
+      LOCATION = LOCATION1;
+    } else {
+      LOCATION = Constant.getZapHome() + "example/";
+    }
+    return new File(LOCATION);
+  }
+
   @Override
   public synchronized void close() throws IOException
   {
     if (mode.equals("rw"))
       {
-        flush();
+        // the last block is already written when the word count is a
+        // multiple of NUMWORDS
+        if (count > 0)
+          {
+            flush();
+          }
 
         indexFile.seek(0);
         indexFile.write(header.getBytes());
@@ -331,6 +393,7 @@ public class Packer implements java.io.Closeable {
     return (data[num % NUMWORDS]);
   }
 
+  @Override
   public synchronized int find(String s) throws IOException
   {
     if (!mode.equals("r"))
@@ -338,18 +401,20 @@ public class Packer implements java.io.Closeable {
         throw new IOException("Can only find in mode \"r\"");
       }
 
-    int index = (int) s.charAt(0);
+    if (s.isEmpty() || header.getNumWords() == 0)
+      {
+        return -1;
+      }
+
+    // same bucket as put, the words starting with this character are
+    // after hwms[index - 1] up to and including hwms[index].
+    int index = s.charAt(0) & 0xff;
     int lwm = index != 0 ? hwms[index - 1] : 0;
     int hwm = hwms[index];
 
-    for (;;)
+    while (lwm <= hwm)
       {
-        int middle = lwm + ((hwm - lwm + 1) / 2);
-
-        if (middle == hwm)
-          {
-            break;
-          }
+        int middle = (lwm + hwm) >>> 1;
 
         int cmp = s.compareTo(get(middle));
 
@@ -358,23 +423,19 @@ public class Packer implements java.io.Closeable {
             return middle;
           }
 
-        if (hwm == middle)
-          {
-            break;
-          }
-
         if (cmp < 0)
           {
-            hwm = middle;
+            hwm = middle - 1;
           }
         else
           {
-            lwm = middle;
+            lwm = middle + 1;
           }
       }
     return -1;
   }
 
+  @Override
   public int size()
   {
     return header.getNumWords();
@@ -447,6 +508,7 @@ public class Packer implements java.io.Closeable {
         try
           {
             make(new FileInputStream(args[2]), args[1], true);
+            BloomFilter.make(resolveLocation(), args[1], BloomFilter.DEFAULT_FALSE_POSITIVE_RATE);
           }
         catch (IOException ex)
           {
@@ -0,0 +1,230 @@
+/*
+   ParallelLook.java
+
+   The dictionary part of CrackLib.fascistLook as fork/join tasks. The
+   candidates of the password and of the reversed password are made
+   by two tasks, then their lookups are split between the workers of
+   the pool. A found candidate stops the lookups that haven't started,
+   and the caller stops waiting at the deadline.
+
+   The verdict is the one of the sequential look. Candidates are looked
+   up in the order of the destructors, forward before reversed, up to
+   the first rule that throws. When none of them is found, the
+   exception of that rule is thrown.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+final class ParallelLook extends RecursiveTask<Boolean> {
+
+  private static final long serialVersionUID = 1L;
+
+  // candidates looked up by one task
+  private static final int LOOKUPS_PER_TASK = 8;
+
+  private final WordDictionary dictionary;
+  private final String password;
+  private final String username;
+
+  // set once the verdict is known, or nobody waits for it anymore
+  private volatile boolean stopped;
+
+  private ParallelLook(WordDictionary dictionary, String password, String username)
+  {
+    this.dictionary = dictionary;
+    this.password = password;
+    this.username = username;
+  }
+
+  /**
+   * @param password The lowercase password.
+   * @return Whether a candidate of the password is the username or a
+   * dictionary word.
+   */
+  static boolean found(ForkJoinPool pool, WordDictionary dictionary, String password, String username,
+                       long timeout, TimeUnit unit) throws IOException
+  {
+    ParallelLook look = new ParallelLook(dictionary, password, username);
+    ForkJoinTask<Boolean> task = pool.submit(look);
+
+    try
+      {
+        return task.get(timeout, unit);
+      }
+    catch (TimeoutException e)
+      {
+        look.stopped = true;
+        task.cancel(true);
+        throw new InterruptedIOException("Dictionary lookups not done after " + timeout + " "
+                                         + unit.toString().toLowerCase());
+      }
+    catch (InterruptedException e)
+      {
+        look.stopped = true;
+        task.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted during the dictionary lookups");
+      }
+    catch (ExecutionException e)
+      {
+        Throwable cause = e.getCause();
+
+        if (cause instanceof UncheckedIOException)
+          {
+            throw ((UncheckedIOException) cause).getCause();
+          }
+        if (cause instanceof RuntimeException)
+          {
+            throw (RuntimeException) cause;
+          }
+        if (cause instanceof Error)
+          {
+            throw (Error) cause;
+          }
+
+        throw new IOException(cause);
+      }
+  }
+
+  @Override
+  protected Boolean compute()
+  {
+    Candidates reversed = new Candidates(Rules.reverse(password));
+    reversed.fork();
+    Candidates forward = new Candidates(password);
+    forward.invoke();
+    reversed.join();
+
+    Set<String> words = new LinkedHashSet<>(forward.words);
+    RuntimeException failure = forward.failure;
+
+    if (failure == null)
+      {
+        words.addAll(reversed.words);
+        failure = reversed.failure;
+      }
+
+    String[] candidates = words.toArray(new String[0]);
+    Lookups lookups = new Lookups(candidates, 0, candidates.length);
+    lookups.invoke();
+
+    if (lookups.found)
+      {
+        return true;
+      }
+    if (failure != null)
+      {
+        throw failure;
+      }
+
+    return false;
+  }
+
+  /**
+   * The destructor results of a word, up to the first that throws.
+   */
+  private static final class Candidates extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    final String word;
+    final Set<String> words = new LinkedHashSet<>();
+    RuntimeException failure;
+
+    Candidates(String word)
+    {
+      this.word = word;
+    }
+
+    @Override
+    protected void compute()
+    {
+      RuleTree.Results results = CrackLib.destructorTree.apply(word);
+
+      for (int i=0; i<results.size(); i++)
+        {
+          String mp;
+
+          try
+            {
+              mp = results.get(i);
+            }
+          catch (RuntimeException e)
+            {
+              failure = e;
+              return;
+            }
+
+          if (mp != null)
+            {
+              words.add(mp);
+            }
+        }
+    }
+  }
+
+  private final class Lookups extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    final String[] candidates;
+    final int from;
+    final int to;
+    boolean found;
+
+    Lookups(String[] candidates, int from, int to)
+    {
+      this.candidates = candidates;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from > LOOKUPS_PER_TASK)
+        {
+          int middle = (from + to) >>> 1;
+          Lookups left = new Lookups(candidates, from, middle);
+          Lookups right = new Lookups(candidates, middle, to);
+          invokeAll(left, right);
+          found = left.found || right.found;
+          return;
+        }
+
+      for (int i=from; i<to && !stopped; i++)
+        {
+          String mp = candidates[i];
+
+          try
+            {
+              if (mp.equals(username) || (dictionary != null && dictionary.find(mp) != -1))
+                {
+                  found = true;
+                  stopped = true;
+                  return;
+                }
+            }
+          catch (IOException e)
+            {
+              stopped = true;
+              throw new UncheckedIOException(e);
+            }
+        }
+    }
+  }
+}
@@ -0,0 +1,944 @@
+/*
+   RuleProgram.java
+
+   A mangling rule of Rules.mangle, parsed once into op codes that
+   work on a reused char buffer. apply(s) returns what
+   Rules.mangle(s, control) returns, quirks included: '(' and ')' fall
+   through to the unknown command error, ']' drops two characters and
+   '=n?c' takes the class from the word. A rule that is malformed
+   throws an IllegalArgumentException when the op that can't be parsed
+   is reached, like mangle does.
+
+   Words are only copied into a String for the result, except for case
+   changes and reversals of words that String handles differently from
+   a char by char loop (non ASCII case changes, surrogate pairs).
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public final class RuleProgram {
+
+  // op codes, each op is followed by two arguments
+  static final int FAIL = 0;
+  private static final int REVERSE = 1;
+  private static final int UPPERCASE = 2;
+  private static final int LOWERCASE = 3;
+  private static final int CAPITALISE = 4;
+  private static final int PLURALISE = 5;
+  private static final int DUPLICATE = 6;
+  private static final int REJECT_MAX_LENGTH = 7; // '>', reject when length <= n
+  private static final int REJECT_MIN_LENGTH = 8; // '<', reject when length >= n
+  private static final int PREPEND = 9;
+  private static final int APPEND = 10;
+  private static final int EXTRACT = 11;
+  private static final int OVERSTRIKE = 12;
+  private static final int INSERT = 13;
+  private static final int PURGE = 14;
+  private static final int PURGE_CLASS = 15;
+  private static final int SUBSTITUTE = 16;
+  private static final int SUBSTITUTE_CLASS = 17;
+  private static final int MATCH = 18;
+  private static final int MATCH_CLASS = 19;
+  private static final int NOT = 20;
+  private static final int NOT_CLASS = 21;
+  private static final int EQUALS = 22;
+  private static final int EQUALS_WORD_CLASS = 23;
+  private static final int DELETE_FIRST = 24;
+  private static final int DELETE_LAST = 25;
+  private static final int MATCH_FIRST = 26;
+  private static final int MATCH_FIRST_CLASS = 27;
+  private static final int MATCH_LAST = 28;
+  private static final int MATCH_LAST_CLASS = 29;
+
+  private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+  // class membership of the ASCII characters, per class character
+  private static final boolean[][] CLASSES = new boolean[128][];
+
+  static
+  {
+    for (char clazz = 0; clazz < 128; clazz++)
+      {
+        try
+          {
+            boolean[] members = new boolean[128];
+
+            for (char c = 0; c < 128; c++)
+              {
+                members[c] = Rules.matchClass(clazz, c);
+              }
+
+            CLASSES[clazz] = members;
+          }
+        catch (IllegalArgumentException e)
+          {
+            // unknown class, Rules.matchClass throws when it's used
+          }
+      }
+  }
+
+  private final String control;
+  private final int[] code;
+  private final String failure;
+
+  private RuleProgram(String control, int[] code, String failure)
+  {
+    this.control = control;
+    this.code = code;
+    this.failure = failure;
+  }
+
+  public String getControl()
+  {
+    return control;
+  }
+
+  /**
+   * Compiles each distinct rule of a table once, in the order of the
+   * table. Looking up a repeated rule again can't give another result.
+   */
+  public static RuleProgram[] compileAll(String[] controls)
+  {
+    Map<String, RuleProgram> programs = new LinkedHashMap<>();
+
+    for (String control : controls)
+      {
+        if (!programs.containsKey(control))
+          {
+            programs.put(control, compile(control));
+          }
+      }
+
+    return programs.values().toArray(new RuleProgram[0]);
+  }
+
+  public static RuleProgram compile(String control)
+  {
+    Compiler c = new Compiler(control);
+    c.compile();
+    int[] code = new int[c.code.size()];
+
+    for (int i=0; i<code.length; i++)
+      {
+        code[i] = c.code.get(i);
+      }
+
+    return new RuleProgram(control, code, c.failure);
+  }
+
+  /**
+   * @return Rules.mangle(s, getControl())
+   */
+  public String apply(String s)
+  {
+    Buffer b = BUFFER.get();
+    b.set(s);
+
+    for (int pc = 0; pc < code.length; pc += 3)
+      {
+        if (!execute(b, code[pc], code[pc + 1], code[pc + 2], failure))
+          {
+            return null;
+          }
+      }
+
+    return b.result();
+  }
+
+  int[] getCode()
+  {
+    return code;
+  }
+
+  String getFailure()
+  {
+    return failure;
+  }
+
+  /**
+   * Runs one op of a program on the word in b.
+   *
+   * @param failure The message of a FAIL op.
+   * @return false if the op rejects the word.
+   */
+  static boolean execute(Buffer b, int op, int x, int y, String failure)
+  {
+    switch (op)
+      {
+      case FAIL:
+        throw new IllegalArgumentException(failure);
+
+      case REVERSE:
+        b.reverse();
+        break;
+
+      case UPPERCASE:
+        if (b.isAsciiCaseSafe())
+          {
+            for (int i=0; i<b.length; i++)
+              {
+                b.chars[i] = upper(b.chars[i]);
+              }
+          }
+        else
+          {
+            b.set(b.toString().toUpperCase());
+          }
+        break;
+
+      case LOWERCASE:
+        if (b.isAsciiCaseSafe())
+          {
+            for (int i=0; i<b.length; i++)
+              {
+                b.chars[i] = lower(b.chars[i]);
+              }
+          }
+        else
+          {
+            b.set(b.toString().toLowerCase());
+          }
+        break;
+
+      case CAPITALISE:
+        if (b.length == 0)
+          {
+            throw new StringIndexOutOfBoundsException(1);
+          }
+        if (b.isAsciiCaseSafe())
+          {
+            b.chars[0] = upper(b.chars[0]);
+
+            for (int i=1; i<b.length; i++)
+              {
+                b.chars[i] = lower(b.chars[i]);
+              }
+          }
+        else
+          {
+            b.set(Rules.capitalise(b.toString()));
+          }
+        break;
+
+      case PLURALISE:
+        b.pluralise();
+        break;
+
+      case DUPLICATE:
+        b.ensure(2 * b.length);
+        System.arraycopy(b.chars, 0, b.chars, b.length, b.length);
+        b.length *= 2;
+        break;
+
+      case REJECT_MAX_LENGTH:
+        if (b.length <= x)
+          {
+            return false;
+          }
+        break;
+
+      case REJECT_MIN_LENGTH:
+        if (b.length >= x)
+          {
+            return false;
+          }
+        break;
+
+      case PREPEND:
+        b.insert(0, (char) x);
+        break;
+
+      case APPEND:
+        b.insert(b.length, (char) x);
+        break;
+
+      case EXTRACT:
+        if (x + y > b.length)
+          {
+            throw new StringIndexOutOfBoundsException(x + y);
+          }
+        System.arraycopy(b.chars, x, b.chars, 0, y);
+        b.length = y;
+        break;
+
+      case OVERSTRIKE:
+        b.check(x, b.length - 1);
+        b.chars[x] = (char) y;
+        break;
+
+      case INSERT:
+        b.check(x, b.length);
+        b.insert(x, (char) y);
+        break;
+
+      case PURGE:
+        {
+          int n = 0;
+
+          for (int i=0; i<b.length; i++)
+            {
+              if (b.chars[i] != x)
+                {
+                  b.chars[n++] = b.chars[i];
+                }
+            }
+
+          b.length = n;
+        }
+        break;
+
+      case PURGE_CLASS:
+        {
+          int n = 0;
+
+          for (int i=0; i<b.length; i++)
+            {
+              if (!member((char) x, b.chars[i]))
+                {
+                  b.chars[n++] = b.chars[i];
+                }
+            }
+
+          b.length = n;
+        }
+        break;
+
+      case SUBSTITUTE:
+        for (int i=0; i<b.length; i++)
+          {
+            if (b.chars[i] == x)
+              {
+                b.chars[i] = (char) y;
+              }
+          }
+        break;
+
+      case SUBSTITUTE_CLASS:
+        for (int i=0; i<b.length; i++)
+          {
+            if (member((char) x, b.chars[i]))
+              {
+                b.chars[i] = (char) y;
+              }
+          }
+        break;
+
+      case MATCH:
+        if (b.indexOf((char) x) == -1)
+          {
+            return false;
+          }
+        break;
+
+      case MATCH_CLASS:
+        if (b.indexOfClass((char) x) == -1)
+          {
+            return false;
+          }
+        break;
+
+      case NOT:
+        if (b.indexOf((char) x) != -1)
+          {
+            return false;
+          }
+        break;
+
+      case NOT_CLASS:
+        if (b.indexOfClass((char) x) != -1)
+          {
+            return false;
+          }
+        break;
+
+      case EQUALS:
+        b.check(x, b.length - 1);
+        if (b.chars[x] != y)
+          {
+            return false;
+          }
+        break;
+
+      case EQUALS_WORD_CLASS:
+        // the class is the character of the word at the position
+        // of the rule that follows the '=' op, as in mangle.
+        b.check(y, b.length - 1);
+        b.check(x, b.length - 1);
+        if (!member(b.chars[y], b.chars[x]))
+          {
+            return false;
+          }
+        break;
+
+      case DELETE_FIRST:
+        b.check(1, b.length);
+        System.arraycopy(b.chars, 1, b.chars, 0, b.length - 1);
+        b.length--;
+        break;
+
+      case DELETE_LAST:
+        b.check(b.length - 2, b.length);
+        b.length -= 2;
+        break;
+
+      case MATCH_FIRST:
+        b.check(0, b.length - 1);
+        if (b.chars[0] != x)
+          {
+            return false;
+          }
+        break;
+
+      case MATCH_FIRST_CLASS:
+        b.check(0, b.length - 1);
+        if (!member((char) x, b.chars[0]))
+          {
+            return false;
+          }
+        break;
+
+      case MATCH_LAST:
+        b.check(b.length - 1, b.length - 1);
+        if (b.chars[b.length - 1] != x)
+          {
+            return false;
+          }
+        break;
+
+      case MATCH_LAST_CLASS:
+        b.check(b.length - 1, b.length - 1);
+        if (!member((char) x, b.chars[b.length - 1]))
+          {
+            return false;
+          }
+        break;
+
+      default:
+        throw new IllegalStateException("Unknown op " + op);
+      }
+
+    return true;
+  }
+
+  private static boolean member(char clazz, char c)
+  {
+    boolean[] members = clazz < 128 ? CLASSES[clazz] : null;
+
+    if (members != null && c < 128)
+      {
+        return members[c];
+      }
+
+    return Rules.matchClass(clazz, c);
+  }
+
+  private static char upper(char c)
+  {
+    return c >= 'a' && c <= 'z' ? (char) (c - 32) : c;
+  }
+
+  private static char lower(char c)
+  {
+    return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+  }
+
+  /**
+   * The word being mangled.
+   */
+  static final class Buffer
+  {
+    char[] chars = new char[64];
+    int length;
+
+    void set(String s)
+    {
+      ensure(s.length());
+      s.getChars(0, s.length(), chars, 0);
+      length = s.length();
+    }
+
+    void ensure(int capacity)
+    {
+      if (capacity > chars.length)
+        {
+          chars = Arrays.copyOf(chars, Math.max(capacity, 2 * chars.length));
+        }
+    }
+
+    /**
+     * Throws like the String methods mangle calls when i isn't
+     * between 0 and max.
+     */
+    void check(int i, int max)
+    {
+      if (i < 0 || i > max)
+        {
+          throw new StringIndexOutOfBoundsException(i);
+        }
+    }
+
+    void insert(int pos, char c)
+    {
+      ensure(length + 1);
+      System.arraycopy(chars, pos, chars, pos + 1, length - pos);
+      chars[pos] = c;
+      length++;
+    }
+
+    int indexOf(char c)
+    {
+      for (int i=0; i<length; i++)
+        {
+          if (chars[i] == c)
+            {
+              return i;
+            }
+        }
+
+      return -1;
+    }
+
+    int indexOfClass(char clazz)
+    {
+      for (int i=0; i<length; i++)
+        {
+          if (member(clazz, chars[i]))
+            {
+              return i;
+            }
+        }
+
+      return -1;
+    }
+
+    boolean isAsciiCaseSafe()
+    {
+      // String case changes differ from ASCII in these locales
+      String language = Locale.getDefault().getLanguage();
+
+      if (language.equals("tr") || language.equals("az") || language.equals("lt"))
+        {
+          return false;
+        }
+
+      for (int i=0; i<length; i++)
+        {
+          if (chars[i] >= 128)
+            {
+              return false;
+            }
+        }
+
+      return true;
+    }
+
+    void reverse()
+    {
+      for (int i=0; i<length; i++)
+        {
+          if (Character.isSurrogate(chars[i]))
+            {
+              // StringBuilder.reverse keeps surrogate pairs in order
+              set(new StringBuilder(toString()).reverse().toString());
+              return;
+            }
+        }
+
+      for (int i=0, j=length-1; i<j; i++, j--)
+        {
+          char c = chars[i];
+          chars[i] = chars[j];
+          chars[j] = c;
+        }
+    }
+
+    /**
+     * Rules.pluralise, which only sees a suffix when its first
+     * occurrence ends the word, and keeps the last two characters
+     * before "ies".
+     */
+    void pluralise()
+    {
+      if (suffix("ch") || suffix("ex") || suffix("ix") || suffix("sh") || suffix("ss"))
+        {
+          append("es");
+        }
+      else if (length > 2 && chars[length-1] == 'y')
+        {
+          if ("aeiou".indexOf(chars[length-2]) != -1)
+            {
+              append("s");
+            }
+          else
+            {
+              System.arraycopy(chars, length-2, chars, 0, 2);
+              length = 2;
+              append("ies");
+            }
+        }
+      else
+        {
+          check(length - 1, length - 1);
+
+          if (chars[length-1] == 's')
+            {
+              append("es");
+            }
+          else
+            {
+              append("s");
+            }
+        }
+    }
+
+    private boolean suffix(String suffix)
+    {
+      if (length <= suffix.length())
+        {
+          return false;
+        }
+
+      // index of the first occurrence
+      outer:
+      for (int i=0; i<=length-suffix.length(); i++)
+        {
+          for (int j=0; j<suffix.length(); j++)
+            {
+              if (chars[i+j] != suffix.charAt(j))
+                {
+                  continue outer;
+                }
+            }
+
+          return i == length - suffix.length();
+        }
+
+      return false;
+    }
+
+    private void append(String s)
+    {
+      ensure(length + s.length());
+      s.getChars(0, s.length(), chars, length);
+      length += s.length();
+    }
+
+    /**
+     * @return The word, or null when it's empty, as mangle returns.
+     */
+    String result()
+    {
+      return length == 0 ? null : toString();
+    }
+
+    @Override
+    public String toString()
+    {
+      return new String(chars, 0, length);
+    }
+  }
+
+  /**
+   * Follows the parsing of Rules.mangle, an op mangle can't parse ends
+   * the program with a FAIL op.
+   */
+  private static final class Compiler
+  {
+    final String control;
+    final List<Integer> code = new ArrayList<>();
+    String failure;
+    int i;
+
+    Compiler(String control)
+    {
+      this.control = control;
+    }
+
+    void compile()
+    {
+      try
+        {
+          for (i = 0; i < control.length(); i++)
+            {
+              if (!op())
+                {
+                  return;
+                }
+            }
+        }
+      catch (StringIndexOutOfBoundsException e)
+        {
+          fail("mangle: missing argument in :");
+        }
+    }
+
+    private void emit(int op, int x, int y)
+    {
+      code.add(op);
+      code.add(x);
+      code.add(y);
+    }
+
+    private boolean fail(String message)
+    {
+      failure = message + control;
+      emit(FAIL, 0, 0);
+      return false;
+    }
+
+    private int last()
+    {
+      return control.length() - 1;
+    }
+
+    /**
+     * @return false once a FAIL op ends the program.
+     */
+    private boolean op()
+    {
+      switch (control.charAt(i))
+        {
+        case Rules.RULE_NOOP:
+          return true;
+
+        case Rules.RULE_REVERSE:
+        case Rules.RULE_REFLECT:
+          emit(REVERSE, 0, 0);
+          return true;
+
+        case Rules.RULE_UPPERCASE:
+          emit(UPPERCASE, 0, 0);
+          return true;
+
+        case Rules.RULE_LOWERCASE:
+          emit(LOWERCASE, 0, 0);
+          return true;
+
+        case Rules.RULE_CAPITALISE:
+          emit(CAPITALISE, 0, 0);
+          return true;
+
+        case Rules.RULE_PLURALISE:
+          emit(PLURALISE, 0, 0);
+          return true;
+
+        case Rules.RULE_DUPLICATE:
+          emit(DUPLICATE, 0, 0);
+          return true;
+
+        case Rules.RULE_GT:
+        case Rules.RULE_LT:
+          {
+            char rule = control.charAt(i);
+
+            if (i == last())
+              {
+                return fail("mangle: '" + rule + "' missing argument in :");
+              }
+
+            int limit = Rules.char2Int(control.charAt(++i));
+
+            if (limit < 0)
+              {
+                return fail("mangle: '" + rule + "' weird argument in :");
+              }
+
+            emit(rule == Rules.RULE_GT ? REJECT_MAX_LENGTH : REJECT_MIN_LENGTH, limit, 0);
+            return true;
+          }
+
+        case Rules.RULE_PREPEND:
+        case Rules.RULE_APPEND:
+          {
+            char rule = control.charAt(i);
+
+            if (i == last())
+              {
+                return fail("mangle: prepend missing argument in :");
+              }
+
+            emit(rule == Rules.RULE_PREPEND ? PREPEND : APPEND, control.charAt(++i), 0);
+            return true;
+          }
+
+        case Rules.RULE_EXTRACT:
+          {
+            if (i >= last() - 1)
+              {
+                return fail("mangle: extract missing argument in :");
+              }
+
+            int start = Rules.char2Int(control.charAt(++i));
+            int length = Rules.char2Int(control.charAt(++i));
+
+            if (start < 0 || length < 0)
+              {
+                return fail("mangle: extract: weird argument in :");
+              }
+
+            emit(EXTRACT, start, length);
+            return true;
+          }
+
+        case Rules.RULE_OVERSTRIKE:
+        case Rules.RULE_INSERT:
+          {
+            char rule = control.charAt(i);
+
+            if (i >= last() - 1)
+              {
+                return fail("mangle: " + (rule == Rules.RULE_INSERT ? "insert" : "overstrike")
+                            + " missing argument in :");
+              }
+
+            int pos = Rules.char2Int(control.charAt(++i));
+            emit(rule == Rules.RULE_INSERT ? INSERT : OVERSTRIKE, pos, control.charAt(++i));
+            return true;
+          }
+
+        case Rules.RULE_PURGE:
+          if (control.charAt(i+1) == Rules.RULE_CLASS && i == last() - 1)
+            {
+              return fail("mangle: delete missing argument in :");
+            }
+          else if (control.charAt(i+1) != Rules.RULE_CLASS)
+            {
+              emit(PURGE, control.charAt(++i), 0);
+            }
+          else
+            {
+              emit(PURGE_CLASS, control.charAt(i+2), 0);
+              i += 2;
+            }
+          return true;
+
+        case Rules.RULE_SUBSTITUTE:
+          if (i >= last() - 1 ||
+              (control.charAt(i+1) == Rules.RULE_CLASS && i == last() - 2))
+            {
+              return fail("mangle: subst missing argument in :");
+            }
+          else if (control.charAt(i+1) != Rules.RULE_CLASS)
+            {
+              emit(SUBSTITUTE, control.charAt(i+1), control.charAt(i+2));
+              i += 2;
+            }
+          else
+            {
+              emit(SUBSTITUTE_CLASS, control.charAt(i+2), control.charAt(i+3));
+              i += 3;
+            }
+          return true;
+
+        case Rules.RULE_MATCH:
+        case Rules.RULE_NOT:
+          {
+            char rule = control.charAt(i);
+
+            if (control.charAt(i+1) == Rules.RULE_CLASS && i == last() - 1)
+              {
+                return fail("mangle: " + rule + " missing argument in :");
+              }
+            else if (control.charAt(i+1) != Rules.RULE_CLASS)
+              {
+                emit(rule == Rules.RULE_MATCH ? MATCH : NOT, control.charAt(++i), 0);
+              }
+            else
+              {
+                emit(rule == Rules.RULE_MATCH ? MATCH_CLASS : NOT_CLASS, control.charAt(i+2), 0);
+                i += 2;
+              }
+            return true;
+          }
+
+        case Rules.RULE_EQUALS:
+          {
+            if (i >= last() - 1 ||
+                (control.charAt(i+1) == Rules.RULE_CLASS && i == last() - 2))
+              {
+                return fail("mangle: '=' missing argument in :");
+              }
+
+            int pos = Rules.char2Int(control.charAt(i+1));
+
+            if (pos < 0)
+              {
+                return fail("mangle: '='weird argument in :");
+              }
+
+            if (control.charAt(i+2) != Rules.RULE_CLASS)
+              {
+                i += 2;
+                emit(EQUALS, pos, control.charAt(i));
+              }
+            else
+              {
+                i += 3;
+                emit(EQUALS_WORD_CLASS, pos, i);
+              }
+            return true;
+          }
+
+        case Rules.RULE_DFIRST:
+          emit(DELETE_FIRST, 0, 0);
+          return true;
+
+        case Rules.RULE_DLAST:
+          emit(DELETE_LAST, 0, 0);
+          return true;
+
+        case Rules.RULE_MFIRST:
+          if (!matchEnd(MATCH_FIRST, MATCH_FIRST_CLASS, "'('"))
+            {
+              return false;
+            }
+          // mangle falls through to ')'
+          if (!matchEnd(MATCH_LAST, MATCH_LAST_CLASS, "')'"))
+            {
+              return false;
+            }
+          return fail("mangle: unknown command in :");
+
+        case Rules.RULE_MLAST:
+          if (!matchEnd(MATCH_LAST, MATCH_LAST_CLASS, "')'"))
+            {
+              return false;
+            }
+          // mangle falls through to the unknown command error
+          return fail("mangle: unknown command in :");
+
+        default:
+          return fail("mangle: unknown command in :");
+        }
+    }
+
+    private boolean matchEnd(int op, int classOp, String rule)
+    {
+      if (control.charAt(i+1) == Rules.RULE_CLASS && i == last() - 1)
+        {
+          return fail("mangle: " + rule + " missing argument in :");
+        }
+
+      if (control.charAt(i+1) != Rules.RULE_CLASS)
+        {
+          i++;
+          emit(op, control.charAt(i), 0);
+        }
+      else
+        {
+          i += 2;
+          emit(classOp, control.charAt(i), 0);
+        }
+
+      return true;
+    }
+  }
+}
@@ -0,0 +1,268 @@
+/*
+   RuleTree.java
+
+   The destructor table is an expansion of every combination of a few
+   substitutions, "/$s$s/0s0o/2s2a" shares its first ops with dozens
+   of other rules. RuleTree puts the ops of a table of rule programs
+   into a trie, so an op that starts many rules runs once per word.
+
+   The trie is walked depth first, keeping the word after each op of
+   the current path, so backing up to a sibling copies the word instead
+   of running the ops again. When an op rejects the word, none of the
+   rules below it are run. For the "/x sxy" pairs of the destructors
+   that is every branch where the substitution would leave the word
+   unchanged, so most of the table is cut at its first op.
+
+   apply returns the result of every rule, in table order. A rule that
+   throws throws again when its result is read, so going through the
+   results in order fails where going through the table with
+   Rules.mangle fails.
+
+*/
+
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class RuleTree {
+
+  private final Node root = new Node(-1, 0, 0, null);
+  private final int size;
+  private int depth;
+
+  public RuleTree(RuleProgram[] programs)
+  {
+    size = programs.length;
+
+    for (int i=0; i<programs.length; i++)
+      {
+        int[] code = programs[i].getCode();
+        Node node = root;
+
+        for (int pc = 0; pc < code.length; pc += 3)
+          {
+            String failure = code[pc] == RuleProgram.FAIL ? programs[i].getFailure() : null;
+            node = node.child(code[pc], code[pc + 1], code[pc + 2], failure);
+          }
+
+        node.addRule(i);
+        depth = Math.max(depth, code.length / 3);
+      }
+
+    root.freeze();
+  }
+
+  /**
+   * @return The number of rules.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Runs every rule on s.
+   *
+   * @return The results, programs[i].apply(s) at index i.
+   */
+  public Results apply(String s)
+  {
+    Walk walk = new Walk(s);
+    walk.visit(root, 0);
+    return walk.results;
+  }
+
+  /**
+   * The results of all rules on a word.
+   */
+  public static final class Results
+  {
+    private final String[] words;
+    private RuntimeException[] failures;
+
+    private Results(int size)
+    {
+      words = new String[size];
+    }
+
+    public int size()
+    {
+      return words.length;
+    }
+
+    /**
+     * @return The result of rule i, null when the rule rejects the
+     * word.
+     * @throws RuntimeException What rule i threw.
+     */
+    public String get(int i)
+    {
+      if (failures != null && failures[i] != null)
+        {
+          throw failures[i];
+        }
+
+      return words[i];
+    }
+
+    private void fail(int i, RuntimeException e)
+    {
+      if (failures == null)
+        {
+          failures = new RuntimeException[words.length];
+        }
+
+      failures[i] = e;
+    }
+  }
+
+  private final class Walk
+  {
+    final Results results = new Results(size);
+    final RuleProgram.Buffer buffer = new RuleProgram.Buffer();
+    // the word after the op of the node at each depth of the path
+    final char[][] words = new char[depth + 1][];
+    final int[] lengths = new int[depth + 1];
+
+    Walk(String s)
+    {
+      buffer.set(s);
+    }
+
+    /**
+     * Visits a node whose op left the word in the buffer.
+     */
+    void visit(Node node, int level)
+    {
+      if (node.rules != null)
+        {
+          String word = buffer.result();
+
+          for (int rule : node.rules)
+            {
+              results.words[rule] = word;
+            }
+        }
+
+      if (node.children.length == 0)
+        {
+          return;
+        }
+
+      save(level);
+
+      for (int i=0; i<node.children.length; i++)
+        {
+          Node child = node.children[i];
+
+          if (i > 0)
+            {
+              restore(level);
+            }
+
+          try
+            {
+              if (!RuleProgram.execute(buffer, child.op, child.x, child.y, child.failure))
+                {
+                  continue;
+                }
+            }
+          catch (RuntimeException e)
+            {
+              fail(child, e);
+              continue;
+            }
+
+          visit(child, level + 1);
+        }
+    }
+
+    private void save(int level)
+    {
+      if (words[level] == null || words[level].length < buffer.length)
+        {
+          words[level] = new char[Math.max(buffer.length, 32)];
+        }
+
+      System.arraycopy(buffer.chars, 0, words[level], 0, buffer.length);
+      lengths[level] = buffer.length;
+    }
+
+    private void restore(int level)
+    {
+      buffer.ensure(lengths[level]);
+      System.arraycopy(words[level], 0, buffer.chars, 0, lengths[level]);
+      buffer.length = lengths[level];
+    }
+
+    private void fail(Node node, RuntimeException e)
+    {
+      if (node.rules != null)
+        {
+          for (int rule : node.rules)
+            {
+              results.fail(rule, e);
+            }
+        }
+
+      for (Node child : node.children)
+        {
+          fail(child, e);
+        }
+    }
+  }
+
+  private static final class Node
+  {
+    final int op;
+    final int x;
+    final int y;
+    final String failure;
+    List<Node> building = new ArrayList<>();
+    Node[] children;
+    int[] rules;
+
+    Node(int op, int x, int y, String failure)
+    {
+      this.op = op;
+      this.x = x;
+      this.y = y;
+      this.failure = failure;
+    }
+
+    Node child(int op, int x, int y, String failure)
+    {
+      for (Node child : building)
+        {
+          if (child.op == op && child.x == x && child.y == y
+              && (child.failure == null ? failure == null : child.failure.equals(failure)))
+            {
+              return child;
+            }
+        }
+
+      Node child = new Node(op, x, y, failure);
+      building.add(child);
+      return child;
+    }
+
+    void addRule(int rule)
+    {
+      rules = rules == null ? new int[] {rule} : Arrays.copyOf(rules, rules.length + 1);
+      rules[rules.length - 1] = rule;
+    }
+
+    void freeze()
+    {
+      children = building.toArray(new Node[0]);
+      building = null;
+
+      for (Node child : children)
+        {
+          child.freeze();
+        }
+    }
+  }
+}
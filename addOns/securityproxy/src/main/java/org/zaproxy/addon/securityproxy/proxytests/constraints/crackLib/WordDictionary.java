@@ -0,0 +1,24 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A set of words CrackLib.fascistLook checks passwords against. Only
+ * membership is asked for, how the words are stored is up to the
+ * implementation.
+ */
+public interface WordDictionary extends Closeable {
+
+  /**
+   * @return The number of words in the dictionary.
+   */
+  int size();
+
+  /**
+   * @param s The word to look up.
+   * @return A non-negative position of the word, which only has a
+   * meaning to the implementation, or -1 if it isn't in the dictionary.
+   */
+  int find(String s) throws IOException;
+}
@@ -0,0 +1,76 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class LogRingBufferTests {
+
+    @Test
+    public void fullBufferRejectsElements() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(3);
+        Assertions.assertEquals(4, buffer.capacity());
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(buffer.offer(i));
+        }
+        Assertions.assertFalse(buffer.offer(4));
+
+        Assertions.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assertions.assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assertions.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assertions.assertNull(buffer.poll());
+    }
+
+    /**
+     * Several producers offer while one consumer polls, every accepted element must be
+     * polled exactly once and in order per producer.
+     */
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        LogRingBuffer<long[]> buffer = new LogRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 50000;
+        long[] accepted = new long[producers];
+        CountDownLatch done = new CountDownLatch(producers);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(new long[] {producer, i})) {
+                        accepted[producer]++;
+                    }
+                }
+                done.countDown();
+            });
+            thread.start();
+        }
+
+        long[] received = new long[producers];
+        long[] last = {-1, -1, -1, -1};
+        while (done.getCount() > 0 || drain(buffer, received, last)) {
+            drain(buffer, received, last);
+        }
+        drain(buffer, received, last);
+
+        for (int p = 0; p < producers; p++) {
+            Assertions.assertEquals(accepted[p], received[p]);
+        }
+    }
+
+    private static boolean drain(LogRingBuffer<long[]> buffer, long[] received, long[] last) {
+        boolean any = false;
+        long[] element;
+        while ((element = buffer.poll()) != null) {
+            int producer = (int) element[0];
+            Assertions.assertTrue(element[1] > last[producer]);
+            last[producer] = element[1];
+            received[producer]++;
+            any = true;
+        }
+        return any;
+    }
+}
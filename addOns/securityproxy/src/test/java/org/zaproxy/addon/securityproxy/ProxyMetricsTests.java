@@ -0,0 +1,53 @@
+package org.zaproxy.addon.securityproxy;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+public class ProxyMetricsTests {
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        ProxyMetrics metrics = new ProxyMetrics();
+        long start = metrics.start();
+        metrics.record(ProxyMetrics.Stage.TYPO_CHECK, start);
+        metrics.count(ProxyMetrics.Outcome.BLOCKED);
+
+        Assertions.assertEquals(0, metrics.getHistogram(ProxyMetrics.Stage.TYPO_CHECK).getCount());
+        Assertions.assertEquals(0, metrics.getCount(ProxyMetrics.Outcome.BLOCKED));
+    }
+
+    @Test
+    public void enabledMetricsAreInSnapshot() {
+        ProxyMetrics metrics = new ProxyMetrics();
+        metrics.setEnabled(true);
+        metrics.addGauge("typoCacheHits", () -> 7);
+        metrics.record(ProxyMetrics.Stage.PAGE_RENDERING, metrics.start());
+        metrics.count(ProxyMetrics.Outcome.REDIRECTED);
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        Assertions.assertEquals(1L, snapshot.get("pageRenderingCount"));
+        Assertions.assertEquals(1L, snapshot.get("redirectedRequests"));
+        Assertions.assertEquals(7L, snapshot.get("typoCacheHits"));
+
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getCount(ProxyMetrics.Outcome.REDIRECTED));
+    }
+
+    @Test
+    public void histogramPercentilesAreBucketUpperBounds() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        Assertions.assertEquals(100, histogram.getCount());
+        Assertions.assertEquals(1024, histogram.getPercentileNanos(50));
+        Assertions.assertEquals(1024, histogram.getPercentileNanos(99));
+        Assertions.assertEquals(1_000_000, histogram.getPercentileNanos(100));
+        Assertions.assertEquals(1_000_000, histogram.getMaxNanos());
+        Assertions.assertEquals((99 * 1000 + 1_000_000) / 100, histogram.getMeanNanos());
+    }
+}
@@ -0,0 +1,120 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class CredentialIndexTests {
+    private WebsiteRegistry registry;
+    private Website youtube;
+    private Website google;
+
+    @BeforeEach
+    public void initData() {
+        registry = new WebsiteRegistry();
+        youtube = new Website("youtube.com");
+        youtube.addCredential(new Credential("alice", "Secret#1"));
+        google = new Website("google.com");
+        registry.addAll(List.of(youtube, google));
+    }
+
+    @Test
+    public void reusedCredentialsFound() {
+        CredentialIndex index = registry.getCredentialIndex();
+        Assertions.assertSame(youtube, index.find("alice", "Secret#1"));
+        Assertions.assertNull(index.find("alice", "Secret#2"));
+        Assertions.assertNull(index.find("bob", "Secret#1"));
+        Assertions.assertEquals(1, index.size());
+        Assertions.assertEquals(0, index.getUnindexedCount());
+    }
+
+    @Test
+    public void sameCredentialsOnTwoWebsitesShareFingerprint() {
+        Credential credential = new Credential("alice", "Secret#1");
+        google.addCredential(credential);
+        registry.getCredentialIndex().add(google, credential);
+
+        Assertions.assertEquals(youtube.getCredentials().get(0).getFingerprint(), credential.getFingerprint());
+        Assertions.assertNotEquals(new Credential("bob", "Secret#1").getFingerprint(), credential.getFingerprint());
+        Assertions.assertEquals(1, registry.getCredentialIndex().size());
+    }
+
+    @Test
+    public void removedCredentialNotFound() {
+        CredentialIndex index = registry.getCredentialIndex();
+        Credential credential = youtube.getCredentials().get(0);
+        youtube.removeCredential("alice");
+        index.remove(youtube, credential);
+        Assertions.assertNull(index.find("alice", "Secret#1"));
+        Assertions.assertEquals(0, index.size());
+    }
+
+    @Test
+    public void credentialRemovedBehindIndexNotFound() {
+        youtube.removeCredential("alice");
+        Assertions.assertNull(registry.getCredentialIndex().find("alice", "Secret#1"));
+    }
+
+    @Test
+    public void credentialWithoutFingerprintKeptAside() {
+        Credential legacy = new Credential("bob", "Hunter#2");
+        legacy.setFingerprint(null);
+        Website facebook = new Website("facebook.com");
+        facebook.addCredential(legacy);
+        registry.add(facebook);
+
+        CredentialIndex index = registry.getCredentialIndex();
+        Assertions.assertEquals(1, index.getUnindexedCount());
+        Assertions.assertNull(index.find("bob", "Hunter#2"));
+        Assertions.assertTrue(index.getUnindexed("alice").isEmpty());
+        Assertions.assertSame(legacy, index.getUnindexed("bob").get(0).getKey());
+        Assertions.assertSame(facebook, index.getUnindexed("bob").get(0).getValue());
+
+        index.reindex(facebook, legacy, "Hunter#2");
+        Assertions.assertEquals(0, index.getUnindexedCount());
+        Assertions.assertTrue(CredentialFingerprint.isCurrent(legacy.getFingerprint()));
+        Assertions.assertSame(facebook, index.find("bob", "Hunter#2"));
+    }
+
+    @Test
+    public void staleFingerprintReindexed() {
+        Credential stale = new Credential("bob", "Hunter#2");
+        stale.setFingerprint("stale-id:fingerprint");
+        google.addCredential(stale);
+        CredentialIndex index = registry.getCredentialIndex();
+        index.add(google, stale);
+
+        Assertions.assertEquals(1, index.getUnindexed("bob").size());
+        index.reindex(google, stale, "Hunter#2");
+        Assertions.assertEquals(CredentialFingerprint.of("bob", "Hunter#2"), stale.getFingerprint());
+        Assertions.assertTrue(index.getUnindexed("bob").isEmpty());
+    }
+
+    @Test
+    public void clearDropsIndex() {
+        registry.clear();
+        Assertions.assertNull(registry.getCredentialIndex().find("alice", "Secret#1"));
+    }
+
+    @Test
+    public void keyKeptBetweenStarts() {
+        byte[] key = CredentialFingerprint.newKey();
+        CredentialFingerprint.useKey(key);
+        String fingerprint = CredentialFingerprint.of("alice", "Secret#1");
+        Assertions.assertFalse(CredentialFingerprint.isCurrent(youtube.getCredentials().get(0).getFingerprint()));
+
+        CredentialFingerprint.useKey(CredentialFingerprint.newKey());
+        Assertions.assertFalse(CredentialFingerprint.isCurrent(fingerprint));
+
+        CredentialFingerprint.useKey(key);
+        Assertions.assertEquals(fingerprint, CredentialFingerprint.of("alice", "Secret#1"));
+        Assertions.assertTrue(CredentialFingerprint.isCurrent(fingerprint));
+    }
+
+    @Test
+    public void malformedKeyRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CredentialFingerprint.useKey(new byte[16]));
+    }
+}
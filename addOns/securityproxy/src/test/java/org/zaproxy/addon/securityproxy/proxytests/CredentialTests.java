@@ -0,0 +1,149 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class CredentialTests {
+
+    @AfterEach
+    public void tearDown() {
+        CredentialHashing.use(Sha512Kdf.INSTANCE, 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Secret#1", "", "p\u00e4ssw\u00f6rd", "\uD83D\uDD11key"})
+    public void passwordMatches(String password) {
+        Credential credential = new Credential("alice", password);
+        Assertions.assertTrue(credential.matches(password));
+        Assertions.assertFalse(credential.matches(password + "x"));
+        Assertions.assertEquals(Credential.KDF_VERSION, credential.getVersion());
+        Assertions.assertFalse(credential.isOutdated());
+    }
+
+    @Test
+    public void slowKdfMatches() throws IOException {
+        CredentialHashing.use(new Pbkdf2Kdf(), 1000);
+        Credential credential = copy(new Credential("alice", "Secret#1"));
+        Assertions.assertTrue(credential.matches("Secret#1"));
+        Assertions.assertFalse(credential.matches("Secret#2"));
+        Assertions.assertFalse(credential.isOutdated());
+
+        CredentialHashing.use(new Pbkdf2Kdf(), 2000);
+        Assertions.assertTrue(credential.isOutdated());
+        Assertions.assertTrue(credential.matches("Secret#1"));
+        credential.upgrade("Secret#1");
+        Assertions.assertFalse(credential.isOutdated());
+        Assertions.assertEquals(2000, get(credential, "cost"));
+        Assertions.assertTrue(credential.matches("Secret#1"));
+    }
+
+    @Test
+    public void saltDiffersPerCredential() throws Exception {
+        Credential first = new Credential("alice", "Secret#1");
+        Credential second = new Credential("alice", "Secret#1");
+        Assertions.assertFalse(MessageDigest.isEqual((byte[]) get(first, "hash"), (byte[]) get(second, "hash")));
+    }
+
+    @Test
+    public void serializedCredentialMatches() throws Exception {
+        Credential credential = copy(new Credential("alice", "Secret#1"));
+        Assertions.assertTrue(credential.matches("Secret#1"));
+        Assertions.assertFalse(credential.matches("Secret#2"));
+        Assertions.assertNotNull(credential.getFingerprint());
+    }
+
+    @Test
+    public void legacyCredentialUpgraded() throws Exception {
+        Credential credential = copy(legacy("bob", "Hunter#2"));
+        Assertions.assertEquals(Credential.LEGACY_VERSION, credential.getVersion());
+        Assertions.assertTrue(credential.isOutdated());
+        Assertions.assertFalse(credential.matches("Hunter#3"));
+        Assertions.assertTrue(credential.matches("Hunter#2"));
+
+        credential.upgrade("Hunter#2");
+        Assertions.assertEquals(Credential.KDF_VERSION, credential.getVersion());
+        Assertions.assertNull(get(credential, "hashPassword"));
+        Assertions.assertTrue(credential.matches("Hunter#2"));
+        Assertions.assertFalse(credential.matches("Hunter#3"));
+    }
+
+    @Test
+    public void rawSha512CredentialMatches() throws Exception {
+        Credential credential = new Credential("bob", "Hunter#2");
+        set(credential, "version", Credential.SHA_512_VERSION);
+        set(credential, "kdf", null);
+        credential = copy(credential);
+        Assertions.assertTrue(credential.matches("Hunter#2"));
+        Assertions.assertFalse(credential.matches("Hunter#3"));
+        Assertions.assertTrue(credential.isOutdated());
+    }
+
+    @Test
+    public void unknownVersionRejected() throws Exception {
+        Credential credential = new Credential("alice", "Secret#1");
+        set(credential, "version", Credential.KDF_VERSION + 1);
+        Assertions.assertThrows(IOException.class, () -> copy(credential));
+    }
+
+    /**
+     * A credential as stored by older versions, salt and hash decoded to strings
+     */
+    private static Credential legacy(String username, String password) throws Exception {
+        Credential credential = new Credential(username, password);
+        byte[] salt = new byte[16];
+        new Random(1).nextBytes(salt);
+        String legacySalt = new String(salt);
+        MessageDigest md = MessageDigest.getInstance("SHA-512");
+        md.update(legacySalt.getBytes(StandardCharsets.UTF_8));
+        String legacyHash = new String(md.digest(password.getBytes(StandardCharsets.UTF_8)));
+
+        set(credential, "salt", legacySalt);
+        set(credential, "hashPassword", legacyHash);
+        set(credential, "version", Credential.LEGACY_VERSION);
+        set(credential, "saltBytes", null);
+        set(credential, "hash", null);
+        credential.setFingerprint(null);
+        return credential;
+    }
+
+    private static Credential copy(Credential credential) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(credential);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (Credential) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object get(Credential credential, String name) {
+        try {
+            Field field = Credential.class.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(credential);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(Credential credential, String name, Object value) throws Exception {
+        Field field = Credential.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(credential, value);
+    }
+}
@@ -0,0 +1,176 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CredentialVerifierTests {
+    private CredentialVerifier verifier;
+    private TestKdf kdf;
+
+    @BeforeEach
+    public void setUp() {
+        verifier = new CredentialVerifier(16);
+        kdf = new TestKdf();
+        CredentialHashing.use(kdf, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        kdf.release.countDown();
+        verifier.stop();
+        CredentialHashing.use(Sha512Kdf.INSTANCE, 1);
+    }
+
+    @Test
+    public void checkResultsKept() {
+        Credential credential = new Credential("alice", "Secret#1");
+        kdf.derived.set(0);
+
+        Assertions.assertTrue(verifier.matches(credential, "Secret#1", verifier.deadline()));
+        Assertions.assertTrue(verifier.matches(credential, "Secret#1", verifier.deadline()));
+        Assertions.assertFalse(verifier.matches(credential, "Secret#2", verifier.deadline()));
+        Assertions.assertFalse(verifier.matches(credential, "Secret#2", verifier.deadline()));
+        Assertions.assertEquals(2, kdf.derived.get());
+        Assertions.assertEquals(2, verifier.getHits());
+
+        Assertions.assertTrue(verifier.matches(new Credential("alice", "Secret#1"), "Secret#1", verifier.deadline()));
+    }
+
+    @Test
+    public void hashingRunsOnWorkers() throws Exception {
+        kdf.release.countDown();
+        verifier.start(1, 4, 10, TimeUnit.SECONDS);
+        Credential credential = verifier.create("alice", "Secret#1").get(10, TimeUnit.SECONDS);
+        Assertions.assertTrue(kdf.thread.startsWith("ZAP-SecurityProxy-CredentialHashing-"));
+        Assertions.assertTrue(verifier.matches(credential, "Secret#1", verifier.deadline()));
+    }
+
+    @Test
+    public void slowCheckStopsAtDeadline() throws Exception {
+        kdf.release.countDown();
+        Credential credential = new Credential("alice", "Secret#1");
+        kdf.release = new CountDownLatch(1);
+        verifier.start(1, 4, 50, TimeUnit.MILLISECONDS);
+
+        Assertions.assertNull(verifier.matches(credential, "Secret#1", verifier.deadline()));
+        Assertions.assertEquals(1, verifier.getTimeouts());
+
+        kdf.release.countDown();
+        Assertions.assertTrue(verifier.check(credential, "Secret#1").get(10, TimeUnit.SECONDS));
+        Assertions.assertTrue(verifier.matches(credential, "Secret#1", verifier.deadline()));
+    }
+
+    @Test
+    public void matchFoundAmongCredentials() {
+        kdf.release.countDown();
+        List<Credential> credentials = List.of(
+                new Credential("alice", "Secret#1"), new Credential("alice", "Secret#2"));
+
+        Assertions.assertEquals(1, verifier.findMatch(credentials, "Secret#2", verifier.deadline()));
+        Assertions.assertEquals(CredentialVerifier.NO_MATCH,
+                verifier.findMatch(credentials, "Secret#3", verifier.deadline()));
+        Assertions.assertEquals(CredentialVerifier.NO_MATCH,
+                verifier.findMatch(List.of(), "Secret#3", verifier.deadline()));
+    }
+
+    @Test
+    public void credentialsCheckedConcurrently() {
+        List<Credential> credentials = List.of(
+                new Credential("alice", "Secret#1"), new Credential("alice", "Secret#2"));
+        kdf.started = new CountDownLatch(2);
+        verifier.start(2, 4, 10, TimeUnit.SECONDS);
+        // both checks are released only once both run, one after the other they would time out
+        CompletableFuture.runAsync(() -> {
+            try {
+                kdf.started.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            kdf.release.countDown();
+        });
+
+        Assertions.assertEquals(CredentialVerifier.NO_MATCH,
+                verifier.findMatch(credentials, "Secret#3", verifier.deadline()));
+        Assertions.assertEquals(0, verifier.getTimeouts());
+    }
+
+    @Test
+    public void unfinishedCheckIsUnknown() {
+        kdf.release.countDown();
+        List<Credential> credentials = List.of(
+                new Credential("alice", "Secret#1"), new Credential("alice", "Secret#2"));
+        kdf.release = new CountDownLatch(1);
+        verifier.start(1, 4, 50, TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(CredentialVerifier.UNKNOWN,
+                verifier.findMatch(credentials, "Secret#3", verifier.deadline()));
+        Assertions.assertEquals(2, verifier.getTimeouts());
+    }
+
+    @Test
+    public void busyWorkersRejectHashing() {
+        verifier.start(1, 1, 10, TimeUnit.SECONDS);
+        CompletableFuture<Credential> running = verifier.create("alice", "Secret#1");
+        CompletableFuture<Credential> waiting = verifier.create("bob", "Secret#2");
+        CompletableFuture<Credential> rejected = verifier.create("carol", "Secret#3");
+
+        Assertions.assertThrows(ExecutionException.class, rejected::get);
+        Assertions.assertEquals(1, verifier.getRejections());
+        kdf.release.countDown();
+        Assertions.assertEquals("alice", running.join().getUsername());
+        Assertions.assertEquals("bob", waiting.join().getUsername());
+    }
+
+    @Test
+    public void onlyOutdatedCredentialsUpgraded() {
+        kdf.release.countDown();
+        Credential credential = new Credential("alice", "Secret#1");
+        kdf.derived.set(0);
+        verifier.upgrade(credential, "Secret#1").join();
+        Assertions.assertEquals(0, kdf.derived.get());
+
+        CredentialHashing.use(kdf, 2);
+        verifier.upgrade(credential, "Secret#1").join();
+        Assertions.assertEquals(1, kdf.derived.get());
+        Assertions.assertFalse(credential.isOutdated());
+    }
+
+    /**
+     * SHA-512 counting its calls, waiting for the release of the test
+     */
+    private static class TestKdf implements PasswordKdf {
+        private final AtomicInteger derived = new AtomicInteger();
+        private volatile CountDownLatch release = new CountDownLatch(1);
+        private volatile CountDownLatch started = new CountDownLatch(0);
+        private volatile String thread;
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void derive(String password, byte[] salt, int cost, byte[] out) {
+            derived.incrementAndGet();
+            thread = Thread.currentThread().getName();
+            if (thread.startsWith("ZAP-")) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Sha512Kdf.INSTANCE.derive(password, salt, cost, out);
+        }
+    }
+}
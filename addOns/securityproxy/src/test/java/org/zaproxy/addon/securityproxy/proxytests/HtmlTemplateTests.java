@@ -0,0 +1,88 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HtmlTemplateTests {
+    private File directory;
+    private File file;
+    private final AtomicLong clock = new AtomicLong(1000);
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("template").toFile();
+        file = new File(directory, "page.html");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        Files.delete(directory.toPath());
+    }
+
+    @Test
+    public void placeholdersReplaced() throws IOException {
+        write("<p>{a}</p>{b}{b}{a}{b}");
+        HtmlTemplate template = template("{a}", "{b}");
+
+        Assertions.assertEquals("<p>x</p>yyyyxyy\n", template.renderString("x", "yy"));
+        Assertions.assertEquals("<p>\u00e4</p>\u00e4\n", template.renderString("\u00e4", ""));
+        Assertions.assertArrayEquals("<p>\u00e4</p>\u00e4\n".getBytes(StandardCharsets.UTF_8), template.render("\u00e4", null));
+    }
+
+    @Test
+    public void missingValuesRenderedEmpty() throws IOException {
+        write("{a}-{b}");
+        HtmlTemplate template = template("{a}", "{b}");
+        Assertions.assertEquals("x-\n", template.renderString("x"));
+    }
+
+    @Test
+    public void literalOnlyTemplate() throws IOException {
+        write("<html>no placeholders</html>");
+        HtmlTemplate template = template("{a}");
+        Assertions.assertEquals("<html>no placeholders</html>\n", template.renderString("x"));
+    }
+
+    @Test
+    public void changedFileReloaded() throws IOException {
+        write("<p>{a}</p>");
+        HtmlTemplate template = template("{a}");
+        Assertions.assertEquals("<p>x</p>\n", template.renderString("x"));
+
+        write("<div>{a}</div>");
+        Assertions.assertTrue(file.setLastModified(file.lastModified() + 2000));
+        clock.addAndGet(500);
+        Assertions.assertEquals("<p>x</p>\n", template.renderString("x"));
+
+        clock.addAndGet(500);
+        Assertions.assertEquals("<div>x</div>\n", template.renderString("x"));
+    }
+
+    @Test
+    public void missingFileRenderedAsNull() throws IOException {
+        HtmlTemplate template = template("{a}");
+        Assertions.assertNull(template.render("x"));
+        Assertions.assertNull(template.renderString("x"));
+
+        write("<p>{a}</p>");
+        clock.addAndGet(1000);
+        Assertions.assertEquals("<p>x</p>\n", template.renderString("x"));
+    }
+
+    private HtmlTemplate template(String... placeholders) {
+        return new HtmlTemplate(() -> file, clock::get, placeholders);
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,98 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PasswordWarningSuppressionsTests {
+
+    @Test
+    public void combinationSuppressedOnce() {
+        PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions();
+        Assertions.assertTrue(suppressions.suppress("youtube.com", "alice"));
+        Assertions.assertFalse(suppressions.suppress("youtube.com", "alice"));
+        Assertions.assertEquals(1, suppressions.size());
+
+        Assertions.assertTrue(suppressions.isSuppressed("youtube.com", "alice"));
+        Assertions.assertFalse(suppressions.isSuppressed("youtube.com", "bob"));
+        Assertions.assertFalse(suppressions.isSuppressed("google.com", "alice"));
+    }
+
+    @Test
+    public void removedCombinationWarnedAgain() {
+        PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions();
+        suppressions.suppress("youtube.com", "alice");
+        suppressions.remove("youtube.com", "alice");
+        Assertions.assertFalse(suppressions.isSuppressed("youtube.com", "alice"));
+        Assertions.assertEquals(0, suppressions.size());
+    }
+
+    @Test
+    public void expiredCombinationDropped() {
+        AtomicLong clock = new AtomicLong(1000);
+        PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions(clock::get);
+        suppressions.suppress("youtube.com", "alice", 20, TimeUnit.MILLISECONDS);
+        suppressions.suppress("youtube.com", "bob", Long.MAX_VALUE, TimeUnit.DAYS);
+        clock.addAndGet(19);
+        Assertions.assertTrue(suppressions.isSuppressed("youtube.com", "alice"));
+        clock.addAndGet(1);
+
+        Assertions.assertFalse(suppressions.isSuppressed("youtube.com", "alice"));
+        Assertions.assertTrue(suppressions.isSuppressed("youtube.com", "bob"));
+        Assertions.assertEquals(1, suppressions.size());
+    }
+
+    @Test
+    public void suppressionsKeptInFile() throws IOException {
+        File file = Files.createTempFile("suppressions", ".tmp").toFile();
+        try {
+            PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions();
+            suppressions.suppress("youtube.com", "alice");
+            suppressions.suppress("google.com", "b\u00f6b", 1, TimeUnit.HOURS);
+            suppressions.suppress("facebook.com", "carol", 0, TimeUnit.MILLISECONDS);
+            suppressions.writeTo(file);
+
+            PasswordWarningSuppressions read = new PasswordWarningSuppressions();
+            read.suppress("other.com", "dave");
+            read.readFrom(file);
+            Assertions.assertEquals(2, read.size());
+            Assertions.assertTrue(read.isSuppressed("youtube.com", "alice"));
+            Assertions.assertTrue(read.isSuppressed("google.com", "b\u00f6b"));
+            Assertions.assertFalse(read.isSuppressed("facebook.com", "carol"));
+            Assertions.assertFalse(read.isSuppressed("other.com", "dave"));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    public void missingFileKeepsSuppressions() throws IOException {
+        PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions();
+        suppressions.suppress("youtube.com", "alice");
+        suppressions.readFrom(new File("missing-suppressions.tmp"));
+        Assertions.assertTrue(suppressions.isSuppressed("youtube.com", "alice"));
+    }
+
+    @Test
+    public void unknownFileVersionRejected() throws IOException {
+        File file = Files.createTempFile("suppressions", ".tmp").toFile();
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file.toPath()))) {
+                out.writeInt(2);
+                out.writeInt(0);
+            }
+            PasswordWarningSuppressions suppressions = new PasswordWarningSuppressions();
+            suppressions.suppress("youtube.com", "alice");
+            Assertions.assertThrows(IOException.class, () -> suppressions.readFrom(file));
+            Assertions.assertTrue(suppressions.isSuppressed("youtube.com", "alice"));
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PendingLoginStoreTests {
+
+    @Test
+    public void loginTakenOnce() {
+        PendingLoginStore store = new PendingLoginStore(4, 60000);
+        String id = store.put("phishing.com", "alice", "Secret#1");
+
+        PendingLoginStore.PendingLogin login = store.take(id);
+        Assertions.assertNotNull(login);
+        Assertions.assertEquals("phishing.com", login.getHost());
+        Assertions.assertEquals("alice", login.getUsername());
+        Assertions.assertEquals("Secret#1", login.getPassword());
+        Assertions.assertNull(store.take(id));
+        Assertions.assertEquals(0, store.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "p\u00e4ssw\u00f6rd", "\uD83D\uDD11key"})
+    public void passwordKeptEncrypted(String password) {
+        PendingLoginStore store = new PendingLoginStore(4, 60000);
+        String first = store.put("phishing.com", "alice", password);
+        String second = store.put("phishing.com", "alice", password);
+        Assertions.assertEquals(password, store.take(first).getPassword());
+        Assertions.assertEquals(password, store.take(second).getPassword());
+    }
+
+    @Test
+    public void unknownIdNotFound() {
+        PendingLoginStore store = new PendingLoginStore(4, 60000);
+        store.put("phishing.com", "alice", "Secret#1");
+        Assertions.assertNull(store.take("unknown"));
+        Assertions.assertEquals(1, store.size());
+    }
+
+    @Test
+    public void eldestLoginEvicted() {
+        PendingLoginStore store = new PendingLoginStore(2, 60000);
+        String first = store.put("phishing.com", "alice", "Secret#1");
+        String second = store.put("phishing.com", "bob", "Hunter#2");
+        String third = store.put("phishing.com", "carol", "Pass#3");
+
+        Assertions.assertEquals(2, store.size());
+        Assertions.assertEquals(1, store.getEvictions());
+        Assertions.assertNull(store.take(first));
+        Assertions.assertNotNull(store.take(second));
+        Assertions.assertNotNull(store.take(third));
+    }
+
+    @Test
+    public void expiredLoginDropped() {
+        AtomicLong clock = new AtomicLong();
+        PendingLoginStore store = new PendingLoginStore(4, 20, clock::get);
+        String first = store.put("phishing.com", "alice", "Secret#1");
+        String second = store.put("phishing.com", "bob", "Hunter#2");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(19));
+        Assertions.assertNotNull(store.take(second));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assertions.assertNull(store.take(first));
+        Assertions.assertEquals(1, store.getExpirations());
+        Assertions.assertEquals(0, store.size());
+    }
+
+    @Test
+    public void smallerLimitDropsEldest() {
+        PendingLoginStore store = new PendingLoginStore(4, 60000);
+        String first = store.put("phishing.com", "alice", "Secret#1");
+        String second = store.put("phishing.com", "bob", "Hunter#2");
+
+        store.setLimits(1, 1, TimeUnit.MINUTES);
+        Assertions.assertEquals(1, store.getMaxSize());
+        Assertions.assertEquals(1, store.getEvictions());
+        Assertions.assertNull(store.take(first));
+        Assertions.assertNotNull(store.take(second));
+    }
+}
@@ -10,6 +10,7 @@ import org.parosproxy.paros.model.Model;
 import org.parosproxy.paros.network.HttpHeader;
 import org.parosproxy.paros.network.HttpMalformedHeaderException;
 import org.parosproxy.paros.network.HttpMessage;
+import org.parosproxy.paros.network.HttpRequestHeader;
 import org.parosproxy.paros.view.View;
 import org.zaproxy.addon.securityproxy.ExtensionSecurityProxy;
 import org.zaproxy.addon.securityproxy.SecurityProxyListener;
@@ -20,6 +21,7 @@ import java.util.List;
 public class SecurityProxyListenerTests {
     private TypoSquattingTest test;
     private SecurityProxyListener listener;
+    private Website youtube;
 
     private static final String HTTPS = "https://";
 
@@ -35,11 +37,12 @@ public class SecurityProxyListenerTests {
         proxy.hook(new ExtensionHook(new Model(), new View()));
         this.listener = new SecurityProxyListener(proxy);
         this.test = new TypoSquattingTest(listener);
-        Website youtube = new Website("www.youtube.com");
+        youtube = new Website("www.youtube.com");
+        youtube.addCredential(new Credential("alice", "Tr0ub4dor-3x"));
         Website google = new Website("www.google.com");
         Website typoYoutube = new Website("www.youtbe.com", youtube);
         System.out.println(typoYoutube.toString());
-        proxy.getWebsites().addAll(List.of(youtube, google, typoYoutube));
+        proxy.getWebsiteRegistry().addAll(List.of(youtube, google, typoYoutube));
     }
 
     /**
@@ -104,4 +107,76 @@ public class SecurityProxyListenerTests {
         Assertions.assertFalse(test.getKnownUrlList().contains("www.ads.software-system.com"));
         Assertions.assertEquals(0, message.getResponseBody().length());
     }
+
+    /**
+     * The response of a login request is handled with the analysis of the request made when it
+     * was sent: a failed login removes the credential of the submitted username even after the
+     * request body changed
+     * @throws URIException uri parsing exception
+     * @throws HttpMalformedHeaderException malformed header exception
+     */
+    @Test
+    public void verdictOfRequestReusedForResponse() throws URIException, HttpMalformedHeaderException {
+        HttpMessage message = loginMessage("www.youtube.com", "alice", "Tr0ub4dor-3x");
+
+        listener.onHttpRequestSend(message);
+        Object verdict = message.getUserObject();
+        Assertions.assertNotNull(verdict);
+
+        message.setRequestBody("");
+        message.setResponseHeader("HTTP/1.1 401 Unauthorized\r\n\r\n");
+        listener.onHttpResponseReceive(message);
+
+        Assertions.assertSame(verdict, message.getUserObject());
+        Assertions.assertTrue(youtube.getCredentials().isEmpty());
+    }
+
+    /**
+     * A message carrying another user object is left as is, its response is handled with a new
+     * analysis of the request as it is then
+     * @throws URIException uri parsing exception
+     * @throws HttpMalformedHeaderException malformed header exception
+     */
+    @Test
+    public void otherUserObjectKeptAndRequestAnalysedAgain() throws URIException, HttpMalformedHeaderException {
+        HttpMessage message = loginMessage("www.youtube.com", "alice", "Tr0ub4dor-3x");
+        Object other = new Object();
+        message.setUserObject(other);
+
+        listener.onHttpRequestSend(message);
+        Assertions.assertSame(other, message.getUserObject());
+
+        message.setRequestBody("");
+        message.setResponseHeader("HTTP/1.1 401 Unauthorized\r\n\r\n");
+        listener.onHttpResponseReceive(message);
+
+        Assertions.assertSame(other, message.getUserObject());
+        Assertions.assertEquals(1, youtube.getCredentials().size());
+    }
+
+    /**
+     * A response whose request was not analysed when sent, e.g. sent before the extension was
+     * hooked, is handled with an analysis of the request made then
+     * @throws URIException uri parsing exception
+     * @throws HttpMalformedHeaderException malformed header exception
+     */
+    @Test
+    public void responseWithoutVerdictAnalysesRequest() throws URIException, HttpMalformedHeaderException {
+        HttpMessage message = loginMessage("www.youtube.com", "alice", "Tr0ub4dor-3x");
+        message.setResponseHeader("HTTP/1.1 401 Unauthorized\r\n\r\n");
+
+        listener.onHttpResponseReceive(message);
+
+        Assertions.assertNotNull(message.getUserObject());
+        Assertions.assertTrue(youtube.getCredentials().isEmpty());
+    }
+
+    private static HttpMessage loginMessage(String host, String username, String password)
+            throws URIException, HttpMalformedHeaderException {
+        HttpMessage message = new HttpMessage(new URI(HTTPS + host + "/login", true));
+        message.getRequestHeader().setMethod(HttpRequestHeader.POST);
+        message.getRequestHeader().setHeader(HttpHeader.CONTENT_TYPE, HttpHeader.FORM_URLENCODED_CONTENT_TYPE);
+        message.setRequestBody("username=" + username + "&password=" + password);
+        return message;
+    }
 }
@@ -0,0 +1,175 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.AdjSwappedCharacterConstraint;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.ExtraCharacterConstraint;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.MissingCharacterConstraint;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.ReplacedCharacterConstraint;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.TypoClassifier.TypoType;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.TypoSquattingConstraint;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TypoCandidateIndexTests {
+    private static final List<TypoSquattingConstraint> CONSTRAINTS = List.of(
+            new AdjSwappedCharacterConstraint(),
+            new ExtraCharacterConstraint(),
+            new MissingCharacterConstraint(),
+            new ReplacedCharacterConstraint()
+    );
+    private static final List<TypoType> TYPO_TYPES = List.of(
+            TypoType.ADJ_SWAPPED,
+            TypoType.EXTRA_CHARACTER,
+            TypoType.MISSING_CHARACTER,
+            TypoType.REPLACED_CHARACTER
+    );
+    private static final String ALPHABET = "abcdeo.-";
+
+    private List<String> knownHosts;
+    private TypoCandidateIndex index;
+
+    /**
+     * Initialize youtube and google as known hosts in both the index and the reference list.
+     */
+    @BeforeEach
+    public void initData() {
+        knownHosts = new ArrayList<>();
+        index = new TypoCandidateIndex();
+        add("youtube.com");
+        add("google.com");
+    }
+
+    /**
+     * Parameterize Test to check that typos of the known hosts
+     * are found by the index and return the intended host
+     * @param hostname typo hostnames
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "youtbe.com",
+            "youtuube.com",
+            "yotuube.com",
+            "yoAtube.com",
+            "gogle.com",
+            "googel.com"})
+    public void typoHostnameIsFound(String hostname) {
+        TypoCandidateIndex.Match match = index.findTypoOf(hostname);
+        Assertions.assertNotNull(match);
+        Assertions.assertEquals(scan(hostname).knownHost, match.getKnownHost());
+    }
+
+    /**
+     * Parameterize Test to check that known and unrelated hosts are not reported as typos
+     * @param hostname legitimate hostnames
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "youtube.com",
+            "google.com",
+            "facebook.com",
+            "yuotbue.com"})
+    public void legitHostnameIsNotFound(String hostname) {
+        Assertions.assertNull(index.findTypoOf(hostname));
+    }
+
+    /**
+     * Compare the index with the linear scan over the constraints on a large set of random
+     * known hosts and random typos, both for the intended host and the violated constraint.
+     */
+    @Test
+    public void indexGivesSameVerdictAsConstraintScan() {
+        Random random = new Random(8);
+        for (int i = 0; i < 2000; i++) {
+            add(randomHost(random));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            String hostname = (i % 2 == 0)
+                    ? mutate(knownHosts.get(random.nextInt(knownHosts.size())), random)
+                    : randomHost(random);
+            Expected expected = scan(hostname);
+            TypoCandidateIndex.Match actual = index.findTypoOf(hostname);
+
+            if (expected == null) {
+                Assertions.assertNull(actual, hostname);
+            } else {
+                Assertions.assertNotNull(actual, hostname);
+                Assertions.assertEquals(expected.knownHost, actual.getKnownHost(), hostname);
+                Assertions.assertSame(expected.typoType, actual.getTypoType(), hostname);
+            }
+        }
+    }
+
+    private void add(String host) {
+        knownHosts.add(host);
+        index.add(host);
+    }
+
+    /**
+     * The reference implementation: the last known host violating a constraint wins.
+     */
+    private Expected scan(String hostname) {
+        Expected expected = null;
+        for (String knownHost : knownHosts) {
+            for (int i = 0; i < CONSTRAINTS.size(); i++) {
+                if (CONSTRAINTS.get(i).passedConstraint(hostname, knownHost)) {
+                    expected = new Expected(knownHost, TYPO_TYPES.get(i));
+                    break;
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static String randomHost(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = 3 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(String host, Random random) {
+        StringBuilder sb = new StringBuilder(host);
+        int pos = random.nextInt(host.length());
+        char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+        switch (random.nextInt(5)) {
+            case 0:
+                if (pos < host.length() - 1) {
+                    sb.setCharAt(pos, host.charAt(pos + 1));
+                    sb.setCharAt(pos + 1, host.charAt(pos));
+                }
+                break;
+            case 1:
+                sb.insert(pos, c);
+                break;
+            case 2:
+                sb.deleteCharAt(pos);
+                break;
+            case 3:
+                sb.setCharAt(pos, c);
+                break;
+            default:
+                sb.setCharAt(pos, c);
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static class Expected {
+        private final String knownHost;
+        private final TypoType typoType;
+
+        private Expected(String knownHost, TypoType typoType) {
+            this.knownHost = knownHost;
+            this.typoType = typoType;
+        }
+    }
+}
@@ -33,7 +33,7 @@ public class TypoSquattingTestTests {
         Website youtube = new Website("www.youtube.com");
         Website google = new Website("www.google.com");
         System.out.println(test.getTestName());
-        proxy.getWebsites().addAll(List.of(youtube, google));
+        proxy.getWebsiteRegistry().addAll(List.of(youtube, google));
     }
 
     /**
@@ -0,0 +1,55 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class TypoVerdictCacheTests {
+
+    @Test
+    public void cachedVerdictIsReturned() {
+        TypoVerdictCache cache = new TypoVerdictCache(8, 60_000);
+        String key = TypoVerdictCache.key("youtbe.com", "youtbe.com");
+
+        Assertions.assertNull(cache.get(key, 1));
+        cache.put(key, "youtube.com", 1);
+        Assertions.assertEquals("youtube.com", cache.get(key, 1));
+        Assertions.assertEquals(1, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void leastRecentlyUsedVerdictIsEvicted() {
+        TypoVerdictCache cache = new TypoVerdictCache(2, 60_000);
+        cache.put("a", "safe", 0);
+        cache.put("b", "safe", 0);
+        cache.get("a", 0);
+        cache.put("c", "safe", 0);
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals("safe", cache.get("a", 0));
+        Assertions.assertNull(cache.get("b", 0));
+        Assertions.assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void newGenerationDropsVerdicts() {
+        TypoVerdictCache cache = new TypoVerdictCache(8, 60_000);
+        cache.put("a", "safe", 3);
+
+        Assertions.assertNull(cache.get("a", 4));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(1, cache.getInvalidations());
+
+        cache.put("a", "safe", 3);
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void expiredVerdictIsRecomputed() {
+        TypoVerdictCache cache = new TypoVerdictCache(8, 0);
+        cache.put("a", "safe", 0);
+
+        Assertions.assertNull(cache.get("a", 0));
+        Assertions.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,103 @@
+package org.zaproxy.addon.securityproxy.proxytests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WebsiteRegistryTests {
+    private WebsiteRegistry registry;
+    private Website youtube;
+
+    /**
+     * Initialize youtube and google as legitimate websites and youtbe as typo of youtube.
+     */
+    @BeforeEach
+    public void initData() {
+        registry = new WebsiteRegistry();
+        youtube = new Website("youtube.com");
+        registry.addAll(List.of(youtube, new Website("google.com"), new Website("youtbe.com", youtube)));
+    }
+
+    @Test
+    public void knownAndTypoHostsAreSeparated() {
+        Assertions.assertSame(youtube, registry.getKnownWebsite("youtube.com"));
+        Assertions.assertNull(registry.getKnownWebsite("youtbe.com"));
+        Assertions.assertTrue(registry.isTypoHost("youtbe.com"));
+        Assertions.assertFalse(registry.isTypoHost("youtube.com"));
+        Assertions.assertSame(youtube, registry.getTypoWebsite("youtbe.com").getDirectedWebsite());
+        Assertions.assertEquals(2, registry.getKnownWebsites().size());
+        Assertions.assertEquals(1, registry.getTypoWebsites().size());
+    }
+
+    @Test
+    public void duplicateHostIsNotAddedTwice() {
+        Assertions.assertFalse(registry.add(new Website("youtube.com")));
+        Assertions.assertFalse(registry.add(new Website("youtbe.com", youtube)));
+        Assertions.assertTrue(registry.add(new Website("facebook.com")));
+        Assertions.assertSame(youtube, registry.getKnownWebsite("youtube.com"));
+        Assertions.assertEquals(4, registry.getWebsites().size());
+    }
+
+    @Test
+    public void addedKnownHostIsIndexedForTypoLookups() {
+        Assertions.assertNull(registry.getTypoCandidateIndex().findTypoOf("facebok.com"));
+        registry.add(new Website("facebook.com"));
+        Assertions.assertEquals("facebook.com",
+                registry.getTypoCandidateIndex().findTypoOf("facebok.com").getKnownHost());
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        registry.clear();
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertTrue(registry.getKnownHosts().isEmpty());
+        Assertions.assertNull(registry.getTypoCandidateIndex().findTypoOf("youtbe.com"));
+    }
+
+    /**
+     * Add websites and credentials from several threads while other threads read the
+     * registry, no reader may fail and no website or credential may be lost.
+     */
+    @Test
+    public void concurrentWritersAndReaders() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int writer = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    registry.add(new Website("host" + writer + "-" + i + ".com"));
+                    youtube.addCredential(new Credential("user" + writer + "-" + i, "password"));
+                }
+            }));
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    for (Website website : registry.getKnownWebsites()) {
+                        website.getCredentials().size();
+                    }
+                    for (Credential credential : youtube.getCredentials()) {
+                        credential.getUsername();
+                    }
+                    registry.getTypoCandidateIndex().findTypoOf("host" + i + ".co");
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        Assertions.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(2003, registry.size());
+        Assertions.assertEquals(2002, registry.getKnownWebsites().size());
+        Assertions.assertEquals(2002, registry.getTypoCandidateIndex().size());
+        Assertions.assertEquals(2000, youtube.getCredentials().size());
+    }
+}
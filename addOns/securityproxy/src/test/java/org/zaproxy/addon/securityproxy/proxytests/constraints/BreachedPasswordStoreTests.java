@@ -0,0 +1,141 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class BreachedPasswordStoreTests {
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("breached").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 100, 200000})
+    public void importedPasswordsFoundTest(int size) throws Exception {
+        List<String> passwords = randomPasswords(new Random(size), size, "");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < passwords.size(); i++) {
+            lines.add(sha1(passwords.get(i)) + ":" + (i + 1));
+        }
+        Collections.shuffle(lines, new Random(-size));
+
+        Assertions.assertEquals(size, importDump(lines, 0));
+        BreachedPasswordStore store = new BreachedPasswordStore(directory);
+        Assertions.assertEquals(size, store.size());
+        for (String password : passwords) {
+            Assertions.assertTrue(store.contains(password), password);
+        }
+        for (String password : randomPasswords(new Random(size + 1), 10000, "#")) {
+            Assertions.assertFalse(store.contains(password), password);
+        }
+    }
+
+    @Test
+    public void knownHashTest() throws Exception {
+        importDump(List.of("5BAA61E4C9B93F3F0682250B6CF8331B7EE68FD8:9545824"), 0);
+        BreachedPasswordStore store = new BreachedPasswordStore(directory);
+        Assertions.assertTrue(store.contains("password"));
+        Assertions.assertFalse(store.contains("Password"));
+    }
+
+    @Test
+    public void minCountTest() throws Exception {
+        importDump(List.of(sha1("seen-once") + ":1", sha1("seen-twice") + ":2", sha1("no-count")), 2);
+        BreachedPasswordStore store = new BreachedPasswordStore(directory);
+        Assertions.assertFalse(store.contains("seen-once"));
+        Assertions.assertTrue(store.contains("seen-twice"));
+        Assertions.assertTrue(store.contains("no-count"));
+    }
+
+    @Test
+    public void malformedAndDuplicateLinesTest() throws Exception {
+        long stored = importDump(List.of(
+                sha1("dragon") + ":3", "", "not a hash", sha1("dragon").toLowerCase() + ":4",
+                sha1("monkey").substring(1), "  " + sha1("monkey") + " "), 0);
+        Assertions.assertEquals(2, stored);
+        BreachedPasswordStore store = new BreachedPasswordStore(directory);
+        Assertions.assertTrue(store.contains("dragon"));
+        Assertions.assertTrue(store.contains("monkey"));
+    }
+
+    @Test
+    public void importReplacesStoreTest() throws Exception {
+        importDump(List.of(sha1("dragon")), 0);
+        importDump(List.of(sha1("monkey")), 0);
+        BreachedPasswordStore store = BreachedPasswordStore.get(directory);
+        Assertions.assertFalse(store.contains("dragon"));
+        Assertions.assertTrue(store.contains("monkey"));
+        Assertions.assertFalse(new BreachedPasswConstraint(directory).passedConstraint("monkey"));
+        Assertions.assertTrue(new BreachedPasswConstraint(directory).passedConstraint("dragon"));
+    }
+
+    @Test
+    public void emptyStoreTest() {
+        BreachedPasswordStore store = new BreachedPasswordStore(new File(directory, "missing"));
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertFalse(store.contains("password"));
+    }
+
+    @Test
+    public void corruptRangeIgnoredTest() throws Exception {
+        importDump(List.of(sha1("password")), 0);
+        File range = new File(directory, "5BA" + BreachedPasswordStore.EXTENSION);
+        Files.write(range.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        BreachedPasswordStore store = new BreachedPasswordStore(directory);
+        Assertions.assertFalse(store.contains("password"));
+    }
+
+    private long importDump(List<String> lines, long minCount) throws IOException {
+        String dump = String.join("\n", lines);
+        return BreachedPasswordStore.importDump(new BufferedReader(new StringReader(dump)), directory, minCount);
+    }
+
+    private static String sha1(String password) throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(String.format("%02X", b));
+        }
+        return sb.toString();
+    }
+
+    private static List<String> randomPasswords(Random random, int size, String suffix) {
+        List<String> passwords = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 6 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                sb.append((char) ('!' + random.nextInt(94)));
+            }
+            passwords.add(sb.append(i).append(suffix).toString());
+        }
+        return passwords;
+    }
+}
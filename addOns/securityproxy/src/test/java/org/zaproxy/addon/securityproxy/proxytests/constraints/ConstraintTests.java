@@ -94,7 +94,7 @@ public class ConstraintTests {
      * @param typo typos that shouldn't be caught by the constraint resulting in a return of false
      */
     @org.junit.jupiter.params.ParameterizedTest
-    @ValueSource(strings = {"something_else","baced","baxde"})
+    @ValueSource(strings = {"something_else","baced","baxde","abdcx"})
     void AdjSwappedCharacterFalseTest(String typo) {
         String original = "abcde";
         TypoSquattingConstraint constraint = new AdjSwappedCharacterConstraint();
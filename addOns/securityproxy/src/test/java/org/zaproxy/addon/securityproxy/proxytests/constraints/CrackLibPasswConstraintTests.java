@@ -0,0 +1,160 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.MappedPacker;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.Packer;
+import org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib.WordDictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class CrackLibPasswConstraintTests {
+    private static final String NAME = "words";
+    private static final String[] WORDS = {"dragon", "football", "monkey", "princess", "sunshine"};
+
+    private File directory;
+    private CrackLibPasswConstraint constraint;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cracklib").toFile();
+        Packer writer = new Packer(directory, NAME, "rw");
+        for (String word : WORDS) {
+            writer.put(word);
+        }
+        writer.close();
+        constraint = new CrackLibPasswConstraint();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        constraint.stopParallelLookup();
+        constraint.closeDictionary();
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Dragon#1", "Monkey#1", "Princess#1"})
+    public void dictionaryWordFailsTest(String passw) throws IOException {
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        Assertions.assertFalse(constraint.passedConstraint(passw));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"Minhtriet2908@", "Qwhx#7Lpz"})
+    public void strongPasswordPassesTest(String passw) throws IOException {
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        Assertions.assertTrue(constraint.passedConstraint(passw));
+    }
+
+    @Test
+    public void withoutDictionaryOnlyRulesTest() {
+        Assertions.assertTrue(constraint.passedConstraint("Dragon#1"));
+        Assertions.assertFalse(constraint.passedConstraint("dragon"));
+    }
+
+    @Test
+    public void checksDoNotTouchDictionaryTest() throws IOException {
+        List<String> before = describeFiles();
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        for (int i = 0; i < 10; i++) {
+            constraint.passedConstraint("Dragon#1");
+            constraint.passedConstraint("Minhtriet2908@");
+        }
+        constraint.closeDictionary();
+        Assertions.assertEquals(before, describeFiles());
+    }
+
+    @Test
+    public void emptyHashFileTest() throws IOException {
+        try (RandomAccessFile hwm = new RandomAccessFile(new File(directory, NAME + ".hwm"), "rw")) {
+            hwm.setLength(0);
+        }
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        Assertions.assertFalse(constraint.passedConstraint("Dragon#1"));
+        Assertions.assertTrue(constraint.passedConstraint("Minhtriet2908@"));
+        constraint.setDictionary(new Packer(directory, NAME, "r"));
+        Assertions.assertFalse(constraint.passedConstraint("Dragon#1"));
+        Assertions.assertTrue(constraint.passedConstraint("Minhtriet2908@"));
+    }
+
+    @Test
+    public void concurrentChecksTest() throws Exception {
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> weak = new ArrayList<>();
+            List<Future<Boolean>> strong = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                weak.add(executor.submit(() -> constraint.passedConstraint("Sunshine#1")));
+                strong.add(executor.submit(() -> constraint.passedConstraint("Minhtriet2908@")));
+            }
+            for (int i = 0; i < weak.size(); i++) {
+                Assertions.assertFalse(weak.get(i).get());
+                Assertions.assertTrue(strong.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelLookupTest() throws IOException {
+        constraint.setDictionary(new MappedPacker(directory, NAME));
+        constraint.startParallelLookup(2, 10, TimeUnit.SECONDS);
+        for (String word : WORDS) {
+            String passw = Character.toUpperCase(word.charAt(0)) + word.substring(1) + "#1";
+            Assertions.assertFalse(constraint.passedConstraint(passw), passw);
+        }
+        Assertions.assertTrue(constraint.passedConstraint("Minhtriet2908@"));
+        constraint.stopParallelLookup();
+        Assertions.assertFalse(constraint.passedConstraint("Dragon#1"));
+    }
+
+    @Test
+    public void failedLookupUndeterminedTest() {
+        constraint.setDictionary(new WordDictionary() {
+            @Override
+            public int size() {
+                return 1;
+            }
+
+            @Override
+            public int find(String s) throws IOException {
+                throw new IOException("Dictionary closed");
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        UndeterminedConstraintException e = Assertions.assertThrows(UndeterminedConstraintException.class,
+                () -> constraint.passedConstraint("Minhtriet2908@"));
+        Assertions.assertTrue(e.getCause() instanceof IOException);
+    }
+
+    private List<String> describeFiles() {
+        List<String> files = new ArrayList<>();
+        for (String extension : new String[] {".pwd", ".pwi", ".hwm"}) {
+            File file = new File(directory, NAME + extension);
+            files.add(file.getName() + ":" + file.length() + ":" + file.lastModified());
+        }
+        return files;
+    }
+}
@@ -0,0 +1,313 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PasswordCheckPipelineTests {
+    private List<String> checked;
+    private PasswordCheckPipeline pipeline;
+
+    @BeforeEach
+    public void setUp() {
+        checked = new ArrayList<>();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stopAsyncChecks();
+        }
+    }
+
+    @Test
+    public void cheapConstraintsCheckedFirstTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("expensive", SafePasswordConstraint.EXPENSIVE, "weak"),
+                new TestConstraint("list", SafePasswordConstraint.LOOKUP, "weak"),
+                new TestConstraint("numeric", SafePasswordConstraint.CHEAP, "123")), 16);
+
+        Assertions.assertEquals("list", pipeline.check("weak"));
+        Assertions.assertEquals(List.of("numeric", "list"), checked);
+        Assertions.assertEquals("numeric", pipeline.check("123"));
+        Assertions.assertNull(pipeline.check("Zq7#strong"));
+    }
+
+    @Test
+    public void sameCostKeepsOrderTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("first", SafePasswordConstraint.LOOKUP, "weak"),
+                new TestConstraint("second", SafePasswordConstraint.LOOKUP, "weak")), 16);
+
+        Assertions.assertEquals("first", pipeline.check("weak"));
+        Assertions.assertEquals("first", pipeline.getConstraints().get(0).getReason());
+    }
+
+    @Test
+    public void verdictsKeptUntilClearedTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("list", SafePasswordConstraint.LOOKUP, "weak")), 16);
+
+        Assertions.assertEquals("list", pipeline.check("weak"));
+        Assertions.assertEquals("list", pipeline.check("weak"));
+        Assertions.assertNull(pipeline.check("Zq7#strong"));
+        Assertions.assertNull(pipeline.check("Zq7#strong"));
+        Assertions.assertEquals(2, checked.size());
+        Assertions.assertEquals(2, pipeline.getHits());
+        Assertions.assertEquals(2, pipeline.size());
+
+        pipeline.clear();
+        Assertions.assertEquals("list", pipeline.check("weak"));
+        Assertions.assertEquals(3, checked.size());
+    }
+
+    @Test
+    public void leastRecentlyUsedVerdictDroppedTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("list", SafePasswordConstraint.LOOKUP, "weak")), 2);
+
+        pipeline.check("a");
+        pipeline.check("b");
+        pipeline.check("a");
+        pipeline.check("c");
+        Assertions.assertEquals(2, pipeline.size());
+        checked.clear();
+        pipeline.check("a");
+        pipeline.check("b");
+        Assertions.assertEquals(List.of("list"), checked);
+    }
+
+    @Test
+    public void withoutAsyncChecksCompletedTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("expensive", SafePasswordConstraint.EXPENSIVE, "weak")), 16);
+
+        CompletableFuture<String> check = pipeline.checkAsync("weak");
+        Assertions.assertTrue(check.isDone());
+        Assertions.assertEquals("expensive", pipeline.await(check));
+    }
+
+    @Test
+    public void cheapFailureSkipsExpensiveConstraintsTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("expensive", SafePasswordConstraint.EXPENSIVE, "123"),
+                new TestConstraint("numeric", SafePasswordConstraint.CHEAP, "123")), 16);
+        pipeline.startAsyncChecks(1, 10, TimeUnit.SECONDS);
+
+        CompletableFuture<String> check = pipeline.checkAsync("123");
+        Assertions.assertTrue(check.isDone());
+        Assertions.assertEquals("numeric", pipeline.await(check));
+        Assertions.assertEquals(List.of("numeric"), checked);
+    }
+
+    @Test
+    public void expensiveConstraintsRunAsyncTest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        BlockingConstraint expensive = new BlockingConstraint(release, runs, "weak");
+        pipeline = new PasswordCheckPipeline(List.of(expensive), 16);
+        pipeline.startAsyncChecks(2, 10, TimeUnit.SECONDS);
+
+        CompletableFuture<String> first = pipeline.checkAsync("weak");
+        CompletableFuture<String> second = pipeline.checkAsync("weak");
+        Assertions.assertFalse(first.isDone());
+        Assertions.assertSame(first, second);
+
+        release.countDown();
+        Assertions.assertEquals("blocking", pipeline.await(first));
+        Assertions.assertEquals("blocking", pipeline.await(pipeline.checkAsync("weak")));
+        Assertions.assertEquals(1, runs.get());
+        Assertions.assertTrue(expensive.thread.startsWith("ZAP-SecurityProxy-PasswordCheck-"));
+    }
+
+    @Test
+    public void slowCheckDoesNotHoldCallerTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        pipeline = new PasswordCheckPipeline(List.of(new BlockingConstraint(release, runs, "weak")), 16);
+        pipeline.startAsyncChecks(1, 50, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<String> check = pipeline.checkAsync("weak");
+        Assertions.assertNull(pipeline.await(check));
+        Assertions.assertEquals(1, pipeline.getTimeouts());
+
+        release.countDown();
+        check.get(10, TimeUnit.SECONDS);
+        Assertions.assertEquals("blocking", pipeline.check("weak"));
+        Assertions.assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void constraintFailureThrownTest() {
+        SafePasswordConstraint broken = new TestConstraint("broken", SafePasswordConstraint.EXPENSIVE, "") {
+            @Override
+            public boolean passedConstraint(String password) {
+                throw new IllegalStateException("broken");
+            }
+        };
+        pipeline = new PasswordCheckPipeline(List.of(broken), 16);
+        pipeline.startAsyncChecks(1, 10, TimeUnit.SECONDS);
+
+        IllegalStateException e = Assertions.assertThrows(IllegalStateException.class,
+                () -> pipeline.await(pipeline.checkAsync("password")));
+        Assertions.assertEquals("broken", e.getMessage());
+        Assertions.assertEquals(0, pipeline.size());
+    }
+
+    @Test
+    public void undeterminedVerdictNotKeptTest() {
+        AtomicBoolean available = new AtomicBoolean();
+        pipeline = new PasswordCheckPipeline(List.of(new UnavailableConstraint(available, "weak")), 16);
+
+        Assertions.assertNull(pipeline.check("weak"));
+        Assertions.assertEquals(0, pipeline.size());
+        Assertions.assertEquals(1, pipeline.getUndetermined());
+
+        available.set(true);
+        Assertions.assertEquals("unavailable", pipeline.check("weak"));
+        Assertions.assertEquals(1, pipeline.size());
+    }
+
+    @Test
+    public void undeterminedAsyncVerdictNotKeptTest() {
+        AtomicBoolean available = new AtomicBoolean();
+        pipeline = new PasswordCheckPipeline(List.of(
+                new TestConstraint("numeric", SafePasswordConstraint.CHEAP, "123"),
+                new UnavailableConstraint(available, "weak")), 16);
+        pipeline.startAsyncChecks(1, 10, TimeUnit.SECONDS);
+
+        Assertions.assertNull(pipeline.await(pipeline.checkAsync("weak")));
+        Assertions.assertEquals(0, pipeline.size());
+
+        available.set(true);
+        Assertions.assertEquals("unavailable", pipeline.await(pipeline.checkAsync("weak")));
+        Assertions.assertEquals(1, pipeline.size());
+    }
+
+    @Test
+    public void failureAfterUndeterminedKeptTest() {
+        pipeline = new PasswordCheckPipeline(List.of(
+                new UnavailableConstraint(new AtomicBoolean(), "weak"),
+                new TestConstraint("expensive", SafePasswordConstraint.EXPENSIVE, "weak")), 16);
+
+        Assertions.assertEquals("expensive", pipeline.check("weak"));
+        Assertions.assertEquals(1, pipeline.size());
+        Assertions.assertEquals(List.of("expensive"), checked);
+    }
+
+    @Test
+    public void stoppedChecksCancelledTest() {
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new PasswordCheckPipeline(List.of(new BlockingConstraint(release, new AtomicInteger(), "weak")), 16);
+        pipeline.startAsyncChecks(1, 10, TimeUnit.SECONDS);
+
+        CompletableFuture<String> check = pipeline.checkAsync("weak");
+        pipeline.stopAsyncChecks();
+        release.countDown();
+        Assertions.assertTrue(check.isCancelled());
+        Assertions.assertNull(pipeline.await(check));
+    }
+
+    private class TestConstraint implements SafePasswordConstraint {
+        private final String reason;
+        private final int cost;
+        private final String weak;
+
+        TestConstraint(String reason, int cost, String weak) {
+            this.reason = reason;
+            this.cost = cost;
+            this.weak = weak;
+        }
+
+        @Override
+        public boolean passedConstraint(String password) {
+            synchronized (checked) {
+                checked.add(reason);
+            }
+            return !password.equals(weak);
+        }
+
+        @Override
+        public String getReason() {
+            return reason;
+        }
+
+        @Override
+        public int getCost() {
+            return cost;
+        }
+    }
+
+    // a lookup that can't be done until it is available, e.g. a closed dictionary
+    private static class UnavailableConstraint implements SafePasswordConstraint {
+        private final AtomicBoolean available;
+        private final String weak;
+
+        UnavailableConstraint(AtomicBoolean available, String weak) {
+            this.available = available;
+            this.weak = weak;
+        }
+
+        @Override
+        public boolean passedConstraint(String password) {
+            if (!available.get()) {
+                throw new UndeterminedConstraintException("Dictionary closed", null);
+            }
+            return !password.equals(weak);
+        }
+
+        @Override
+        public String getReason() {
+            return "unavailable";
+        }
+
+        @Override
+        public int getCost() {
+            return SafePasswordConstraint.EXPENSIVE;
+        }
+    }
+
+    private static class BlockingConstraint implements SafePasswordConstraint {
+        private final CountDownLatch release;
+        private final AtomicInteger runs;
+        private final String weak;
+        private volatile String thread;
+
+        BlockingConstraint(CountDownLatch release, AtomicInteger runs, String weak) {
+            this.release = release;
+            this.runs = runs;
+            this.weak = weak;
+        }
+
+        @Override
+        public boolean passedConstraint(String password) {
+            runs.incrementAndGet();
+            thread = Thread.currentThread().getName();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return !password.equals(weak);
+        }
+
+        @Override
+        public String getReason() {
+            return "blocking";
+        }
+
+        @Override
+        public int getCost() {
+            return EXPENSIVE;
+        }
+    }
+}
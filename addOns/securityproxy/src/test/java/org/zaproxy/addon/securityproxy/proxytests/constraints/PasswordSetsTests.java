@@ -0,0 +1,130 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class PasswordSetsTests {
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("passwords").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {500, 200000})
+    public void listedPasswordsFoundTest(int size) throws IOException {
+        List<String> passwords = randomPasswords(new Random(size), size, "");
+        File list = write("list.txt", passwords);
+        PasswordSet set = PasswordSets.load(list);
+
+        Assertions.assertEquals(size, set.size());
+        for (String password : passwords) {
+            Assertions.assertTrue(set.contains(password), password);
+        }
+        for (String password : randomPasswords(new Random(-size), 10000, "#")) {
+            Assertions.assertFalse(set.contains(password), password);
+        }
+    }
+
+    @Test
+    public void smallListHeldAsStringsTest() throws IOException {
+        File list = write("small.txt", randomPasswords(new Random(1), 500, ""));
+        Assertions.assertTrue(PasswordSets.load(list) instanceof HashPasswordSet);
+        Assertions.assertFalse(new File(list.getPath() + SortedHashPasswordSet.EXTENSION).exists());
+    }
+
+    @Test
+    public void largeListHashedOnceTest() throws IOException {
+        File list = write("large.txt", randomPasswords(new Random(2), 200000, ""));
+        File hashes = new File(list.getPath() + SortedHashPasswordSet.EXTENSION);
+
+        Assertions.assertTrue(PasswordSets.load(list) instanceof SortedHashPasswordSet);
+        Assertions.assertEquals(16 + 8 + 200000L * 8, hashes.length());
+        long written = hashes.lastModified();
+        Assertions.assertTrue(hashes.setLastModified(written - 10000));
+        PasswordSets.load(list);
+        Assertions.assertEquals(written - 10000, hashes.lastModified());
+    }
+
+    @Test
+    public void changedListHashedAgainTest() throws IOException {
+        List<String> passwords = randomPasswords(new Random(3), 200000, "");
+        File list = write("changed.txt", passwords);
+        PasswordSets.load(list);
+
+        passwords.set(0, "added-password");
+        write("changed.txt", passwords);
+        PasswordSet set = PasswordSets.load(list);
+        Assertions.assertTrue(set.contains("added-password"));
+    }
+
+    @Test
+    public void duplicatesAndEmptyLinesTest() throws IOException {
+        File list = write("duplicates.txt", List.of("123456", "password", "", "123456", " password"));
+        PasswordSet set = PasswordSets.load(list);
+        Assertions.assertEquals(4, set.size());
+        Assertions.assertTrue(set.contains(" password"));
+        Assertions.assertFalse(set.contains("Password"));
+    }
+
+    @Test
+    public void sharedBetweenConstraintsTest() throws IOException {
+        File list = write("shared.txt", List.of("123456", "password"));
+        Assertions.assertSame(PasswordSets.get(list), PasswordSets.get(new File(list.getPath())));
+
+        PopularPasswConstraint first = new PopularPasswConstraint(list);
+        PopularPasswConstraint second = new PopularPasswConstraint(list);
+        Assertions.assertFalse(first.passedConstraint("password"));
+        Assertions.assertFalse(second.passedConstraint("123456"));
+        Assertions.assertTrue(second.passedConstraint("very_good_password_not_on_list"));
+    }
+
+    @Test
+    public void missingListEmptyTest() {
+        File list = new File(directory, "missing.txt");
+        Assertions.assertEquals(0, PasswordSets.get(list).size());
+        Assertions.assertTrue(new PopularPasswConstraint(list).passedConstraint("123456"));
+    }
+
+    private File write(String name, List<String> passwords) throws IOException {
+        File file = new File(directory, name);
+        Files.write(file.toPath(), passwords, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static List<String> randomPasswords(Random random, int size, String suffix) {
+        Set<String> passwords = new LinkedHashSet<>();
+        while (passwords.size() < size) {
+            StringBuilder sb = new StringBuilder();
+            int length = 6 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('!' + random.nextInt(94)));
+            }
+            passwords.add(sb.append(suffix).toString());
+        }
+        return new ArrayList<>(passwords);
+    }
+}
@@ -0,0 +1,99 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Random;
+
+public class TypoClassifierTests {
+    private final TypoClassifier classifier = new TypoClassifier();
+
+    /**
+     * Checks that each kind of typo of abcde is classified as the right kind
+     * @param typo typo followed by the expected kind, separated by a colon
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "bacde:ADJ_SWAPPED", "abced:ADJ_SWAPPED",
+            "xabcde:EXTRA_CHARACTER", "abcxde:EXTRA_CHARACTER", "abcdex:EXTRA_CHARACTER",
+            "bcde:MISSING_CHARACTER", "abde:MISSING_CHARACTER", "abcd:MISSING_CHARACTER",
+            "xbcde:REPLACED_CHARACTER", "abxde:REPLACED_CHARACTER", "abcdx:REPLACED_CHARACTER"})
+    void typoIsClassified(String typoAndType) {
+        String[] parts = typoAndType.split(":");
+        Assertions.assertEquals(TypoClassifier.TypoType.valueOf(parts[1]), classifier.classify("abcde", parts[0]));
+    }
+
+    /**
+     * Checks that strings more than one typo away from abcde are not classified
+     * @param typo strings that are no single typo of abcde
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"abcde", "something_else", "xbcdx", "badce", "abdcx", "abc", "abcdexy", "acbd"})
+    void nonTypoIsNotClassified(String typo) {
+        Assertions.assertNull(classifier.classify("abcde", typo));
+        Assertions.assertFalse(classifier.passedConstraint("abcde", typo));
+    }
+
+    /**
+     * Compare the classifier with the four separate constraints on random string pairs
+     */
+    @Test
+    void classifierAgreesWithSeparateConstraints() {
+        TypoSquattingConstraint swapped = new AdjSwappedCharacterConstraint();
+        TypoSquattingConstraint extra = new ExtraCharacterConstraint();
+        TypoSquattingConstraint missing = new MissingCharacterConstraint();
+        TypoSquattingConstraint replaced = new ReplacedCharacterConstraint();
+        Random random = new Random(5);
+
+        for (int i = 0; i < 200000; i++) {
+            String original = randomString(random);
+            String typo = random.nextBoolean() ? randomString(random) : mutate(original, random);
+
+            TypoClassifier.TypoType expected = null;
+            if (swapped.passedConstraint(original, typo)) {
+                expected = TypoClassifier.TypoType.ADJ_SWAPPED;
+            } else if (extra.passedConstraint(original, typo)) {
+                expected = TypoClassifier.TypoType.EXTRA_CHARACTER;
+            } else if (missing.passedConstraint(original, typo)) {
+                expected = TypoClassifier.TypoType.MISSING_CHARACTER;
+            } else if (replaced.passedConstraint(original, typo)) {
+                expected = TypoClassifier.TypoType.REPLACED_CHARACTER;
+            }
+            Assertions.assertEquals(expected, classifier.classify(original, typo), original + " " + typo);
+        }
+    }
+
+    private static String randomString(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int length = 1 + random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+
+    private static String mutate(String s, Random random) {
+        StringBuilder sb = new StringBuilder(s);
+        int pos = random.nextInt(s.length());
+        char c = (char) ('a' + random.nextInt(3));
+        switch (random.nextInt(4)) {
+            case 0:
+                if (pos < s.length() - 1) {
+                    sb.setCharAt(pos, s.charAt(pos + 1));
+                    sb.setCharAt(pos + 1, s.charAt(pos));
+                }
+                break;
+            case 1:
+                sb.insert(pos, c);
+                break;
+            case 2:
+                sb.deleteCharAt(pos);
+                break;
+            default:
+                sb.setCharAt(pos, c);
+        }
+        return sb.toString();
+    }
+}
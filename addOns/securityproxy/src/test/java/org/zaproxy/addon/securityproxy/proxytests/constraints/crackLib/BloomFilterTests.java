@@ -0,0 +1,143 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class BloomFilterTests {
+    private static final String NAME = "words";
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cracklib").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.1, 0.01, 0.001})
+    public void falsePositiveRateTest(double rate) {
+        List<String> words = randomWords(new Random(1), 20000, "");
+        BloomFilter filter = new BloomFilter(words.size(), rate);
+        for (String word : words) {
+            filter.put(word);
+        }
+        for (String word : words) {
+            Assertions.assertTrue(filter.mightContain(word));
+        }
+
+        int falsePositives = 0;
+        List<String> others = randomWords(new Random(2), 20000, "#");
+        for (String word : others) {
+            if (filter.mightContain(word)) {
+                falsePositives++;
+            }
+        }
+        Assertions.assertTrue(falsePositives <= 2 * rate * others.size(), "false positives " + falsePositives);
+    }
+
+    @Test
+    public void writeAndReadTest() throws IOException {
+        List<String> words = write(randomWords(new Random(3), 5000, ""));
+        BloomFilter made = BloomFilter.make(directory, NAME, 0.01);
+        BloomFilter read = BloomFilter.read(new File(directory, NAME + BloomFilter.EXTENSION));
+
+        Assertions.assertEquals(words.size(), read.size());
+        Assertions.assertEquals(made.getNumBits(), read.getNumBits());
+        Assertions.assertEquals(made.getNumHashes(), read.getNumHashes());
+        for (String word : words) {
+            Assertions.assertTrue(read.mightContain(word));
+        }
+        for (String word : randomWords(new Random(4), 1000, "#")) {
+            Assertions.assertEquals(made.mightContain(word), read.mightContain(word));
+        }
+    }
+
+    @Test
+    public void filteredDictionaryTest() throws IOException {
+        List<String> words = write(randomWords(new Random(5), 5000, ""));
+        FilteredDictionary dictionary = new FilteredDictionary(
+                new MappedPacker(directory, NAME), BloomFilter.make(directory, NAME, 0.01));
+
+        for (int i = 0; i < words.size(); i++) {
+            Assertions.assertEquals(i, dictionary.find(words.get(i)));
+        }
+        List<String> others = randomWords(new Random(6), 5000, "#");
+        for (String word : others) {
+            Assertions.assertEquals(-1, dictionary.find(word));
+        }
+
+        Assertions.assertEquals(words.size() + others.size(), dictionary.getLookups());
+        Assertions.assertEquals(others.size(), dictionary.getRejected() + dictionary.getFalsePositives());
+        Assertions.assertTrue(dictionary.getRejected() > others.size() * 9 / 10);
+        dictionary.close();
+    }
+
+    @Test
+    public void filterOfOtherDictionaryTest() throws IOException {
+        write(randomWords(new Random(7), 100, ""));
+        BloomFilter filter = new BloomFilter(10, 0.01);
+        filter.put("dragon");
+        MappedPacker packer = new MappedPacker(directory, NAME);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new FilteredDictionary(packer, filter));
+        packer.close();
+    }
+
+    @Test
+    public void filterOfRebuiltDictionaryTest() throws IOException {
+        write(randomWords(new Random(8), 1000, ""));
+        BloomFilter.make(directory, NAME, 0.01);
+        Assertions.assertNotNull(BloomFilter.read(directory, NAME));
+
+        // same number of words, other words
+        for (String extension : new String[] {".pwd", ".pwi", ".hwm"}) {
+            Files.delete(new File(directory, NAME + extension).toPath());
+        }
+        write(randomWords(new Random(9), 1000, ""));
+        Assertions.assertThrows(IOException.class, () -> BloomFilter.read(directory, NAME));
+
+        BloomFilter.make(directory, NAME, 0.01);
+        Assertions.assertNotNull(BloomFilter.read(directory, NAME));
+    }
+
+    private List<String> write(List<String> words) throws IOException {
+        Packer writer = new Packer(directory, NAME, "rw");
+        for (String word : words) {
+            writer.put(word);
+        }
+        writer.close();
+        return words;
+    }
+
+    private static List<String> randomWords(Random random, int size, String suffix) {
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < size) {
+            StringBuilder sb = new StringBuilder();
+            int length = 4 + random.nextInt(8);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(sb.append(suffix).toString());
+        }
+        return new ArrayList<>(words);
+    }
+}
@@ -0,0 +1,151 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class HashedDictionaryTests {
+    private static final String NAME = "words";
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cracklib").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 5, 16, 1000, 50000})
+    public void everyWordFoundInOwnSlotTest(int size) throws IOException {
+        List<String> words = randomWords(new Random(size), size);
+        HashedDictionary dictionary = make(words);
+
+        Assertions.assertEquals(words.size(), dictionary.size());
+        boolean[] used = new boolean[words.size()];
+        for (String word : words) {
+            int slot = dictionary.find(word);
+            Assertions.assertTrue(slot >= 0 && slot < words.size());
+            Assertions.assertFalse(used[slot]);
+            used[slot] = true;
+        }
+        dictionary.close();
+    }
+
+    @Test
+    public void missingWordsTest() throws IOException {
+        List<String> words = randomWords(new Random(1), 10000);
+        HashedDictionary dictionary = make(words);
+        Set<String> known = new LinkedHashSet<>(words);
+        for (String word : randomWords(new Random(2), 10000)) {
+            if (!known.contains(word)) {
+                Assertions.assertEquals(-1, dictionary.find(word));
+            }
+        }
+        Assertions.assertEquals(-1, dictionary.find(""));
+        dictionary.close();
+    }
+
+    @Test
+    public void unsortedWordListWithDuplicatesTest() throws IOException {
+        List<String> words = new ArrayList<>(List.of("monkey", "dragon", "monkey", "", "sunshine", "dragon"));
+        HashedDictionary dictionary = make(words);
+        Assertions.assertEquals(3, dictionary.size());
+        Assertions.assertNotEquals(-1, dictionary.find("dragon"));
+        Assertions.assertNotEquals(-1, dictionary.find("monkey"));
+        Assertions.assertNotEquals(-1, dictionary.find("sunshine"));
+        dictionary.close();
+    }
+
+    @Test
+    public void longWordsTruncatedTest() throws IOException {
+        String word = "abcdefghijklmnopqrstuvwxyz0123456789";
+        HashedDictionary dictionary = make(List.of(word));
+        Assertions.assertNotEquals(-1, dictionary.find(word.substring(0, Packer.MAXWORDLEN - 1)));
+        dictionary.close();
+    }
+
+    @Test
+    public void emptyWordListTest() throws IOException {
+        HashedDictionary dictionary = make(Collections.emptyList());
+        Assertions.assertEquals(0, dictionary.size());
+        Assertions.assertEquals(-1, dictionary.find("dragon"));
+        dictionary.close();
+    }
+
+    @Test
+    public void truncatedFileTest() throws IOException {
+        make(randomWords(new Random(3), 100)).close();
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, NAME + HashedDictionary.EXTENSION), "rw")) {
+            file.setLength(file.length() - 4);
+        }
+        Assertions.assertThrows(IOException.class, () -> new HashedDictionary(directory, NAME));
+    }
+
+    @Test
+    public void sameResultAsPackerInFascistLookTest() throws IOException {
+        List<String> words = randomWords(new Random(4), 2000);
+        Packer writer = new Packer(directory, NAME, "rw");
+        for (String word : words) {
+            writer.put(word);
+        }
+        writer.close();
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        HashedDictionary hashed = make(words);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 500; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            String password = (i % 2 == 0 ? word : word + "qx") + "#" + i + "X";
+            Assertions.assertEquals(
+                    CrackLib.fascistLook(mapped, password, null),
+                    CrackLib.fascistLook(hashed, password, null),
+                    password);
+        }
+        mapped.close();
+        hashed.close();
+    }
+
+    private HashedDictionary make(List<String> words) throws IOException {
+        String list = String.join("\n", words);
+        HashedDictionary.make(new ByteArrayInputStream(list.getBytes()), directory, NAME);
+        return new HashedDictionary(directory, NAME);
+    }
+
+    private static List<String> randomWords(Random random, int size) {
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            StringBuilder sb = new StringBuilder();
+            int length = 3 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(sb.toString());
+        }
+        List<String> sorted = new ArrayList<>(words);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
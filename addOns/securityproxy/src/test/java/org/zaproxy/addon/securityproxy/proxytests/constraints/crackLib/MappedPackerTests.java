@@ -0,0 +1,158 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MappedPackerTests {
+    private static final String NAME = "words";
+
+    private File directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cracklib").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 15, 16, 17, 1000, 4096})
+    public void sameWordsAsPackerTest(int size) throws IOException {
+        List<String> words = write(randomWords(new Random(size), size));
+        Packer packer = new Packer(directory, NAME, "r");
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+
+        Assertions.assertEquals(packer.size(), mapped.size());
+        for (int i = 0; i < words.size(); i++) {
+            Assertions.assertEquals(words.get(i), mapped.get(i));
+            Assertions.assertEquals(packer.find(words.get(i)), mapped.find(words.get(i)));
+            Assertions.assertEquals(i, mapped.find(words.get(i)));
+        }
+        packer.close();
+        mapped.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "a", "zzzzzzzzzzzz", "0123", "~", "AB"})
+    public void missingWordTest(String word) throws IOException {
+        write(randomWords(new Random(1), 500));
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        Assertions.assertEquals(-1, mapped.find(word));
+        mapped.close();
+    }
+
+    @Test
+    public void prefixOfWordTest() throws IOException {
+        write(List.of("abc", "abcd", "abcde", "abd", "b"));
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        Assertions.assertEquals(-1, mapped.find("ab"));
+        Assertions.assertEquals(1, mapped.find("abcd"));
+        Assertions.assertEquals(-1, mapped.find("abcdef"));
+        Assertions.assertEquals(4, mapped.find("b"));
+        mapped.close();
+    }
+
+    @Test
+    public void withoutHashFileTest() throws IOException {
+        List<String> words = write(randomWords(new Random(2), 1000));
+        try (RandomAccessFile hwm = new RandomAccessFile(new File(directory, NAME + ".hwm"), "rw")) {
+            hwm.setLength(7);
+        }
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        for (int i = 0; i < words.size(); i++) {
+            Assertions.assertEquals(i, mapped.find(words.get(i)));
+        }
+        mapped.close();
+    }
+
+    @Test
+    public void closedTest() throws IOException {
+        write(List.of("dragon"));
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        mapped.close();
+        Assertions.assertThrows(IOException.class, () -> mapped.find("dragon"));
+    }
+
+    @Test
+    public void concurrentReadersTest() throws Exception {
+        List<String> words = write(randomWords(new Random(3), 5000));
+        MappedPacker mapped = new MappedPacker(directory, NAME);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> found = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                found.add(executor.submit(() -> {
+                    int n = 0;
+                    for (String word : words) {
+                        if (mapped.find(word) >= 0 && mapped.find(word + "#") < 0) {
+                            n++;
+                        }
+                    }
+                    return n;
+                }));
+            }
+            for (Future<Integer> future : found) {
+                Assertions.assertEquals(Integer.valueOf(words.size()), future.get());
+            }
+        } finally {
+            executor.shutdown();
+            mapped.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"password", "p\u00e4ssw\u00f6rd", "\u20ac100", "\uD83D\uDD11key", "bad\uD800", "\uDC00bad"})
+    public void encodeTest(String word) {
+        byte[] buf = new byte[Packer.MAXBLOCKLEN];
+        byte[] expected = word.getBytes(StandardCharsets.UTF_8);
+        Assertions.assertEquals(expected.length, MappedPacker.encode(word, buf));
+        Assertions.assertArrayEquals(expected, Arrays.copyOf(buf, expected.length));
+        Assertions.assertEquals(-1, MappedPacker.encode(word, new byte[expected.length - 1]));
+    }
+
+    private List<String> write(List<String> words) throws IOException {
+        Packer writer = new Packer(directory, NAME, "rw");
+        for (String word : words) {
+            writer.put(word);
+        }
+        writer.close();
+        return words;
+    }
+
+    private static List<String> randomWords(Random random, int size) {
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < size) {
+            StringBuilder sb = new StringBuilder();
+            int length = 2 + random.nextInt(11);
+            for (int i = 0; i < length; i++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            words.add(sb.toString());
+        }
+        return new ArrayList<>(words);
+    }
+}
@@ -0,0 +1,156 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelLookTests {
+    private static final String NAME = "words";
+
+    private File directory;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cracklib").toFile();
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        pool.shutdownNow();
+        for (File file : directory.listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+    }
+
+    @Test
+    public void sameVerdictAsSequentialLookTest() throws IOException {
+        Random random = new Random(1);
+        TreeSet<String> words = new TreeSet<>();
+        while (words.size() < 5000) {
+            words.add(randomWord(random, 4 + random.nextInt(6)));
+        }
+        Packer writer = new Packer(directory, NAME, "rw");
+        for (String word : words) {
+            writer.put(word);
+        }
+        writer.close();
+        MappedPacker dictionary = new MappedPacker(directory, NAME);
+
+        List<String> list = new ArrayList<>(words);
+        for (int i = 0; i < 500; i++) {
+            String word = list.get(random.nextInt(list.size()));
+            String password;
+            switch (i % 4) {
+                case 0: password = "Q" + word.replace('o', '0').replace('e', '3') + "!9"; break;
+                case 1: password = new StringBuilder(word).reverse() + "X#1"; break;
+                case 2: password = "Zq" + randomWord(random, 6) + "$4"; break;
+                default: password = "M" + word + "$" + i; break;
+            }
+            Assertions.assertEquals(
+                    CrackLib.fascistLook(dictionary, password, null),
+                    CrackLib.fascistLook(dictionary, password, null, pool, 10, TimeUnit.SECONDS),
+                    password);
+        }
+        Assertions.assertFalse(CrackLib.fascistLook(dictionary, "Xy7$usern", "xy7$usern", pool, 10, TimeUnit.SECONDS));
+        dictionary.close();
+    }
+
+    @Test
+    public void firstFoundWordStopsLookupsTest() throws IOException {
+        AtomicInteger lookups = new AtomicInteger();
+        WordDictionary everything = new TestDictionary() {
+            @Override
+            public int find(String s) {
+                lookups.incrementAndGet();
+                return 0;
+            }
+        };
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            Assertions.assertFalse(CrackLib.fascistLook(everything, "P4$$w0rd!3x", null, single, 10, TimeUnit.SECONDS));
+        } finally {
+            single.shutdownNow();
+        }
+        Assertions.assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void slowLookupsTimeOutTest() {
+        WordDictionary slow = new TestDictionary() {
+            @Override
+            public int find(String s) throws IOException {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+        };
+        Assertions.assertThrows(InterruptedIOException.class,
+                () -> CrackLib.fascistLook(slow, "Qzv7#mkp", null, pool, 50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void lookupFailureThrownTest() {
+        WordDictionary broken = new TestDictionary() {
+            @Override
+            public int find(String s) throws IOException {
+                throw new IOException("broken");
+            }
+        };
+        IOException e = Assertions.assertThrows(IOException.class,
+                () -> CrackLib.fascistLook(broken, "Qzv7#mkp", null, pool, 10, TimeUnit.SECONDS));
+        Assertions.assertEquals("broken", e.getMessage());
+    }
+
+    @Test
+    public void failingRuleThrowsAsInSequentialLookTest() {
+        // five characters once trimmed, "]]]" can't drop six
+        WordDictionary empty = new TestDictionary();
+        Assertions.assertThrows(StringIndexOutOfBoundsException.class,
+                () -> CrackLib.fascistLook(empty, " Ab1#x", null));
+        Assertions.assertThrows(StringIndexOutOfBoundsException.class,
+                () -> CrackLib.fascistLook(empty, " Ab1#x", null, pool, 10, TimeUnit.SECONDS));
+    }
+
+    private static class TestDictionary implements WordDictionary {
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public int find(String s) throws IOException {
+            return -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(26)));
+        }
+        return sb.toString();
+    }
+}
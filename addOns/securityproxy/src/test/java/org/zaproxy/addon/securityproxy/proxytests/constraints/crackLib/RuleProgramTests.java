@@ -0,0 +1,99 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+public class RuleProgramTests {
+    private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyzAEIOUSXY0123456789!$@#. _-";
+    private static final String RULE_CHARS = ":^$rulpcdfs/!<>xoi=@?[]()" + "aeiosy0123456789pvcwXzZ";
+
+    @Test
+    public void tablesCompiledWithoutRepeatedRulesTest() {
+        RuleProgram[] programs = RuleProgram.compileAll(CrackLib.destructors);
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(List.of(CrackLib.destructors)));
+
+        Assertions.assertEquals(unique.size(), programs.length);
+        Assertions.assertTrue(programs.length < CrackLib.destructors.length);
+        for (int i = 0; i < programs.length; i++) {
+            Assertions.assertEquals(unique.get(i), programs[i].getControl());
+        }
+    }
+
+    @Test
+    public void destructorsSameAsMangleTest() {
+        assertSameAsMangle(CrackLib.destructors, randomWords(new Random(1), 300));
+    }
+
+    @Test
+    public void constructorsSameAsMangleTest() {
+        assertSameAsMangle(CrackLib.constructors, randomWords(new Random(2), 300));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "u", "l", "c", "p", "d", "f", "r", "^x", "$1", "x13", "o2Z", "i0#", "@a", "@?v", "sa4", "s?v*",
+        "/a", "/?d", "!e", "!?p", ">5", "<8", "=1a", "=1?v", "[", "]", "(a", "(?u", ")s", ")?l",
+        ">", "$", "x1", "o", "@", "@?", "s", "sa", "s?v", "/", "/?", "=", "=1", ">#", "x#1", "=#a",
+        "?", "#", "pd", "cr", "ud"
+    })
+    public void rulesSameAsMangleTest(String control) {
+        assertSameAsMangle(new String[] {control}, randomWords(new Random(control.hashCode()), 200));
+    }
+
+    @Test
+    public void randomRulesSameAsMangleTest() {
+        Random random = new Random(3);
+        List<String> words = randomWords(random, 50);
+        String[] controls = new String[3000];
+        for (int i = 0; i < controls.length; i++) {
+            controls[i] = randomString(random, 1 + random.nextInt(8), RULE_CHARS);
+        }
+        assertSameAsMangle(controls, words);
+    }
+
+    @Test
+    public void nonAsciiWordsSameAsMangleTest() {
+        List<String> words = List.of("stra\u00dfe", "\u00c4rger\u00d6l", "\ud83d\ude00pass\ud83d\ude01", "\u00e9clair", "\u01c5emal");
+        assertSameAsMangle(new String[] {"u", "l", "c", "r", "f", "dr", "@?v", "s?lx", "/?u"}, words);
+    }
+
+    private static void assertSameAsMangle(String[] controls, List<String> words) {
+        for (String control : controls) {
+            RuleProgram program = RuleProgram.compile(control);
+            for (String word : words) {
+                String expected;
+                try {
+                    expected = Rules.mangle(word, control);
+                } catch (RuntimeException e) {
+                    Assertions.assertThrows(RuntimeException.class, () -> program.apply(word),
+                            control + " on " + word);
+                    continue;
+                }
+                Assertions.assertEquals(expected, program.apply(word), control + " on " + word);
+            }
+        }
+    }
+
+    private static List<String> randomWords(Random random, int size) {
+        List<String> words = new ArrayList<>(List.of("", "a", "ab", "fly", "boy", "bench", "sexy", "bias"));
+        while (words.size() < size) {
+            words.add(randomString(random, random.nextInt(14), WORD_CHARS));
+        }
+        return words;
+    }
+
+    private static String randomString(Random random, int length, String chars) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package org.zaproxy.addon.securityproxy.proxytests.constraints.crackLib;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class RuleTreeTests {
+    private static final String WORD_CHARS = "abcdefghijklmnopqrstuvwxyz$0123456789!@#. ";
+    private static final String RULE_CHARS = ":^$rulpcdfs/!<>xoi=@?[]()" + "aeios0123456789pvX";
+
+    @Test
+    public void destructorsSameAsProgramsTest() {
+        assertSameAsPrograms(RuleProgram.compileAll(CrackLib.destructors), randomWords(new Random(1), 500));
+    }
+
+    @Test
+    public void constructorsSameAsProgramsTest() {
+        assertSameAsPrograms(RuleProgram.compileAll(CrackLib.constructors), randomWords(new Random(2), 100));
+    }
+
+    @Test
+    public void randomRulesWithSharedPrefixesSameAsProgramsTest() {
+        Random random = new Random(3);
+        for (int n = 0; n < 50; n++) {
+            List<String> controls = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String control = randomString(random, 1 + random.nextInt(6), RULE_CHARS);
+                if (!controls.isEmpty() && random.nextBoolean()) {
+                    // extend an earlier rule to share its prefix
+                    control = controls.get(random.nextInt(controls.size())) + control;
+                }
+                controls.add(control);
+            }
+            assertSameAsPrograms(RuleProgram.compileAll(controls.toArray(new String[0])),
+                    randomWords(random, 30));
+        }
+    }
+
+    @Test
+    public void failingRuleThrowsWhenReadTest() {
+        RuleTree tree = new RuleTree(RuleProgram.compileAll(new String[] {":", "]]]", "]]]$x", "[", "/z"}));
+        RuleTree.Results results = tree.apply("abcde");
+
+        Assertions.assertEquals(5, results.size());
+        Assertions.assertEquals("abcde", results.get(0));
+        Assertions.assertThrows(StringIndexOutOfBoundsException.class, () -> results.get(1));
+        Assertions.assertThrows(StringIndexOutOfBoundsException.class, () -> results.get(2));
+        Assertions.assertEquals("bcde", results.get(3));
+        Assertions.assertNull(results.get(4));
+    }
+
+    private static void assertSameAsPrograms(RuleProgram[] programs, List<String> words) {
+        RuleTree tree = new RuleTree(programs);
+        Assertions.assertEquals(programs.length, tree.size());
+        for (String word : words) {
+            RuleTree.Results results = tree.apply(word);
+            for (int i = 0; i < programs.length; i++) {
+                RuleProgram program = programs[i];
+                String expected;
+                try {
+                    expected = program.apply(word);
+                } catch (RuntimeException e) {
+                    int rule = i;
+                    Assertions.assertThrows(e.getClass(), () -> results.get(rule),
+                            program.getControl() + " on " + word);
+                    continue;
+                }
+                Assertions.assertEquals(expected, results.get(i), program.getControl() + " on " + word);
+            }
+        }
+    }
+
+    private static List<String> randomWords(Random random, int size) {
+        List<String> words = new ArrayList<>(List.of("", "a", "p4$$w0rd", "s3cr3t", "l0ng3r$tr1ng"));
+        while (words.size() < size) {
+            words.add(randomString(random, random.nextInt(14), WORD_CHARS));
+        }
+        return words;
+    }
+
+    private static String randomString(Random random, int length, String chars) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return sb.toString();
+    }
+}